@@ -0,0 +1,19 @@
+package ru.shmatov;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class BalanceTotalsDTO {
+    private LocalDate periodStart;
+    private Long inAmount;
+    private Long outAmount;
+    private Long inCount;
+    private Long outCount;
+}
@@ -0,0 +1,23 @@
+package ru.shmatov;
+
+import lombok.*;
+import ru.shmatov.enums.ScheduleRecurrence;
+import ru.shmatov.enums.ScheduledTransferStatus;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class ScheduledTransferDTO {
+    private Long id;
+    private Long amount;
+    private String fromBalanceNumber;
+    private String toBalanceNumber;
+    private ScheduleRecurrence recurrence;
+    private Long dueAt;
+    private ScheduledTransferStatus status;
+    private Integer attempts;
+    private String lastError;
+}
@@ -0,0 +1,8 @@
+package ru.shmatov.enums;
+
+public enum EodPostingKind {
+    // списание фиксированной суммы с каждого баланса, но не больше остатка
+    FEE,
+    // начисление процентов за день по годовой ставке в базисных пунктах
+    INTEREST
+}
@@ -0,0 +1,33 @@
+package ru.shmatov.enums;
+
+public enum ScheduleRecurrence {
+    ONCE(0),
+    DAILY(1),
+    WEEKLY(2),
+    MONTHLY(3);
+
+    private static final ScheduleRecurrence[] BY_CODE = new ScheduleRecurrence[values().length];
+
+    static {
+        for (ScheduleRecurrence recurrence : values()) {
+            BY_CODE[recurrence.code] = recurrence;
+        }
+    }
+
+    private final short code;
+
+    ScheduleRecurrence(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static ScheduleRecurrence ofCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown schedule recurrence code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
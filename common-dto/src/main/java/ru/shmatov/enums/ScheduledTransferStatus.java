@@ -0,0 +1,33 @@
+package ru.shmatov.enums;
+
+public enum ScheduledTransferStatus {
+    ACTIVE(0),
+    COMPLETED(1),
+    FAILED(2),
+    CANCELLED(3);
+
+    private static final ScheduledTransferStatus[] BY_CODE = new ScheduledTransferStatus[values().length];
+
+    static {
+        for (ScheduledTransferStatus status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+
+    ScheduledTransferStatus(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static ScheduledTransferStatus ofCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown scheduled transfer status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,6 @@
+package ru.shmatov.enums;
+
+public enum TotalsPeriod {
+    DAY,
+    MONTH
+}
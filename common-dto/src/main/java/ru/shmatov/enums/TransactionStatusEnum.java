@@ -1,9 +1,36 @@
 package ru.shmatov.enums;
 
 public enum TransactionStatusEnum {
-    CREATED,
-    PENDING_CONFIRMATION,
-    CONFIRMED,
-    DECLINED,
-    NO_ACTIVE
+    CREATED(0),
+    PENDING_CONFIRMATION(1),
+    CONFIRMED(2),
+    DECLINED(3),
+    NO_ACTIVE(4);
+
+    // здесь и в остальных enum с ofCode код хранится в БД как SMALLINT:
+    // существующие коды не меняются, новые добавляются следующими по порядку
+    private static final TransactionStatusEnum[] BY_CODE = new TransactionStatusEnum[values().length];
+
+    static {
+        for (TransactionStatusEnum status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final short code;
+
+    TransactionStatusEnum(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TransactionStatusEnum ofCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown transaction status code: " + code);
+        }
+        return BY_CODE[code];
+    }
 }
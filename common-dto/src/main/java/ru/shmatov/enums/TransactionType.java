@@ -1,6 +1,31 @@
 package ru.shmatov.enums;
 
 public enum TransactionType {
-    TRANSFER_FROM,
-    TRANSFER_TO
-}
\ No newline at end of file
+    TRANSFER_FROM(0),
+    TRANSFER_TO(1);
+
+    private static final TransactionType[] BY_CODE = new TransactionType[values().length];
+
+    static {
+        for (TransactionType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final short code;
+
+    TransactionType(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TransactionType ofCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown transaction type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,19 @@
+package ru.shmatov.request;
+
+import lombok.*;
+import ru.shmatov.enums.EodPostingKind;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class EodBatchRequest {
+    private EodPostingKind kind;
+    private LocalDate businessDate;
+    // для FEE — сумма комиссии, для INTEREST — годовая ставка в базисных пунктах
+    private Long amount;
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.request;
+
+import javax.validation.constraints.NotBlank;
+
+public record RefreshTokenRequest(
+        @NotBlank String refreshToken
+) {}
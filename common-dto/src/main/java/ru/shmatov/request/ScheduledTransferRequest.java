@@ -0,0 +1,19 @@
+package ru.shmatov.request;
+
+import lombok.*;
+import ru.shmatov.enums.ScheduleRecurrence;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class ScheduledTransferRequest {
+    private Long amount;
+    private String fromBalanceNumber;
+    private String toBalanceNumber;
+    // время первого перевода в мс; пусто — ближайший запуск планировщика
+    private Long firstRunAt;
+    private ScheduleRecurrence recurrence;
+}
@@ -1,3 +1,8 @@
 package ru.shmatov.response;
 
-public record AuthResponse(String token) {}
+public record AuthResponse(
+        String token,
+        long expiresAt,
+        String refreshToken,
+        long refreshExpiresAt
+) {}
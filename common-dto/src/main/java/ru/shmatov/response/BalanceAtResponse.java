@@ -0,0 +1,15 @@
+package ru.shmatov.response;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class BalanceAtResponse {
+    private String balanceNumber;
+    private Long timestamp;
+    private Long balance;
+}
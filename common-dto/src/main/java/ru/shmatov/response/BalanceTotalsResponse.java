@@ -0,0 +1,19 @@
+package ru.shmatov.response;
+
+import lombok.*;
+import ru.shmatov.BalanceTotalsDTO;
+import ru.shmatov.enums.TotalsPeriod;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class BalanceTotalsResponse {
+    private String balanceNumber;
+    private TotalsPeriod period;
+    private List<BalanceTotalsDTO> totals;
+}
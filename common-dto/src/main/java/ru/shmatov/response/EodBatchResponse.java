@@ -0,0 +1,19 @@
+package ru.shmatov.response;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class EodBatchResponse {
+    private String batchId;
+    private long chunks;
+    private long skippedChunks;
+    private long failedChunks;
+    private long rows;
+    private long elapsedMs;
+    private long rowsPerSecond;
+}
@@ -0,0 +1,16 @@
+package ru.shmatov.response;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class ImportResponse {
+    private long processed;
+    private long imported;
+    private long skipped;
+    private long rejected;
+}
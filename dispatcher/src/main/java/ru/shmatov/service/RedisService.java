@@ -2,16 +2,27 @@ package ru.shmatov.service;
 
 import ru.shmatov.TransactionIdPairDTO;
 
+import java.time.Duration;
 import java.util.Optional;
 
 public interface RedisService {
 
-    void saveJwt(String tgId, String jwt);
+    void saveJwt(String tgId, String jwt, Duration ttl);
 
     Optional<String> getJwt(String tgId);
 
+    long getJwtTtlSeconds(String tgId);
+
     void deleteJwt(String tgId);
 
+    void saveRefreshToken(String tgId, String refreshToken, Duration ttl);
+
+    Optional<String> getRefreshToken(String tgId);
+
+    void deleteRefreshToken(String tgId);
+
+    boolean deleteRefreshTokenIfMatches(String tgId, String refreshToken);
+
     void saveTxPair(String tgId, TransactionIdPairDTO pair);
 
     Optional<TransactionIdPairDTO> getTxPair(String tgId);
@@ -16,6 +16,7 @@ import ru.shmatov.response.*;
 import ru.shmatov.service.NodeService;
 import ru.shmatov.service.RedisService;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Service
@@ -33,16 +34,55 @@ public class NodeServiceImpl implements NodeService {
     private String accountUrl;
     @Value("${url.transfer}")
     private String transferUrl;
+    @Value("${jwt.refresh-before-seconds}")
+    private long refreshBeforeSeconds;
 
     private String tgId(Update u) {
         return u.getMessage().getFrom().getId().toString();
     }
 
     private String jwtOrThrow(Update u) {
-        return redis.getJwt(tgId(u))
+        String id = tgId(u);
+        Optional<String> jwt = redis.getJwt(id);
+        // обновляем токен заранее, чтобы не упираться в истечение и повторный /auth
+        if (jwt.isPresent() && redis.getJwtTtlSeconds(id) > refreshBeforeSeconds) {
+            return jwt.get();
+        }
+        return refreshTokens(id)
+                .or(() -> jwt)
                 .orElseThrow(() -> new RuntimeException("You are not authenticated"));
     }
 
+    private Optional<String> refreshTokens(String id) {
+        Optional<String> refreshToken = redis.getRefreshToken(id);
+        if (refreshToken.isEmpty()) return Optional.empty();
+
+        ResponseEntity<AuthResponse> r = exchange(
+                authUrl + "/refresh", HttpMethod.POST, new RefreshTokenRequest(refreshToken.get()),
+                new ParameterizedTypeReference<>() {
+                }, Optional.empty());
+
+        if (!r.getStatusCode().is2xxSuccessful() || r.getBody() == null) {
+            log.warn("Token refresh failed for {}: {}", id, r.getStatusCode());
+            // токен одноразовый: 401 получает и проигравший параллельного обновления, а в Redis уже лежат
+            // новые токены победителя — удаляем только тот, что отправили сами, иначе берём JWT победителя
+            if (r.getStatusCode() == HttpStatus.UNAUTHORIZED && !redis.deleteRefreshTokenIfMatches(id, refreshToken.get())) {
+                return redis.getJwt(id);
+            }
+            return Optional.empty();
+        }
+        saveTokens(id, r.getBody());
+        log.debug("Tokens refreshed for {}", id);
+        return Optional.of(r.getBody().token());
+    }
+
+    private void saveTokens(String id, AuthResponse tokens) {
+        long now = System.currentTimeMillis();
+        redis.saveJwt(id, tokens.token(), Duration.ofMillis(Math.max(tokens.expiresAt() - now, 1)));
+        redis.saveRefreshToken(id, tokens.refreshToken(),
+                Duration.ofMillis(Math.max(tokens.refreshExpiresAt() - now, 1)));
+    }
+
     private <T> ResponseEntity<T> exchange(
             String url,
             HttpMethod method,
@@ -91,13 +131,25 @@ public class NodeServiceImpl implements NodeService {
 
     @Override
     public boolean isAuthenticated(Update u) {
-        return redis.getJwt(tgId(u)).isPresent();
+        String id = tgId(u);
+        return redis.getJwt(id).isPresent() || redis.getRefreshToken(id).isPresent();
     }
 
     @Override
     public APIResponse logout(Update u) {
         String id = tgId(u);
+        Optional<String> refreshToken = redis.getRefreshToken(id);
+        try {
+            // без отзыва на процессоре токен остался бы валидным до истечения
+            exchange(authUrl + "/logout", HttpMethod.POST,
+                    refreshToken.map(RefreshTokenRequest::new).orElse(null),
+                    new ParameterizedTypeReference<APIResponse>() {
+                    }, redis.getJwt(id));
+        } catch (Exception e) {
+            log.warn("Token revocation failed for {}: {}", id, e.getMessage());
+        }
         redis.deleteJwt(id);
+        redis.deleteRefreshToken(id);
         redis.deleteTxPair(id);
         return new APIResponse("You have logged out");
     }
@@ -132,7 +184,7 @@ public class NodeServiceImpl implements NodeService {
                 }, Optional.empty());
 
         if (r.getStatusCode().is2xxSuccessful()) {
-            redis.saveJwt(tgId(u), r.getBody().token());
+            saveTokens(tgId(u), r.getBody());
             return new APIResponse("🔑 Successfully logged in");
         }
         return toApi(r);
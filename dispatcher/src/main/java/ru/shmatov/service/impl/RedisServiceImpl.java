@@ -3,24 +3,35 @@ package ru.shmatov.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.service.RedisService;
 import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 public class RedisServiceImpl implements RedisService {
 
+    private static final RedisScript<Long> COMPARE_AND_DELETE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
     private final RedisTemplate<String, String> redis;
 
     @Value("${jwt.redis-prefix}")
     private String jwtPrefix;
-    @Value("${jwt.ttl-hours}")
-    private long jwtTtlHours;
+    @Value("${jwt.refresh-redis-prefix}")
+    private String refreshPrefix;
 
     @Value("${transfer.redis-prefix:}")
     private String txPrefix;
@@ -30,9 +41,9 @@ public class RedisServiceImpl implements RedisService {
     /* ---------- JWT ---------- */
 
     @Override
-    public void saveJwt(String tgId, String jwt) {
+    public void saveJwt(String tgId, String jwt, Duration ttl) {
         redis.opsForValue()
-                .set(jwtPrefix + tgId, jwt, Duration.ofHours(jwtTtlHours));
+                .set(jwtPrefix + tgId, jwt, ttl);
     }
 
     @Override
@@ -41,11 +52,43 @@ public class RedisServiceImpl implements RedisService {
                 redis.opsForValue().get(jwtPrefix + tgId));
     }
 
+    @Override
+    public long getJwtTtlSeconds(String tgId) {
+        Long ttl = redis.getExpire(jwtPrefix + tgId, TimeUnit.SECONDS);
+        return ttl == null ? -2 : ttl;
+    }
+
     @Override
     public void deleteJwt(String tgId) {
         redis.delete(jwtPrefix + tgId);
     }
 
+    /* ---------- refresh token ---------- */
+
+    @Override
+    public void saveRefreshToken(String tgId, String refreshToken, Duration ttl) {
+        redis.opsForValue()
+                .set(refreshPrefix + tgId, refreshToken, ttl);
+    }
+
+    @Override
+    public Optional<String> getRefreshToken(String tgId) {
+        return Optional.ofNullable(
+                redis.opsForValue().get(refreshPrefix + tgId));
+    }
+
+    @Override
+    public void deleteRefreshToken(String tgId) {
+        redis.delete(refreshPrefix + tgId);
+    }
+
+    // сравнение и удаление одним вызовом: токен, сохранённый параллельным обновлением, не удаляется
+    @Override
+    public boolean deleteRefreshTokenIfMatches(String tgId, String refreshToken) {
+        Long deleted = redis.execute(COMPARE_AND_DELETE_SCRIPT, List.of(refreshPrefix + tgId), refreshToken);
+        return deleted != null && deleted > 0;
+    }
+
     /* ---------- transfer id-pair ---------- */
 
     @Override
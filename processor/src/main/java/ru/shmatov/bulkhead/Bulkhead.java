@@ -0,0 +1,72 @@
+package ru.shmatov.bulkhead;
+
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Изолированная доля ресурсов процессора: сколько запросов группы выполняется одновременно,
+ * сколько ждёт в очереди и сколько соединений из общего пула группа может держать.
+ */
+public class Bulkhead {
+
+    @Getter
+    private final String name;
+    private final Semaphore callPermits;
+    private final Semaphore connectionPermits;
+    private final int maxQueue;
+    private final long maxWaitMs;
+    private final long connectionWaitMs;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, long maxWaitMs,
+                    int maxConnections, long connectionWaitMs) {
+        this.name = name;
+        this.callPermits = new Semaphore(maxConcurrent, true);
+        this.connectionPermits = new Semaphore(maxConnections, true);
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.connectionWaitMs = connectionWaitMs;
+    }
+
+    public boolean tryEnter() throws InterruptedException {
+        if (callPermits.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return callPermits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void exit() {
+        callPermits.release();
+    }
+
+    public boolean tryAcquireConnection() throws InterruptedException {
+        return connectionPermits.tryAcquire(connectionWaitMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void releaseConnection() {
+        connectionPermits.release();
+    }
+
+    public int getAvailableCalls() {
+        return callPermits.availablePermits();
+    }
+
+    public int getAvailableConnections() {
+        return connectionPermits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.shmatov.bulkhead;
+
+public final class BulkheadContext {
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private BulkheadContext() {}
+
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    public static void set(Bulkhead bulkhead) {
+        CURRENT.set(bulkhead);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
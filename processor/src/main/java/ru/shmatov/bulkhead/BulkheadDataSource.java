@@ -0,0 +1,139 @@
+package ru.shmatov.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число соединений из общего пула, которые одновременно держит одна группа.
+ * Потоки вне группы (миграции, фоновые задачи) берут соединения без ограничений.
+ * Бюджет считается по потокам, а не по соединениям: вложенные соединения того же потока (REQUIRES_NEW саги,
+ * чтение чужого шарда внутри транзакции) идут по уже взятому разрешению. Иначе запросы, держащие по одному
+ * соединению, ждали бы друг друга за вторым, пока бюджет не кончится у всех сразу.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadLocal<Permit> permits = new ThreadLocal<>();
+
+    public BulkheadDataSource(DataSource targetDataSource, MeterRegistry meterRegistry) {
+        super(targetDataSource);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(super::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(() -> super.getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionSource source) throws SQLException {
+        Bulkhead bulkhead = BulkheadContext.current();
+        if (bulkhead == null) {
+            return source.get();
+        }
+        Permit permit = permits.get();
+        if (permit == null || permit.bulkhead != bulkhead || !permit.retain()) {
+            acquire(bulkhead);
+            permit = new Permit(bulkhead);
+            permits.set(permit);
+        }
+        try {
+            return guard(source.get(), permit);
+        } catch (SQLException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    private void acquire(Bulkhead bulkhead) throws SQLException {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquireConnection();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for connection budget", e);
+        }
+        if (!acquired) {
+            meterRegistry.counter("bulkhead.rejected", "bulkhead", bulkhead.getName(), "resource", "connection")
+                    .increment();
+            throw new SQLTransientConnectionException(
+                    "Connection budget of bulkhead " + bulkhead.getName() + " is exhausted");
+        }
+    }
+
+    // соединение отпускает свою долю разрешения ровно один раз, сколько бы раз ни вызвали close()
+    private Connection guard(Connection target, Permit permit) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            target.close();
+                        } finally {
+                            permit.release();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    /**
+     * Разрешение потока и число открытых по нему соединений. Закрыть соединение может и другой поток,
+     * поэтому счётчик под блокировкой, а отпущенное разрешение больше не продлевается.
+     */
+    private class Permit {
+
+        private final Bulkhead bulkhead;
+        private int open = 1;
+        private boolean released;
+
+        Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        synchronized boolean retain() {
+            if (released) {
+                return false;
+            }
+            open++;
+            return true;
+        }
+
+        void release() {
+            synchronized (this) {
+                if (--open > 0) {
+                    return;
+                }
+                released = true;
+            }
+            if (permits.get() == this) {
+                permits.remove();
+            }
+            bulkhead.releaseConnection();
+        }
+    }
+}
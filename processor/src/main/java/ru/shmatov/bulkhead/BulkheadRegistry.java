@@ -0,0 +1,48 @@
+package ru.shmatov.bulkhead;
+
+import org.springframework.util.AntPathMatcher;
+import ru.shmatov.config.properties.BulkheadProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сопоставляет запрос с группой ресурсов по методу и пути.
+ */
+public class BulkheadRegistry {
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final List<Route> routes = new ArrayList<>();
+    private final List<Bulkhead> bulkheads = new ArrayList<>();
+
+    public BulkheadRegistry(BulkheadProperties properties) {
+        for (BulkheadProperties.Group group : properties.getGroups()) {
+            Bulkhead bulkhead = new Bulkhead(group.getName(), group.getMaxConcurrent(), group.getMaxQueue(),
+                    group.getMaxWaitMs(), group.getMaxConnections(), properties.getConnectionWaitMs());
+            bulkheads.add(bulkhead);
+            routes.add(new Route(group.getMethod(), group.getPaths(), bulkhead));
+        }
+    }
+
+    public Bulkhead find(String method, String path) {
+        for (Route route : routes) {
+            if (route.method() != null && !route.method().equalsIgnoreCase(method)) {
+                continue;
+            }
+            for (String pattern : route.paths()) {
+                if (matcher.match(pattern, path)) {
+                    return route.bulkhead();
+                }
+            }
+        }
+        return null;
+    }
+
+    public List<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableList(bulkheads);
+    }
+
+    private record Route(String method, List<String> paths, Bulkhead bulkhead) {
+    }
+}
@@ -0,0 +1,130 @@
+package ru.shmatov.concurrency;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Лимит одновременных запросов, подстраивающийся под задержку (градиентный алгоритм, как Gradient2 у Netflix).
+ * Пока короткое окно RTT не хуже долгого среднего, лимит растёт на sqrt(limit);
+ * когда база начинает тормозить и RTT растёт, лимит сжимается пропорционально longRtt / shortRtt.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double LONG_RTT_SMOOTHING = 1.0 / 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private volatile int limit;
+    private volatile long windowStart = System.nanoTime();
+    private volatile int windowMaxInFlight;
+    // меняются только внутри update(), который выполняется одним потоком за раз
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double smoothing, double tolerance, long windowMs) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.windowNanos = windowMs * 1_000_000L;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @param share доля лимита, доступная запросу данного приоритета
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > windowMaxInFlight) {
+                    windowMaxInFlight = current + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        windowRttSum.add(rttNanos);
+        windowSamples.increment();
+
+        long now = System.nanoTime();
+        if (now - windowStart >= windowNanos && updating.compareAndSet(false, true)) {
+            try {
+                update(now);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void update(long now) {
+        long samples = windowSamples.sumThenReset();
+        long rttSum = windowRttSum.sumThenReset();
+        int maxInFlight = windowMaxInFlight;
+        windowMaxInFlight = 0;
+        windowStart = now;
+        if (samples == 0) {
+            return;
+        }
+
+        double shortRtt = (double) rttSum / samples;
+        longRttNanos = longRttNanos == 0
+                ? shortRtt
+                : longRttNanos * (1 - LONG_RTT_SMOOTHING) + shortRtt * LONG_RTT_SMOOTHING;
+        // после всплеска задержки долгое среднее должно быстро вернуться вниз
+        if (longRttNanos / shortRtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // нагрузка меньше половины лимита — RTT ничего не говорит о перегрузке
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        int previous = limit;
+        limit = (int) estimatedLimit;
+        if (previous != limit) {
+            log.debug("Concurrency limit {} -> {} (shortRtt={}us, longRtt={}us)",
+                    previous, limit, (long) shortRtt / 1000, (long) longRttNanos / 1000);
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,65 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.shmatov.bulkhead.Bulkhead;
+import ru.shmatov.bulkhead.BulkheadRegistry;
+import ru.shmatov.config.properties.BulkheadProperties;
+import ru.shmatov.config.security.filter.BulkheadFilter;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    @Value("${database.pool.maximum-size}")
+    private int maximumPoolSize;
+    @Value("${database.pool.auto-size.enabled}")
+    private boolean autoSizeEnabled;
+    @Value("${database.pool.auto-size.min-size}")
+    private int autoSizeMinSize;
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        // автоподбор может сжать пул до min-size — бюджеты должны помещаться и в него
+        int poolSize = autoSizeEnabled ? autoSizeMinSize : maximumPoolSize;
+        int budget = properties.getGroups().stream().mapToInt(BulkheadProperties.Group::getMaxConnections).sum();
+        if (budget > poolSize) {
+            throw new IllegalStateException("Bulkhead connection budgets (" + budget
+                    + ") exceed database pool size (" + poolSize + ")");
+        }
+        log.info("Bulkhead connection budgets: {} of {}, {} left for background tasks",
+                budget, poolSize, poolSize - budget);
+
+        BulkheadRegistry registry = new BulkheadRegistry(properties);
+        for (Bulkhead bulkhead : registry.getBulkheads()) {
+            Gauge.builder("bulkhead.calls.available", bulkhead, Bulkhead::getAvailableCalls)
+                    .tag("bulkhead", bulkhead.getName()).register(meterRegistry);
+            Gauge.builder("bulkhead.queue.size", bulkhead, Bulkhead::getWaiting)
+                    .tag("bulkhead", bulkhead.getName()).register(meterRegistry);
+            Gauge.builder("bulkhead.connections.available", bulkhead, Bulkhead::getAvailableConnections)
+                    .tag("bulkhead", bulkhead.getName()).register(meterRegistry);
+        }
+        return registry;
+    }
+
+    // внутри лимита параллельности, но до Spring Security: JwtFilter уже ходит в БД за пользователем
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(BulkheadRegistry registry,
+                                                                 BulkheadProperties properties,
+                                                                 MeterRegistry meterRegistry) {
+        FilterRegistrationBean<BulkheadFilter> registration = new FilterRegistrationBean<>(
+                new BulkheadFilter(registry, properties.getRetryAfterSeconds(), meterRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(properties.isEnabled());
+        return registration;
+    }
+}
@@ -3,6 +3,7 @@ package ru.shmatov.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import ru.shmatov.config.security.filter.JwtFilter;
+import ru.shmatov.service.TokenRevocationService;
 import ru.shmatov.util.JwtUtil;
 
 @Configuration
@@ -14,7 +15,9 @@ public class ComponentConfig {
     }
 
     @Bean
-    public JwtFilter jwtFilter(JwtUtil jwtUtil, org.springframework.security.core.userdetails.UserDetailsService userDetailsService) {
-        return new JwtFilter(jwtUtil, userDetailsService);
+    public JwtFilter jwtFilter(JwtUtil jwtUtil,
+                               org.springframework.security.core.userdetails.UserDetailsService userDetailsService,
+                               TokenRevocationService tokenRevocationService) {
+        return new JwtFilter(jwtUtil, userDetailsService, tokenRevocationService);
     }
 }
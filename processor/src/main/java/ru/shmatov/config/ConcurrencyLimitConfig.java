@@ -0,0 +1,57 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.shmatov.concurrency.AdaptiveConcurrencyLimiter;
+import ru.shmatov.config.security.filter.ConcurrencyLimitFilter;
+
+import java.util.List;
+import java.util.Set;
+
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    @Value("${concurrency-limit.initial-limit}")
+    private int initialLimit;
+    @Value("${concurrency-limit.min-limit}")
+    private int minLimit;
+    @Value("${concurrency-limit.max-limit}")
+    private int maxLimit;
+    @Value("${concurrency-limit.smoothing}")
+    private double smoothing;
+    @Value("${concurrency-limit.rtt-tolerance}")
+    private double rttTolerance;
+    @Value("${concurrency-limit.window-ms}")
+    private long windowMs;
+    @Value("${concurrency-limit.critical-paths}")
+    private List<String> criticalPaths;
+    @Value("${concurrency-limit.normal-share}")
+    private double normalShare;
+    @Value("${concurrency-limit.low-share}")
+    private double lowShare;
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                initialLimit, minLimit, maxLimit, smoothing, rttTolerance, windowMs);
+        Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("concurrency.limit.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+        return limiter;
+    }
+
+    // фильтр стоит перед цепочкой Spring Security, чтобы сбрасывать нагрузку до похода в БД за пользователем
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(limiter, Set.copyOf(criticalPaths), normalShare, lowShare, meterRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 2);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -1,12 +1,24 @@
 package ru.shmatov.config;
 
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.shmatov.bulkhead.BulkheadDataSource;
+import ru.shmatov.datasource.PoolAutoSizer;
+import ru.shmatov.datasource.ReadWriteRoutingDataSource;
+import ru.shmatov.datasource.ReadYourWritesTracker;
+import ru.shmatov.datasource.HikariPools;
+import ru.shmatov.shard.ShardRoutingDataSource;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class DatabaseConfig {
@@ -19,20 +31,117 @@ public class DatabaseConfig {
     private String url;
     @Value("${database.driver}")
     private String driver;
+    @Value("${database.pool.maximum-size}")
+    private int maximumPoolSize;
+    @Value("${database.pool.minimum-idle}")
+    private int minimumIdle;
+    @Value("${database.pool.connection-timeout-ms}")
+    private long connectionTimeoutMs;
+    @Value("${database.pool.leak-detection-threshold-ms}")
+    private long leakDetectionThresholdMs;
+    @Value("${database.replica-urls}")
+    private List<String> replicaUrls;
+    @Value("${database.replica-pool.maximum-size}")
+    private int replicaMaximumPoolSize;
+    @Value("${database.shard-urls}")
+    private List<String> shardUrls;
+    @Value("${database.shard-pool.maximum-size}")
+    private int shardMaximumPoolSize;
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource primaryPool(MeterRegistry meterRegistry) {
+        return pool("primary", url, maximumPoolSize, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariPools replicaPools(MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            pools.add(pool("replica-" + i, replicaUrls.get(i), replicaMaximumPoolSize, meterRegistry));
+        }
+        return new HikariPools(pools);
+    }
+
+    // шард 0 — database.url, шард N — N-й адрес из database.shard-urls
+    @Bean(destroyMethod = "close")
+    public HikariPools shardPools(MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < shardUrls.size(); i++) {
+            pools.add(pool("shard-" + (i + 1), shardUrls.get(i), shardMaximumPoolSize, meterRegistry));
+        }
+        return new HikariPools(pools);
+    }
 
     @Bean
-    public DataSource dataSource() {
+    @ConditionalOnProperty(prefix = "database.pool.auto-size", name = "enabled", havingValue = "true")
+    public PoolAutoSizer primaryPoolAutoSizer(HikariDataSource primaryPool,
+                                              MeterRegistry meterRegistry,
+                                              @Value("${database.pool.auto-size.min-size}") int minSize,
+                                              @Value("${database.pool.auto-size.max-size}") int maxSize,
+                                              @Value("${database.pool.auto-size.step}") int step,
+                                              @Value("${database.pool.auto-size.acquire-ratio}") double acquireRatio,
+                                              @Value("${database.pool.auto-size.latency-tolerance}") double latencyTolerance,
+                                              @Value("${database.pool.auto-size.shrink-after-idle-ticks}") int shrinkAfterIdleTicks) {
+        return new PoolAutoSizer(primaryPool, meterRegistry, minSize, maxSize,
+                step, acquireRatio, latencyTolerance, shrinkAfterIdleTicks);
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${database.read-your-writes.pin-ms}") long pinMs,
+                                                       MeterRegistry meterRegistry) {
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(pinMs);
+        meterRegistry.gauge("database.read-your-writes.pinned", tracker, ReadYourWritesTracker::size);
+        return tracker;
+    }
+
+    // реплики пока настраиваются только для шарда 0
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource primaryPool,
+                                                         HikariPools replicaPools,
+                                                         HikariPools shardPools,
+                                                         ReadYourWritesTracker readYourWritesTracker) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(readWrite(primaryPool, replicaPools.getDataSources(), readYourWritesTracker));
+        for (DataSource shard : shardPools.getDataSources()) {
+            shards.add(readWrite(shard, List.of(), readYourWritesTracker));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // lazy -> бюджеты групп -> шард -> primary/реплика по read-only флагу транзакции -> пулы
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(new BulkheadDataSource(shardRoutingDataSource, meterRegistry));
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    private DataSource readWrite(DataSource primary, List<DataSource> replicas, ReadYourWritesTracker tracker) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas, tracker);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private HikariDataSource pool(String name, String jdbcUrl, int maxSize, MeterRegistry meterRegistry) {
         HikariDataSource datasource = new HikariDataSource();
+        datasource.setPoolName(name);
         datasource.setDriverClassName(driver);
-        datasource.setJdbcUrl(url);
+        datasource.setJdbcUrl(jdbcUrl);
         datasource.setUsername(username);
         datasource.setPassword(password);
+        datasource.setMaximumPoolSize(maxSize);
+        datasource.setMinimumIdle(Math.min(minimumIdle, maxSize));
+        datasource.setConnectionTimeout(connectionTimeoutMs);
+        datasource.setLeakDetectionThreshold(leakDetectionThresholdMs);
+        // пакет одинаковых INSERT драйвер отправляет многострочными запросами, а не по одному
+        datasource.addDataSourceProperty("reWriteBatchedInserts", true);
+        // hikaricp.connections.{active,idle,pending,acquire,usage} с тегом pool
+        datasource.setMetricRegistry(meterRegistry);
         return datasource;
     }
 
-    @Bean
-    public JdbcTemplate jdbcTemplate() {
-        return new JdbcTemplate(dataSource());
-    }
-
 }
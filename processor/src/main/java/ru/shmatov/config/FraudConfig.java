@@ -0,0 +1,27 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.shmatov.config.properties.FraudProperties;
+import ru.shmatov.fraud.ActivityTracker;
+
+@Configuration
+@EnableConfigurationProperties(FraudProperties.class)
+public class FraudConfig {
+
+    @Bean
+    public ActivityTracker activityTracker(FraudProperties properties, MeterRegistry meterRegistry) {
+        // кольцо видит не больше ring-capacity событий: порог по числу событий должен быть меньше
+        for (FraudProperties.Rule rule : properties.getRules()) {
+            boolean counted = rule.getMetric() != FraudProperties.Metric.SENDER_AMOUNT
+                    && rule.getMetric() != FraudProperties.Metric.RECIPIENT_AMOUNT;
+            if (counted && rule.getThreshold() >= properties.getRingCapacity()) {
+                throw new IllegalStateException("fraud-check rule " + rule.getName()
+                        + " threshold must be below ring-capacity " + properties.getRingCapacity());
+            }
+        }
+        return new ActivityTracker(properties.getRingCapacity(), properties.getIdleEvictionMs(), meterRegistry);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.shmatov.config.properties.JournalProperties;
+import ru.shmatov.journal.MappedTransferJournal;
+import ru.shmatov.journal.TransferJournal;
+
+import java.nio.file.Path;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(JournalProperties.class)
+public class JournalConfig {
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "journal", name = "enabled", havingValue = "true")
+    public MappedTransferJournal transferJournal(JournalProperties properties, MeterRegistry meterRegistry) {
+        return new MappedTransferJournal(
+                Path.of(properties.getDirectory()),
+                properties.getRecordsPerSegment(),
+                meterRegistry
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "journal", name = "enabled", havingValue = "false", matchIfMissing = true)
+    public TransferJournal disabledTransferJournal() {
+        log.info("Transfer journal is disabled");
+        return transfer -> {
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import ru.shmatov.config.properties.RateLimitProperties;
+import ru.shmatov.config.security.filter.RateLimitFilter;
+import ru.shmatov.ratelimit.LocalRateLimiter;
+import ru.shmatov.ratelimit.RateLimiter;
+import ru.shmatov.ratelimit.RedisRateLimiter;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    @Bean
+    public LocalRateLimiter localRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new LocalRateLimiter(properties.getIdleEvictionMs(), meterRegistry);
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(LocalRateLimiter localRateLimiter,
+                                           StringRedisTemplate redisTemplate,
+                                           RateLimitProperties properties,
+                                           MeterRegistry meterRegistry) {
+        RateLimiter rateLimiter = properties.getMode() == RateLimitProperties.Mode.REDIS
+                ? new RedisRateLimiter(redisTemplate, localRateLimiter)
+                : localRateLimiter;
+        return new RateLimitFilter(rateLimiter, properties, meterRegistry);
+    }
+}
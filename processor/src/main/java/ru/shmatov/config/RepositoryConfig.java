@@ -1,31 +1,73 @@
 package ru.shmatov.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.core.JdbcTemplate;
 import ru.shmatov.repository.*;
 import ru.shmatov.repository.impl.*;
+import ru.shmatov.shard.ShardRouter;
 
 @Configuration
 public class RepositoryConfig {
 
     @Bean
-    public AccountRepository accountRepository(JdbcTemplate jdbcTemplate) {
-        return new AccountRepositoryImpl(jdbcTemplate);
+    public AccountRepository accountRepository(ShardRouter shardRouter) {
+        return new AccountRepositoryImpl(shardRouter);
     }
 
     @Bean
-    public AccountBalanceRepository accountBalanceRepository(JdbcTemplate jdbcTemplate) {
-        return new AccountBalanceRepositoryImpl(jdbcTemplate);
+    public AccountBalanceRepository accountBalanceRepository(ShardRouter shardRouter) {
+        return new AccountBalanceRepositoryImpl(shardRouter);
     }
 
     @Bean
-    public TransactionRepository transactionRepository(JdbcTemplate jdbcTemplate) {
-        return new TransactionRepositoryImpl(jdbcTemplate);
+    public TransactionRepository transactionRepository(ShardRouter shardRouter,
+                                                       @Value("${archive.transfers.age-ms}") long archiveAgeMs) {
+        return new TransactionRepositoryImpl(shardRouter, archiveAgeMs);
     }
 
     @Bean
-    public UserRepository userRepository(JdbcTemplate jdbcTemplate) {
-        return new UserRepositoryImpl(jdbcTemplate);
+    public PendingTransferRepository pendingTransferRepository(ShardRouter shardRouter) {
+        return new PendingTransferRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public TransferRepository transferRepository(ShardRouter shardRouter) {
+        return new TransferRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public TransferSagaRepository transferSagaRepository(ShardRouter shardRouter) {
+        return new TransferSagaRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public ScheduledTransferRepository scheduledTransferRepository(ShardRouter shardRouter) {
+        return new ScheduledTransferRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public BalanceCheckpointRepository balanceCheckpointRepository(ShardRouter shardRouter) {
+        return new BalanceCheckpointRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public BalanceTotalsRepository balanceTotalsRepository(ShardRouter shardRouter) {
+        return new BalanceTotalsRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public EodBatchRepository eodBatchRepository(ShardRouter shardRouter) {
+        return new EodBatchRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public BulkImportRepository bulkImportRepository(ShardRouter shardRouter) {
+        return new BulkImportRepositoryImpl(shardRouter);
+    }
+
+    @Bean
+    public UserRepository userRepository(ShardRouter shardRouter) {
+        return new UserRepositoryImpl(shardRouter);
     }
 }
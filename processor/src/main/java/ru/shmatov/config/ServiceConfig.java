@@ -1,15 +1,47 @@
 package ru.shmatov.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.shmatov.config.properties.EodBatchProperties;
+import ru.shmatov.config.properties.FraudProperties;
+import ru.shmatov.config.properties.ImportProperties;
+import ru.shmatov.config.properties.ScheduledTransferProperties;
+import ru.shmatov.config.properties.SpendingLimitProperties;
+import ru.shmatov.config.properties.TransferSagaProperties;
+import ru.shmatov.fraud.ActivityTracker;
+import ru.shmatov.fraud.FraudRule;
+import ru.shmatov.fraud.ThresholdRule;
+import ru.shmatov.journal.TransferJournal;
+import ru.shmatov.limit.SpendingCounter;
 import ru.shmatov.repository.*;
 import ru.shmatov.service.*;
 import ru.shmatov.service.impl.*;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.TokenRevocationRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
+@EnableConfigurationProperties({
+        TransferSagaProperties.class,
+        ScheduledTransferProperties.class,
+        EodBatchProperties.class,
+        ImportProperties.class
+})
 public class ServiceConfig {
 
     @Bean
@@ -17,13 +49,67 @@ public class ServiceConfig {
             AccountRepository accountRepository,
             UserRepository userRepository,
             AccountBalanceRepository accountBalanceRepository,
-            TransactionRepository transactionRepository
+            TransactionRepository transactionRepository,
+            BalanceCheckpointService balanceCheckpointService,
+            BalanceTotalsRepository balanceTotalsRepository
     ) {
         return new AccountServiceImpl(
                 accountRepository,
                 userRepository,
                 accountBalanceRepository,
-                transactionRepository
+                transactionRepository,
+                balanceCheckpointService,
+                balanceTotalsRepository
+        );
+    }
+
+    @Bean
+    public BalanceCheckpointService balanceCheckpointService(
+            ShardRouter shardRouter,
+            BalanceCheckpointRepository balanceCheckpointRepository,
+            TransactionRepository transactionRepository,
+            TransferSagaRepository transferSagaRepository
+    ) {
+        return new BalanceCheckpointServiceImpl(
+                shardRouter,
+                balanceCheckpointRepository,
+                transactionRepository,
+                transferSagaRepository
+        );
+    }
+
+    @Bean
+    public EndOfDayBatchService endOfDayBatchService(
+            ShardRouter shardRouter,
+            EodBatchRepository eodBatchRepository,
+            BalanceTotalsRepository balanceTotalsRepository,
+            ExecutorService eodBatchExecutor,
+            EodBatchProperties eodBatchProperties
+    ) {
+        return new EndOfDayBatchServiceImpl(shardRouter, eodBatchRepository, balanceTotalsRepository, eodBatchExecutor,
+                eodBatchProperties);
+    }
+
+    // пакет конца дня проводит диапазоны в своём пуле: каждый поток держит одно соединение
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService eodBatchExecutor(EodBatchProperties eodBatchProperties) {
+        return Executors.newFixedThreadPool(eodBatchProperties.getParallelism(), new CustomizableThreadFactory("eod-batch-"));
+    }
+
+    @Bean
+    public ImportService importService(
+            ShardRouter shardRouter,
+            BulkImportRepository bulkImportRepository,
+            ExecutorService importHashingExecutor,
+            ImportProperties importProperties
+    ) {
+        // тот же BCrypt, что и при регистрации, но без ограничивающей очереди: пул у импорта свой
+        return new ImportServiceImpl(
+                shardRouter,
+                bulkImportRepository,
+                new BCryptPasswordEncoder(),
+                importHashingExecutor,
+                importProperties
         );
     }
 
@@ -32,21 +118,121 @@ public class ServiceConfig {
         return new RedisServiceImpl(redisTemplate);
     }
 
+    @Bean
+    public RefreshTokenService refreshTokenService(StringRedisTemplate redisTemplate) {
+        return new RefreshTokenServiceImpl(redisTemplate);
+    }
+
+    @Bean
+    public TokenRevocationService tokenRevocationService(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Value("${jwt.revocation.bucket-ms}") long bucketMs
+    ) {
+        TokenRevocationServiceImpl service =
+                new TokenRevocationServiceImpl(redisTemplate, new TokenRevocationRegistry(bucketMs));
+        listenerContainer.addMessageListener(service, new ChannelTopic(TokenRevocationServiceImpl.CHANNEL));
+        return service;
+    }
+
     @Bean
     public TransactionService transactionService(
             TransactionRepository transactionRepository,
+            PendingTransferRepository pendingTransferRepository,
+            TransferRepository transferRepository,
             AccountRepository accountRepository,
             AccountBalanceRepository accountBalanceRepository,
-            UserRepository userRepository
+            BalanceTotalsRepository balanceTotalsRepository,
+            UserRepository userRepository,
+            TransferSagaService transferSagaService,
+            TransferJournal transferJournal
     ) {
         return new TransactionServiceImpl(
                 transactionRepository,
+                pendingTransferRepository,
+                transferRepository,
                 accountRepository,
                 accountBalanceRepository,
-                userRepository
+                balanceTotalsRepository,
+                userRepository,
+                transferSagaService,
+                transferJournal
         );
     }
 
+    @Bean
+    public ScheduledTransferService scheduledTransferService(
+            ShardRouter shardRouter,
+            ScheduledTransferRepository scheduledTransferRepository,
+            TransactionService transactionService,
+            TransactionRepository transactionRepository,
+            AccountRepository accountRepository,
+            AccountBalanceRepository accountBalanceRepository,
+            SpendingLimitService spendingLimitService,
+            ExecutorService scheduledTransferExecutor,
+            ScheduledTransferProperties scheduledTransferProperties
+    ) {
+        return new ScheduledTransferServiceImpl(
+                shardRouter,
+                scheduledTransferRepository,
+                transactionService,
+                transactionRepository,
+                accountRepository,
+                accountBalanceRepository,
+                spendingLimitService,
+                scheduledTransferExecutor,
+                scheduledTransferProperties
+        );
+    }
+
+    // исполнители отложенных переводов: каждый держит одно соединение на время проводки
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService scheduledTransferExecutor(ScheduledTransferProperties scheduledTransferProperties) {
+        return Executors.newFixedThreadPool(scheduledTransferProperties.getWorkers(), new CustomizableThreadFactory("scheduled-transfer-"));
+    }
+
+    @Bean
+    public TransferSagaService transferSagaService(
+            ShardRouter shardRouter,
+            TransferRepository transferRepository,
+            TransferSagaRepository transferSagaRepository,
+            AccountBalanceRepository accountBalanceRepository,
+            BalanceTotalsRepository balanceTotalsRepository,
+            SpendingLimitService spendingLimitService,
+            TransferJournal transferJournal,
+            TransferSagaProperties transferSagaProperties,
+            MeterRegistry meterRegistry
+    ) {
+        return new TransferSagaServiceImpl(
+                shardRouter,
+                transferRepository,
+                transferSagaRepository,
+                accountBalanceRepository,
+                balanceTotalsRepository,
+                spendingLimitService,
+                transferJournal,
+                transferSagaProperties,
+                meterRegistry
+        );
+    }
+
+    @Bean
+    public DeletionPurgeService deletionPurgeService(
+            ShardRouter shardRouter,
+            AccountRepository accountRepository,
+            AccountBalanceRepository accountBalanceRepository
+    ) {
+        return new DeletionPurgeServiceImpl(shardRouter, accountRepository, accountBalanceRepository);
+    }
+
+    @Bean
+    public TransferArchiveService transferArchiveService(
+            ShardRouter shardRouter,
+            TransferRepository transferRepository
+    ) {
+        return new TransferArchiveServiceImpl(shardRouter, transferRepository);
+    }
+
     @Bean
     public TransferService transferService(
             UserRepository userRepository,
@@ -54,7 +240,9 @@ public class ServiceConfig {
             AccountRepository accountRepository,
             AccountBalanceRepository accountBalanceRepository,
             RedisService redisService,
-            TransactionRepository transactionRepository
+            PendingTransferRepository pendingTransferRepository,
+            SpendingLimitService spendingLimitService,
+            FraudCheckService fraudCheckService
     ) {
         return new TransferServiceImpl(
                 userRepository,
@@ -62,12 +250,40 @@ public class ServiceConfig {
                 accountRepository,
                 accountBalanceRepository,
                 redisService,
-                transactionRepository
+                pendingTransferRepository,
+                spendingLimitService,
+                fraudCheckService
         );
     }
 
+    // правила из fraud-check.rules и любые бины FraudRule, в порядке @Order
     @Bean
-    public UserDetailsService userDetailsService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
-        return new UserServiceImpl(userRepository, passwordEncoder);
+    public FraudCheckService fraudCheckService(
+            ActivityTracker activityTracker,
+            FraudProperties fraudProperties,
+            ObjectProvider<FraudRule> customFraudRules,
+            MeterRegistry meterRegistry
+    ) {
+        List<FraudRule> rules = new ArrayList<>();
+        fraudProperties.getRules().forEach(rule -> rules.add(new ThresholdRule(rule)));
+        customFraudRules.orderedStream().forEach(rules::add);
+        return new FraudCheckServiceImpl(activityTracker, rules, fraudProperties, meterRegistry);
+    }
+
+    @Bean
+    public SpendingLimitService spendingLimitService(
+            SpendingCounter spendingCounter,
+            SpendingLimitProperties spendingLimitProperties
+    ) {
+        return new SpendingLimitServiceImpl(spendingCounter, spendingLimitProperties);
+    }
+
+    @Bean
+    public UserDetailsService userDetailsService(
+            UserRepository userRepository,
+            PasswordEncoder passwordEncoder,
+            ShardRouter shardRouter
+    ) {
+        return new UserServiceImpl(userRepository, passwordEncoder, shardRouter);
     }
 }
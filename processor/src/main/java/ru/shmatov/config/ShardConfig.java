@@ -0,0 +1,50 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.shmatov.bulkhead.BulkheadDataSource;
+import ru.shmatov.datasource.HikariPools;
+import ru.shmatov.shard.ShardDirectory;
+import ru.shmatov.shard.ShardKeys;
+import ru.shmatov.shard.ShardMigrator;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.shard.ShardRoutingDataSource;
+
+import java.util.List;
+
+@Configuration
+public class ShardConfig {
+
+    @Bean
+    public ShardRouter shardRouter(JdbcTemplate jdbcTemplate,
+                                   ShardRoutingDataSource shardRoutingDataSource,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   ShardMigrator shardMigrator,
+                                   @Value("${database.shard-directory.cache-size}") int directoryCacheSize) {
+        int shardCount = shardRoutingDataSource.getShards().size();
+        if (shardCount > ShardKeys.MAX_SHARDS) {
+            throw new IllegalStateException("At most " + ShardKeys.MAX_SHARDS + " shards are supported, got " + shardCount);
+        }
+        // соединения мимо текущей транзакции — для чтения чужого шарда
+        List<JdbcTemplate> direct = shardRoutingDataSource.getShards().stream()
+                .map(shard -> new JdbcTemplate(new BulkheadDataSource(shard, meterRegistry)))
+                .toList();
+        ShardDirectory directory = new ShardDirectory(direct, directoryCacheSize);
+        // с одним шардом всё лежит на нём, справочник не нужен
+        if (shardCount > 1) {
+            directory.load();
+        }
+        return new ShardRouter(jdbcTemplate, direct, transactionManager, directory);
+    }
+
+    @Bean(initMethod = "migrate")
+    public ShardMigrator shardMigrator(HikariPools shardPools,
+                                       @Value("${spring.flyway.locations}") String[] locations) {
+        return new ShardMigrator(shardPools.getDataSources(), locations);
+    }
+}
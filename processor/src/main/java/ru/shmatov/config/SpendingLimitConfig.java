@@ -0,0 +1,30 @@
+package ru.shmatov.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import ru.shmatov.config.properties.SpendingLimitProperties;
+import ru.shmatov.limit.LocalSpendingCounter;
+import ru.shmatov.limit.RedisSpendingCounter;
+import ru.shmatov.limit.SpendingCounter;
+
+@Configuration
+@EnableConfigurationProperties(SpendingLimitProperties.class)
+public class SpendingLimitConfig {
+
+    @Bean
+    public LocalSpendingCounter localSpendingCounter(SpendingLimitProperties properties, MeterRegistry meterRegistry) {
+        return new LocalSpendingCounter(properties.getBucketCount(), meterRegistry);
+    }
+
+    @Bean
+    public SpendingCounter spendingCounter(LocalSpendingCounter localSpendingCounter,
+                                           StringRedisTemplate redisTemplate,
+                                           SpendingLimitProperties properties) {
+        return properties.getMode() == SpendingLimitProperties.Mode.REDIS
+                ? new RedisSpendingCounter(redisTemplate, localSpendingCounter, properties.getBucketCount())
+                : localSpendingCounter;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bulkhead")
+public class BulkheadProperties {
+
+    private boolean enabled = true;
+    private long connectionWaitMs = 1000;
+    private int retryAfterSeconds = 1;
+    // порядок важен: запрос попадает в первую подходящую группу
+    private List<Group> groups = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Group {
+        private String name;
+        // null — любой метод
+        private String method;
+        private List<String> paths = new ArrayList<>();
+        private int maxConcurrent;
+        private int maxQueue;
+        private long maxWaitMs;
+        private int maxConnections;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "eod-batch")
+public class EodBatchProperties {
+
+    // ширина диапазона id балансов, проводимого одной транзакцией
+    private long chunkSize = 10000;
+    private int parallelism = 4;
+    // служебный баланс банка на каждом шарде, по порядку шардов
+    private long[] houseBalanceIds = new long[0];
+}
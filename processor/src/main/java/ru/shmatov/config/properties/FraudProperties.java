@@ -0,0 +1,41 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.shmatov.fraud.FraudVerdict;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fraud-check")
+public class FraudProperties {
+
+    private boolean enabled = true;
+    // событий в кольце участника; больше самого большого порога по числу событий
+    private int ringCapacity = 32;
+    // не меньше самого длинного окна правил
+    private long idleEvictionMs = 3_600_000;
+    private List<Rule> rules = new ArrayList<>();
+
+    public enum Metric {
+        SENDER_COUNT,
+        SENDER_AMOUNT,
+        SENDER_DISTINCT_COUNTERPARTIES,
+        RECIPIENT_COUNT,
+        RECIPIENT_AMOUNT,
+        RECIPIENT_DISTINCT_COUNTERPARTIES
+    }
+
+    @Getter
+    @Setter
+    public static class Rule {
+        private String name;
+        private Metric metric;
+        private long windowMs;
+        private long threshold;
+        private FraudVerdict action = FraudVerdict.FLAG;
+    }
+}
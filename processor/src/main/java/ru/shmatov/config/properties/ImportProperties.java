@@ -0,0 +1,17 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "user-import")
+public class ImportProperties {
+
+    // пользователей в одной COPY-пачке на шард
+    private int chunkSize = 1000;
+    private int hashingPoolSize = 4;
+    // лимит балансов импортированного пользователя, тот же, что и при регистрации
+    private int balanceCountLimit = 5;
+}
@@ -0,0 +1,17 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "journal")
+public class JournalProperties {
+
+    private boolean enabled = false;
+    private String directory = "journal";
+    // размер сегмента: records-per-segment * 64 байта
+    private int recordsPerSegment = 1 << 20;
+    private long forceIntervalMs = 1000;
+}
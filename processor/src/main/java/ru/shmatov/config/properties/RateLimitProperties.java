@@ -0,0 +1,37 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private Mode mode = Mode.LOCAL;
+    private long idleEvictionMs = 600_000;
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    public enum Mode {
+        LOCAL,
+        REDIS
+    }
+
+    @Getter
+    @Setter
+    public static class Endpoint {
+        private String name;
+        private String method;
+        private String path;
+        private int capacity;
+        private double refillPerSecond;
+        // 0 — общий лимит на эндпоинт не применяется
+        private int globalCapacity;
+        private double globalRefillPerSecond;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "scheduled-transfers")
+public class ScheduledTransferProperties {
+
+    // задач, забираемых узлом за раз и одновременно находящихся у него в работе
+    private int batchSize = 100;
+    private int workers = 4;
+    private long intervalMs = 200;
+    // если узел не закончил задачу за это время, её заберёт другой
+    private long leaseMs = 60000;
+    private int maxAttempts = 5;
+    // пауза перед повтором растёт линейно с номером попытки
+    private long retryBackoffMs = 300000;
+}
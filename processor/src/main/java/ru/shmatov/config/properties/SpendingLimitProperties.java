@@ -0,0 +1,40 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spending-limit")
+public class SpendingLimitProperties {
+
+    private boolean enabled = true;
+    private Mode mode = Mode.LOCAL;
+    // точность окна: сумма выпадает из него корзинами по windowMs / bucketCount
+    private int bucketCount = 24;
+    private long idleEvictionMs = 600_000;
+    private List<Limit> limits = new ArrayList<>();
+
+    public enum Mode {
+        LOCAL,
+        REDIS
+    }
+
+    public enum Scope {
+        BALANCE,
+        ACCOUNT
+    }
+
+    @Getter
+    @Setter
+    public static class Limit {
+        private String name;
+        private Scope scope;
+        private long windowMs;
+        private long maxAmount;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.shmatov.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transfer.saga")
+public class TransferSagaProperties {
+
+    // сколько узел, проводящий перевод, ведёт сагу сам, прежде чем её заберёт восстановление
+    private long leaseMs = 60000;
+    private long recoveryIntervalMs = 10000;
+    // саг, забираемых с шарда за один запуск восстановления
+    private int recoveryBatchSize = 100;
+}
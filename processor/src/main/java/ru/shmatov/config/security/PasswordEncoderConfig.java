@@ -1,16 +1,42 @@
 package ru.shmatov.config.security;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.shmatov.config.properties.ImportProperties;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class PasswordEncoderConfig {
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Value("${password-hashing.pool-size}")
+    private int poolSize;
+    @Value("${password-hashing.queue-capacity}")
+    private int queueCapacity;
+    @Value("${password-hashing.retry-after-seconds}")
+    private long retryAfterSeconds;
+
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(),
+                poolSize,
+                queueCapacity,
+                retryAfterSeconds,
+                meterRegistry
+        );
+    }
+
+    // импорт хэширует пароли в своём пуле, чтобы не занимать очередь входа и регистрации
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService importHashingExecutor(ImportProperties importProperties) {
+        return Executors.newFixedThreadPool(importProperties.getHashingPoolSize(), new CustomizableThreadFactory("import-hashing-"));
     }
-}
\ No newline at end of file
+}
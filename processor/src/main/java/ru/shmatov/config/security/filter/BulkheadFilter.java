@@ -0,0 +1,71 @@
+package ru.shmatov.config.security.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.shmatov.bulkhead.Bulkhead;
+import ru.shmatov.bulkhead.BulkheadContext;
+import ru.shmatov.bulkhead.BulkheadRegistry;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Выполняет запрос в рамках его группы: занимает место среди одновременных запросов группы
+ * и привязывает группу к потоку, чтобы соединения из пула брались из её бюджета.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private final BulkheadRegistry registry;
+    private final int retryAfterSeconds;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Bulkhead bulkhead = registry.find(request.getMethod(), request.getServletPath());
+        if (bulkhead == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean entered;
+        try {
+            entered = bulkhead.tryEnter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entered = false;
+        }
+        if (!entered) {
+            reject(response, bulkhead);
+            return;
+        }
+
+        BulkheadContext.set(bulkhead);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            BulkheadContext.clear();
+            bulkhead.exit();
+        }
+    }
+
+    private void reject(HttpServletResponse response, Bulkhead bulkhead) throws IOException {
+        meterRegistry.counter("bulkhead.rejected", "bulkhead", bulkhead.getName(), "resource", "call").increment();
+        log.debug("Bulkhead {} is saturated: waiting={}", bulkhead.getName(), bulkhead.getWaiting());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Service is overloaded, retry later\"}");
+    }
+}
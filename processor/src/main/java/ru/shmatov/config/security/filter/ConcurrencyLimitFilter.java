@@ -0,0 +1,133 @@
+package ru.shmatov.config.security.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.shmatov.concurrency.AdaptiveConcurrencyLimiter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Отсекает запросы сверх адаптивного лимита сразу, до аутентификации и обращения к БД.
+ * Подтверждения переводов завершают уже начатую работу и могут занять весь лимит,
+ * остальные запросы — только свою долю.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    public enum Priority {
+        CRITICAL,
+        NORMAL,
+        LOW
+    }
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Set<String> criticalPaths;
+    private final double normalShare;
+    private final double lowShare;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getServletPath().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Priority priority = classify(request);
+        if (!limiter.tryAcquire(share(priority))) {
+            shed(response, priority);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean sampled = false;
+        try {
+            chain.doFilter(request, response);
+            // выгрузка выписки и импорт длятся столько, сколько данных передаёт клиент: в RTT их не учитываем
+            sampled = !isBulk(request);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // поток вернулся в пул, а ответ ещё пишется: место освобождается, когда запрос действительно завершится
+                request.getAsyncContext().addListener(new ReleaseOnComplete());
+            } else if (sampled) {
+                limiter.release(System.nanoTime() - start);
+            } else {
+                limiter.release();
+            }
+        }
+    }
+
+    private boolean isBulk(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return path.endsWith("/export") || path.startsWith("/api/admin/");
+    }
+
+    private Priority classify(HttpServletRequest request) {
+        if (criticalPaths.contains(request.getServletPath())) {
+            return Priority.CRITICAL;
+        }
+        if ("GET".equalsIgnoreCase(request.getMethod())) {
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+
+    private double share(Priority priority) {
+        return switch (priority) {
+            case CRITICAL -> 1.0;
+            case NORMAL -> normalShare;
+            case LOW -> lowShare;
+        };
+    }
+
+    private void shed(HttpServletResponse response, Priority priority) throws IOException {
+        meterRegistry.counter("concurrency.limit.shed", "priority", priority.name()).increment();
+        log.debug("Request shed: priority={}, limit={}, inFlight={}",
+                priority, limiter.getLimit(), limiter.getInFlight());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Service is overloaded, retry later\"}");
+    }
+
+    /**
+     * onComplete приходит и после таймаута или ошибки, поэтому место освобождается только здесь.
+     * Длительность асинхронного ответа в RTT не идёт: в неё входит ожидание результата, а не работа процессора.
+     */
+    private class ReleaseOnComplete implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // повторный startAsync сбрасывает слушателей: регистрируемся заново
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.shmatov.config.security.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.shmatov.config.properties.RateLimitProperties;
+import ru.shmatov.ratelimit.RateLimiter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Slf4j
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        RateLimitProperties.Endpoint endpoint = match(request);
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String principal = principal(request);
+        long waitMs = rateLimiter.tryAcquire(
+                endpoint.getName() + ":" + principal, endpoint.getCapacity(), endpoint.getRefillPerSecond());
+        if (waitMs > 0) {
+            reject(response, endpoint, "principal", waitMs);
+            log.debug("Rate limit exceeded on {} by {}", endpoint.getName(), principal);
+            return;
+        }
+
+        if (endpoint.getGlobalCapacity() > 0) {
+            waitMs = rateLimiter.tryAcquire(
+                    "global:" + endpoint.getName(), endpoint.getGlobalCapacity(), endpoint.getGlobalRefillPerSecond());
+            if (waitMs > 0) {
+                reject(response, endpoint, "global", waitMs);
+                log.debug("Global rate limit exceeded on {}", endpoint.getName());
+                return;
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    private RateLimitProperties.Endpoint match(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        String path = request.getServletPath();
+        for (RateLimitProperties.Endpoint endpoint : properties.getEndpoints()) {
+            if (endpoint.getPath().equals(path)
+                    && (endpoint.getMethod() == null || endpoint.getMethod().equalsIgnoreCase(request.getMethod()))) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    // до логина принципала нет — ограничиваем по адресу клиента
+    private String principal(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated()) {
+            return "user:" + auth.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, RateLimitProperties.Endpoint endpoint,
+                        String scope, long waitMs) throws IOException {
+        meterRegistry.counter("ratelimit.rejected", "endpoint", endpoint.getName(), "scope", scope).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMs + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many requests, retry later\"}");
+    }
+}
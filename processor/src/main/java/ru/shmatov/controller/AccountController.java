@@ -8,19 +8,28 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.shmatov.AccountAndBalancesPairDTO;
 import ru.shmatov.AccountMasterBalanceNumberPairDTO;
 import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.StatementFormat;
+import ru.shmatov.enums.TotalsPeriod;
 import ru.shmatov.request.AccountCreateRequest;
 import ru.shmatov.request.BalanceCreateRequest;
 import ru.shmatov.response.AccountViewResponse;
+import ru.shmatov.response.BalanceAtResponse;
+import ru.shmatov.response.BalanceTotalsResponse;
 import ru.shmatov.service.AccountService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.security.Principal;
+import java.time.LocalDate;
 
 @Slf4j
 @RestController
@@ -144,4 +153,76 @@ public class AccountController {
         String oldNumber = accountService.switchPrimaryBalance(principal.getName(), balanceNumber);
         return ResponseEntity.ok(oldNumber);
     }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Остаток баланса на момент времени",
+            description = "Возвращает остаток баланса на указанный момент (мс с эпохи), считая от ближайшего чекпоинта",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Остаток получен",
+                            content = @Content(schema = @Schema(implementation = BalanceAtResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Баланс не найден")
+            }
+    )
+    @GetMapping("/balances/{balanceNumber}/at")
+    public ResponseEntity<BalanceAtResponse> balanceAt(
+            Principal principal,
+            @Parameter(description = "Номер баланса") @PathVariable String balanceNumber,
+            @Parameter(description = "Момент времени, мс с эпохи") @RequestParam long timestamp) {
+
+        log.info("Fetching balance {} at {} for user: {}", balanceNumber, timestamp, principal.getName());
+        return ResponseEntity.ok(accountService.getBalanceAt(principal.getName(), balanceNumber, timestamp));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Обороты баланса",
+            description = "Возвращает поступления и списания баланса за период по дням или по месяцам (UTC)",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Обороты получены",
+                            content = @Content(schema = @Schema(implementation = BalanceTotalsResponse.class))),
+                    @ApiResponse(responseCode = "404", description = "Баланс не найден")
+            }
+    )
+    @GetMapping("/balances/{balanceNumber}/totals")
+    public ResponseEntity<BalanceTotalsResponse> totals(
+            Principal principal,
+            @Parameter(description = "Номер баланса") @PathVariable String balanceNumber,
+            @Parameter(description = "Первый день периода") @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Последний день периода") @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "DAY или MONTH") @RequestParam(defaultValue = "DAY") TotalsPeriod period) {
+
+        log.info("Fetching {} totals of balance {} from {} to {} for user: {}",
+                period, balanceNumber, from, to, principal.getName());
+        return ResponseEntity.ok(accountService.getTotals(principal.getName(), balanceNumber, from, to, period));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Выгрузка выписки по балансу",
+            description = "Потоково отдаёт транзакции баланса за период в формате CSV или JSON Lines",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выписка выгружается"),
+                    @ApiResponse(responseCode = "404", description = "Баланс не найден")
+            }
+    )
+    @GetMapping("/balances/{balanceNumber}/export")
+    public void exportStatement(
+            Principal principal,
+            @Parameter(description = "Номер баланса") @PathVariable String balanceNumber,
+            @Parameter(description = "Формат выписки") @RequestParam(defaultValue = "CSV") StatementFormat format,
+            @Parameter(description = "Начало периода, мс с эпохи") @RequestParam(defaultValue = "0") long from,
+            @Parameter(description = "Конец периода, мс с эпохи") @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+            HttpServletResponse response) throws IOException {
+
+        log.info("Exporting statement of balance {} for user: {}", balanceNumber, principal.getName());
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"statement-" + balanceNumber + "." + format.getExtension() + "\"");
+        accountService.exportStatement(principal.getName(), balanceNumber, from, to, format,
+                response.getOutputStream());
+    }
 }
@@ -0,0 +1,74 @@
+package ru.shmatov.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.request.EodBatchRequest;
+import ru.shmatov.response.EodBatchResponse;
+import ru.shmatov.response.ImportResponse;
+import ru.shmatov.service.EndOfDayBatchService;
+import ru.shmatov.service.ImportService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.security.Principal;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Tag(name = "Admin", description = "Административные операции")
+public class AdminController {
+
+    private final ImportService importService;
+    private final EndOfDayBatchService endOfDayBatchService;
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Импорт пользователей",
+            description = "Загружает пользователей с аккаунтами и мастер-балансами из CSV "
+                    + "(username,telegram_username,password,initial_balance; первая строка — заголовок). "
+                    + "Уже существующие пользователи пропускаются",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Импорт завершён",
+                            content = @Content(schema = @Schema(implementation = ImportResponse.class))),
+                    @ApiResponse(responseCode = "403", description = "Нет роли ADMIN")
+            }
+    )
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportResponse> importUsers(Principal principal, HttpServletRequest request)
+            throws IOException {
+        log.info("Importing users, requested by: {}", principal.getName());
+        return ResponseEntity.ok(importService.importUsers(request.getInputStream()));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Пакетные проводки конца дня",
+            description = "Списывает комиссию (FEE, amount — сумма) или начисляет проценты за день "
+                    + "(INTEREST, amount — годовая ставка в базисных пунктах) по всем балансам. "
+                    + "Повторный запуск с тем же видом и датой продолжает с непроведённых диапазонов",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Пакет завершён",
+                            content = @Content(schema = @Schema(implementation = EodBatchResponse.class))),
+                    @ApiResponse(responseCode = "403", description = "Нет роли ADMIN")
+            }
+    )
+    @PostMapping("/eod")
+    public ResponseEntity<EodBatchResponse> endOfDay(Principal principal, @RequestBody EodBatchRequest request) {
+        log.info("Running EOD batch {} for {}, requested by: {}",
+                request.getKind(), request.getBusinessDate(), principal.getName());
+        return ResponseEntity.ok(endOfDayBatchService.run(
+                request.getKind(),
+                request.getBusinessDate(),
+                request.getAmount() == null ? 0 : request.getAmount()
+        ));
+    }
+}
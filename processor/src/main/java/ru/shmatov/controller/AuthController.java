@@ -1,5 +1,7 @@
 package ru.shmatov.controller;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -8,18 +10,25 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.exception.InvalidRefreshTokenException;
 import ru.shmatov.request.AuthRequest;
+import ru.shmatov.request.RefreshTokenRequest;
 import ru.shmatov.request.RegisterRequest;
+import ru.shmatov.response.APIResponse;
 import ru.shmatov.response.AuthResponse;
 import ru.shmatov.response.RegisterResponse;
+import ru.shmatov.service.RefreshTokenService;
+import ru.shmatov.service.TokenRevocationService;
 import ru.shmatov.service.UserService;
 import ru.shmatov.util.JwtUtil;
 
@@ -35,6 +44,8 @@ public class AuthController {
     private final AuthenticationManager authManager;
     private final UserService userService;
     private final JwtUtil jwtUtil;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
 
     @LogExecutionTime
     @Operation(
@@ -77,8 +88,63 @@ public class AuthController {
         Authentication auth = authManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.username(), request.password())
         );
-        String jwt = jwtUtil.generateToken((UserDetails) auth.getPrincipal());
-        return ResponseEntity.ok(new AuthResponse(jwt));
+        return ResponseEntity.ok(issueTokens((UserDetails) auth.getPrincipal()));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Обновление токена",
+            description = "Обменивает одноразовый refresh-токен на новую пару токенов без повторной проверки пароля",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Токены обновлены",
+                            content = @Content(schema = @Schema(implementation = AuthResponse.class))),
+                    @ApiResponse(responseCode = "401", description = "Refresh-токен недействителен или истёк")
+            }
+    )
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(
+            @RequestBody @Valid RefreshTokenRequest request) {
+        String username = refreshTokenService.consume(request.refreshToken());
+        log.info("Refreshing tokens for user: {}", username);
+        UserDetails user;
+        try {
+            user = userService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            throw new InvalidRefreshTokenException();
+        }
+        if (!user.isEnabled() || !user.isAccountNonLocked()) {
+            throw new InvalidRefreshTokenException();
+        }
+        return ResponseEntity.ok(issueTokens(user));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Выход из системы",
+            description = "Отзывает текущий access-токен на всех узлах и удаляет переданный refresh-токен",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Токены отозваны",
+                            content = @Content(schema = @Schema(implementation = APIResponse.class)))
+            }
+    )
+    @PostMapping("/logout")
+    public ResponseEntity<APIResponse> logout(
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            try {
+                Claims claims = jwtUtil.getClaims(authorization.substring(7));
+                log.info("Logging out user: {}", claims.getSubject());
+                tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime());
+            } catch (JwtException | IllegalArgumentException e) {
+                // просроченный или испорченный токен и так не пройдёт проверку — отзывать нечего
+                log.debug("Logout with invalid access token: {}", e.getMessage());
+            }
+        }
+        if (request != null && request.refreshToken() != null) {
+            refreshTokenService.revoke(request.refreshToken());
+        }
+        return ResponseEntity.ok(new APIResponse("You have logged out"));
     }
 
     @LogExecutionTime
@@ -96,4 +162,16 @@ public class AuthController {
         log.info("Checking registration status for user: {}", username);
         return ResponseEntity.ok(userService.existsByUsername(username));
     }
+
+    private AuthResponse issueTokens(UserDetails user) {
+        long now = System.currentTimeMillis();
+        String jwt = jwtUtil.generateToken(user);
+        String refreshToken = refreshTokenService.issue(user.getUsername());
+        return new AuthResponse(
+                jwt,
+                now + jwtUtil.getExpirationMs(),
+                refreshToken,
+                now + refreshTokenService.getTtlMs()
+        );
+    }
 }
@@ -11,15 +11,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.shmatov.ScheduledTransferDTO;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.request.ScheduledTransferRequest;
 import ru.shmatov.request.TransferRequest;
 import ru.shmatov.response.APIResponse;
 import ru.shmatov.response.TransferResponse;
+import ru.shmatov.service.ScheduledTransferService;
 import ru.shmatov.service.TransferService;
 
 import javax.validation.Valid;
 import java.security.Principal;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -29,6 +33,7 @@ import java.security.Principal;
 public class TransferController {
 
     private final TransferService transferService;
+    private final ScheduledTransferService scheduledTransferService;
 
     @LogExecutionTime
     @Operation(
@@ -93,4 +98,70 @@ public class TransferController {
         );
         return ResponseEntity.ok(resp);
     }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Создание отложенного перевода",
+            description = "Создаёт разовый или регулярный перевод с баланса текущего пользователя. Перевод проводится автоматически в назначенное время.",
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Перевод запланирован",
+                            content = @Content(schema = @Schema(implementation = ScheduledTransferDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректные входные данные"),
+                    @ApiResponse(responseCode = "403", description = "Баланс отправителя и получателя совпадают"),
+                    @ApiResponse(responseCode = "404", description = "Аккаунт или баланс не найдены")
+            }
+    )
+    @PostMapping("/scheduled")
+    public ResponseEntity<ScheduledTransferDTO> schedule(
+            @Parameter(hidden = true) Principal principal,
+            @RequestBody @Valid ScheduledTransferRequest req) {
+
+        log.info("Scheduling {} transfer from {} to {} by user {} for amount {}",
+                req.getRecurrence(), req.getFromBalanceNumber(), req.getToBalanceNumber(),
+                principal.getName(), req.getAmount());
+
+        ScheduledTransferDTO resp = scheduledTransferService.create(
+                principal.getName(),
+                req.getAmount(),
+                req.getFromBalanceNumber(),
+                req.getToBalanceNumber(),
+                req.getFirstRunAt(),
+                req.getRecurrence()
+        );
+        return ResponseEntity.status(HttpStatus.CREATED).body(resp);
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Отложенные переводы",
+            description = "Возвращает отложенные и регулярные переводы с балансов текущего пользователя.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Список переводов"),
+                    @ApiResponse(responseCode = "404", description = "Аккаунт не найден")
+            }
+    )
+    @GetMapping("/scheduled")
+    public ResponseEntity<List<ScheduledTransferDTO>> scheduled(@Parameter(hidden = true) Principal principal) {
+        return ResponseEntity.ok(scheduledTransferService.findAll(principal.getName()));
+    }
+
+    @LogExecutionTime
+    @Operation(
+            summary = "Отмена отложенного перевода",
+            description = "Отменяет активный отложенный или регулярный перевод текущего пользователя.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Перевод отменён"),
+                    @ApiResponse(responseCode = "404", description = "Перевод не найден")
+            }
+    )
+    @DeleteMapping("/scheduled/{id}")
+    public ResponseEntity<APIResponse> cancelScheduled(
+            @Parameter(hidden = true) Principal principal,
+            @Parameter(description = "ID отложенного перевода") @PathVariable Long id) {
+
+        log.info("Cancelling scheduled transfer {} by user {}", id, principal.getName());
+
+        scheduledTransferService.cancel(principal.getName(), id);
+        return ResponseEntity.ok(new APIResponse("Scheduled transfer cancelled"));
+    }
 }
@@ -0,0 +1,24 @@
+package ru.shmatov.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+public class HikariPools implements AutoCloseable {
+
+    private final List<HikariDataSource> pools;
+
+    public HikariPools(List<HikariDataSource> pools) {
+        this.pools = List.copyOf(pools);
+    }
+
+    public List<DataSource> getDataSources() {
+        return List.copyOf(pools);
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.shmatov.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подбирает maximumPoolSize в заданных границах.
+ * Пул растёт, когда потоки дольше ждут соединение, чем держат его, а сама БД отвечает как обычно.
+ * Если растёт время работы с соединением, узкое место в БД, и лишние соединения только углубят
+ * очередь внутри неё — пул сжимается. Долго простаивающий пул тоже сжимается.
+ */
+@Slf4j
+public class PoolAutoSizer {
+
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private final HikariDataSource dataSource;
+    private final MeterRegistry meterRegistry;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final double acquireRatio;
+    private final double latencyTolerance;
+    private final int shrinkAfterIdleTicks;
+
+    private long lastAcquireCount;
+    private double lastAcquireNanos;
+    private long lastUsageCount;
+    private double lastUsageNanos;
+    private double baselineUsageNanos;
+    private int idleTicks;
+
+    public PoolAutoSizer(HikariDataSource dataSource, MeterRegistry meterRegistry, int minSize, int maxSize,
+                         int step, double acquireRatio, double latencyTolerance, int shrinkAfterIdleTicks) {
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.step = step;
+        this.acquireRatio = acquireRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.shrinkAfterIdleTicks = shrinkAfterIdleTicks;
+    }
+
+    @Scheduled(fixedDelayString = "${database.pool.auto-size.interval-ms}")
+    public synchronized void resize() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        Timer acquire = timer("hikaricp.connections.acquire");
+        Timer usage = timer("hikaricp.connections.usage");
+        if (pool == null || acquire == null || usage == null) {
+            return;
+        }
+
+        long acquireCount = acquire.count() - lastAcquireCount;
+        double acquireNanos = acquire.totalTime(TimeUnit.NANOSECONDS) - lastAcquireNanos;
+        long usageCount = usage.count() - lastUsageCount;
+        double usageNanos = usage.totalTime(TimeUnit.NANOSECONDS) - lastUsageNanos;
+        lastAcquireCount += acquireCount;
+        lastAcquireNanos += acquireNanos;
+        lastUsageCount += usageCount;
+        lastUsageNanos += usageNanos;
+        if (acquireCount == 0 || usageCount == 0) {
+            return;
+        }
+
+        double avgAcquire = acquireNanos / acquireCount;
+        double avgUsage = usageNanos / usageCount;
+        // сравниваем с базой до учёта текущего замера; деградировавшие замеры в базу не попадают,
+        // иначе при долгой деградации база подтянется к ней и сжатие прекратится
+        boolean degraded = baselineUsageNanos > 0 && avgUsage > baselineUsageNanos * latencyTolerance;
+        if (!degraded) {
+            baselineUsageNanos = baselineUsageNanos == 0
+                    ? avgUsage
+                    : baselineUsageNanos * (1 - BASELINE_SMOOTHING) + avgUsage * BASELINE_SMOOTHING;
+        }
+
+        int current = dataSource.getHikariConfigMXBean().getMaximumPoolSize();
+        int pending = pool.getThreadsAwaitingConnection();
+        int active = pool.getActiveConnections();
+
+        int target = current;
+        if (degraded) {
+            idleTicks = 0;
+            target = current - step;
+        } else if (pending > 0 || avgAcquire > avgUsage * acquireRatio) {
+            idleTicks = 0;
+            target = current + step;
+        } else if (active < current / 2) {
+            if (++idleTicks >= shrinkAfterIdleTicks) {
+                idleTicks = 0;
+                target = current - step;
+            }
+        } else {
+            idleTicks = 0;
+        }
+
+        target = Math.max(minSize, Math.min(maxSize, target));
+        if (target != current) {
+            dataSource.getHikariConfigMXBean().setMaximumPoolSize(target);
+            log.info("Pool {} resized {} -> {} (acquire={}us, usage={}us, baselineUsage={}us, pending={}, active={})",
+                    dataSource.getPoolName(), current, target, (long) avgAcquire / 1000, (long) avgUsage / 1000,
+                    (long) baselineUsageNanos / 1000, pending, active);
+        }
+    }
+
+    private Timer timer(String name) {
+        return meterRegistry.find(name).tag("pool", dataSource.getPoolName()).timer();
+    }
+}
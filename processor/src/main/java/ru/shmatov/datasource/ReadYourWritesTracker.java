@@ -0,0 +1,44 @@
+package ru.shmatov.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Запоминает пользователей, недавно писавших в primary. Пока окно не истекло, их чтения тоже идут в primary,
+ * чтобы отставание реплики не «откатывало» только что сделанные изменения.
+ * Состояние локально для инстанса: при нескольких инстансах нужна привязка клиента к инстансу.
+ */
+@Slf4j
+public class ReadYourWritesTracker {
+
+    private final Map<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private final long pinMs;
+
+    public ReadYourWritesTracker(long pinMs) {
+        this.pinMs = pinMs;
+    }
+
+    public void pin(String username) {
+        if (pinMs > 0) {
+            pinnedUntil.put(username, System.currentTimeMillis() + pinMs);
+        }
+    }
+
+    public boolean isPinned(String username) {
+        Long until = pinnedUntil.get(username);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${database.read-your-writes.evict-interval-ms}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        pinnedUntil.values().removeIf(until -> until <= now);
+    }
+
+    public int size() {
+        return pinnedUntil.size();
+    }
+}
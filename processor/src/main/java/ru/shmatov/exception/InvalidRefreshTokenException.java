@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class InvalidRefreshTokenException extends BusinessException {
+    public InvalidRefreshTokenException() {
+        super("Refresh token is invalid or expired, please login again");
+    }
+}
@@ -0,0 +1,14 @@
+package ru.shmatov.exception;
+
+import lombok.Getter;
+
+@Getter
+public class PasswordHashingOverloadedException extends BusinessException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingOverloadedException(long retryAfterSeconds) {
+        super("Too many authentication requests, retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
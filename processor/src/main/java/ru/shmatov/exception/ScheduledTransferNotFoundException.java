@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class ScheduledTransferNotFoundException extends BusinessException {
+    public ScheduledTransferNotFoundException(Long id) {
+        super("Scheduled transfer not found: " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class SpendingLimitExceededException extends BusinessException {
+    public SpendingLimitExceededException(String limitName, long maxAmount) {
+        super("Spending limit %s exceeded: at most %d per window".formatted(limitName, maxAmount));
+    }
+}
@@ -0,0 +1,9 @@
+package ru.shmatov.exception;
+
+import ru.shmatov.enums.TransactionStatusEnum;
+
+public class TransactionStatusConflictException extends BusinessException {
+    public TransactionStatusConflictException(Long transactionId, TransactionStatusEnum expected, TransactionStatusEnum target) {
+        super("Transaction " + transactionId + " is no longer " + expected + " and cannot be moved to " + target);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class TransferBlockedException extends BusinessException {
+    public TransferBlockedException(String ruleName) {
+        super("Transfer blocked by fraud check: " + ruleName);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class TransferSagaFailedException extends BusinessException {
+    public TransferSagaFailedException(Long transactionId) {
+        super("Transfer " + transactionId + " could not be completed on the receiver side and was reverted");
+    }
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.exception;
+
+public class TransferSagaPendingException extends BusinessException {
+    public TransferSagaPendingException(Long transactionId) {
+        super("Transfer " + transactionId + " is posted, its receiver side is still being completed");
+    }
+}
@@ -0,0 +1,108 @@
+package ru.shmatov.fraud;
+
+/**
+ * Последние capacity событий одного участника: время, сумма и контрагент в заранее выделенных массивах.
+ * Запись и запросы не создают объектов. Окно, в которое попадает больше capacity событий,
+ * видно только на последних capacity из них, поэтому пороги по числу событий должны быть меньше ёмкости.
+ */
+public class ActivityRing {
+
+    private final long[] times;
+    private final long[] amounts;
+    private final long[] counterparties;
+    private int next;
+    private int size;
+    // вытесненное из трекера кольцо больше не принимает событий: запись в него потерялась бы
+    private volatile boolean retired;
+
+    public ActivityRing(int capacity) {
+        this.times = new long[capacity];
+        this.amounts = new long[capacity];
+        this.counterparties = new long[capacity];
+    }
+
+    /**
+     * Проверяет попытку и записывает её в оба кольца под их замками, так что параллельные переводы
+     * одного участника не проходят проверку по одной и той же истории. Кольцо отправителя всегда
+     * блокируется первым, поэтому взаимоблокировок нет. check прерывает запись исключением.
+     * Возвращает false, если кольцо уже вытеснено: нужно взять из трекера свежие кольца и повторить.
+     */
+    public static boolean checkAndRecord(TransferAttempt attempt, Runnable check) {
+        ActivityRing sender = attempt.sender();
+        ActivityRing recipient = attempt.recipient();
+        synchronized (sender) {
+            synchronized (recipient) {
+                if (sender.retired || recipient.retired) {
+                    return false;
+                }
+                check.run();
+                sender.record(attempt.nowMs(), attempt.amount(), attempt.senderCounterparty());
+                recipient.record(attempt.nowMs(), attempt.amount(), attempt.recipientCounterparty());
+                return true;
+            }
+        }
+    }
+
+    public synchronized void record(long nowMs, long amount, long counterparty) {
+        times[next] = nowMs;
+        amounts[next] = amount;
+        counterparties[next] = counterparty;
+        next = (next + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+    }
+
+    public synchronized int count(long sinceMs) {
+        int count = 0;
+        for (int i = 0; i < size && times[slot(i)] >= sinceMs; i++) {
+            count++;
+        }
+        return count;
+    }
+
+    public synchronized long sum(long sinceMs) {
+        long sum = 0;
+        for (int i = 0; i < size && times[slot(i)] >= sinceMs; i++) {
+            sum += amounts[slot(i)];
+        }
+        return sum;
+    }
+
+    // различные контрагенты в окне вместе с candidate; квадратично по числу событий, зато без множеств
+    public synchronized int distinct(long sinceMs, long candidate) {
+        int distinct = 1;
+        for (int i = 0; i < size && times[slot(i)] >= sinceMs; i++) {
+            long counterparty = counterparties[slot(i)];
+            boolean seen = counterparty == candidate;
+            for (int j = 0; j < i && !seen; j++) {
+                seen = counterparties[slot(j)] == counterparty;
+            }
+            if (!seen) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    public synchronized boolean isIdle(long nowMs, long idleMs) {
+        return size == 0 || nowMs - times[slot(0)] > idleMs;
+    }
+
+    // под замком кольца, чтобы не вытеснить его посреди checkAndRecord
+    public synchronized boolean retireIfIdle(long nowMs, long idleMs) {
+        if (isIdle(nowMs, idleMs)) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    // i-е событие от последнего
+    private int slot(int i) {
+        return (next - 1 - i + times.length) % times.length;
+    }
+}
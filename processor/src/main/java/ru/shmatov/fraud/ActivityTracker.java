@@ -0,0 +1,61 @@
+package ru.shmatov.fraud;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кольца активности отправителей и получателей в памяти узла. Кольцо создаётся при первом переводе участника
+ * и удаляется, когда его последнее событие старше idle-eviction-ms.
+ */
+@Slf4j
+public class ActivityTracker {
+
+    private final Map<String, ActivityRing> senders = new ConcurrentHashMap<>();
+    private final Map<String, ActivityRing> recipients = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long idleMs;
+
+    public ActivityTracker(int capacity, long idleMs, MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.idleMs = idleMs;
+        Gauge.builder("fraud.activity.rings", this, t -> t.senders.size() + t.recipients.size())
+                .register(meterRegistry);
+    }
+
+    public ActivityRing sender(String key) {
+        return ring(senders, key);
+    }
+
+    public ActivityRing recipient(String key) {
+        return ring(recipients, key);
+    }
+
+    @Scheduled(fixedDelayString = "${fraud-check.idle-eviction-ms}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int before = senders.size() + recipients.size();
+        senders.values().removeIf(ring -> ring.retireIfIdle(now, idleMs));
+        recipients.values().removeIf(ring -> ring.retireIfIdle(now, idleMs));
+        int evicted = before - senders.size() - recipients.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle activity rings", evicted);
+        }
+    }
+
+    private ActivityRing ring(Map<String, ActivityRing> rings, String key) {
+        ActivityRing ring = rings.get(key);
+        if (ring != null && !ring.isRetired()) {
+            return ring;
+        }
+        if (ring != null) {
+            // вытеснение пометило кольцо, но ещё не убрало его из карты
+            rings.remove(key, ring);
+        }
+        return rings.computeIfAbsent(key, k -> new ActivityRing(capacity));
+    }
+}
@@ -0,0 +1,12 @@
+package ru.shmatov.fraud;
+
+/**
+ * Правило предварительной проверки перевода. Вызывается на каждый создаваемый перевод в потоке запроса,
+ * поэтому не должно ходить в сеть или БД. Дополнительные правила подключаются бинами этого типа.
+ */
+public interface FraudRule {
+
+    String name();
+
+    FraudVerdict evaluate(TransferAttempt attempt);
+}
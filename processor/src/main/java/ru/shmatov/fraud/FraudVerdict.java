@@ -0,0 +1,8 @@
+package ru.shmatov.fraud;
+
+public enum FraudVerdict {
+    ALLOW,
+    // перевод проходит, но отмечается в логе и метриках
+    FLAG,
+    BLOCK
+}
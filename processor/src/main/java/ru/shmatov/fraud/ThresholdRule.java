@@ -0,0 +1,43 @@
+package ru.shmatov.fraud;
+
+import ru.shmatov.config.properties.FraudProperties;
+
+/**
+ * Правило из конфигурации: число переводов, их сумма или число различных контрагентов
+ * у отправителя или получателя за последние windowMs вместе с проверяемым переводом больше threshold.
+ */
+public class ThresholdRule implements FraudRule {
+
+    private final String name;
+    private final FraudProperties.Metric metric;
+    private final long windowMs;
+    private final long threshold;
+    private final FraudVerdict action;
+
+    public ThresholdRule(FraudProperties.Rule rule) {
+        this.name = rule.getName();
+        this.metric = rule.getMetric();
+        this.windowMs = rule.getWindowMs();
+        this.threshold = rule.getThreshold();
+        this.action = rule.getAction();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public FraudVerdict evaluate(TransferAttempt a) {
+        long since = a.nowMs() - windowMs;
+        long value = switch (metric) {
+            case SENDER_COUNT -> a.sender().count(since) + 1;
+            case SENDER_AMOUNT -> a.sender().sum(since) + a.amount();
+            case SENDER_DISTINCT_COUNTERPARTIES -> a.sender().distinct(since, a.senderCounterparty());
+            case RECIPIENT_COUNT -> a.recipient().count(since) + 1;
+            case RECIPIENT_AMOUNT -> a.recipient().sum(since) + a.amount();
+            case RECIPIENT_DISTINCT_COUNTERPARTIES -> a.recipient().distinct(since, a.recipientCounterparty());
+        };
+        return value > threshold ? action : FraudVerdict.ALLOW;
+    }
+}
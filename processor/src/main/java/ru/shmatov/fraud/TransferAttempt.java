@@ -0,0 +1,10 @@
+package ru.shmatov.fraud;
+
+/**
+ * Создаваемый перевод и история обоих участников до него. senderCounterparty — ключ получателя
+ * в истории отправителя, recipientCounterparty — ключ отправителя в истории получателя.
+ */
+public record TransferAttempt(long nowMs, long amount,
+                              ActivityRing sender, long senderCounterparty,
+                              ActivityRing recipient, long recipientCounterparty) {
+}
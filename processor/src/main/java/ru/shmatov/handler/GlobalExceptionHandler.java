@@ -1,6 +1,7 @@
 package ru.shmatov.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -32,6 +33,7 @@ public class GlobalExceptionHandler {
             AccountNotFoundException.class,
             BalanceNotFoundException.class,
             ReceiverTransactionNotFoundException.class,
+            ScheduledTransferNotFoundException.class,
             SenderTransactionNotFoundException.class,
             UserNotFoundException.class
     })
@@ -43,7 +45,9 @@ public class GlobalExceptionHandler {
     @ExceptionHandler({
             AccountAlreadyExistsException.class,
             DuplicateBalanceNumberException.class,
-            UserAlreadyExistsException.class
+            UserAlreadyExistsException.class,
+            TransferSagaFailedException.class,
+            TransactionStatusConflictException.class
     })
     public ResponseEntity<APIResponse> handleConflict(RuntimeException ex) {
         log.warn("Conflict: {}", ex.getMessage(), ex);
@@ -62,6 +66,8 @@ public class GlobalExceptionHandler {
             SecurityBalanceNotBelongAccountException.class,
             SecurityBalanceNotBelongTransactionException.class,
             InsufficientFundsException.class,
+            SpendingLimitExceededException.class,
+            TransferBlockedException.class,
             CantDeletePrimaryAccountException.class,
     })
     public ResponseEntity<APIResponse> handleForbidden(RuntimeException ex) {
@@ -79,6 +85,27 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new APIResponse(ex.getMessage()));
     }
 
+    // списание проведено, зачисление завершит восстановление саги: повторять перевод клиенту не нужно
+    @ExceptionHandler(TransferSagaPendingException.class)
+    public ResponseEntity<APIResponse> handleAccepted(TransferSagaPendingException ex) {
+        log.warn("Accepted: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(new APIResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<APIResponse> handleUnauthorized(RuntimeException ex) {
+        log.warn("Unauthorized: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new APIResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<APIResponse> handleTooManyRequests(PasswordHashingOverloadedException ex) {
+        log.warn("Too many requests: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new APIResponse(ex.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<APIResponse> handleOther(Exception ex) {
         log.error("Unhandled server error", ex); // error level
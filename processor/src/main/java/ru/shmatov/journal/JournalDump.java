@@ -0,0 +1,38 @@
+package ru.shmatov.journal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Выгрузка журнала в CSV для сверки и повторной загрузки:
+ * java -cp processor.jar ru.shmatov.journal.JournalDump <каталог журнала> [с какого номера]
+ */
+public final class JournalDump {
+
+    private JournalDump() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalDump <journal directory> [from sequence]");
+            System.exit(2);
+        }
+        long from = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        out.write("sequence,id,mapped_id,from_balance_id,to_balance_id,amount,created_at\n");
+        long next = new JournalReader(Path.of(args[0])).read(from, r -> {
+            try {
+                out.write(r.sequence() + "," + r.id() + "," + r.mappedId() + "," + r.fromBalanceId() + ","
+                        + r.toBalanceId() + "," + r.amount() + "," + r.createdAt() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+        System.err.println("Next sequence: " + next);
+    }
+}
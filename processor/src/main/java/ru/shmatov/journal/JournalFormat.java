@@ -0,0 +1,77 @@
+package ru.shmatov.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * Формат записи журнала: 64 байта фиксированной длины, поэтому запись с номером n лежит
+ * в сегменте с наибольшим первым номером не больше n по смещению (n - first) * 64.
+ * <pre>
+ *  0 magic  4 crc32c(8..63)  8 sequence  16 id  24 mapped_id
+ * 32 from_balance_id  40 to_balance_id  48 amount  56 created_at
+ * </pre>
+ * magic пишется последним: незаполненный хвост сегмента и недописанная при сбое запись читаются как конец журнала.
+ */
+final class JournalFormat {
+
+    static final int RECORD_SIZE = 64;
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x544A524E;
+    private static final int BODY_OFFSET = 8;
+    private static final int BODY_SIZE = RECORD_SIZE - BODY_OFFSET;
+
+    private JournalFormat() {}
+
+    static void write(ByteBuffer segment, int slot, CRC32C crc, JournalRecord r) {
+        int offset = slot * RECORD_SIZE;
+        segment.putLong(offset + 8, r.sequence());
+        segment.putLong(offset + 16, r.id());
+        segment.putLong(offset + 24, r.mappedId());
+        segment.putLong(offset + 32, r.fromBalanceId());
+        segment.putLong(offset + 40, r.toBalanceId());
+        segment.putLong(offset + 48, r.amount());
+        segment.putLong(offset + 56, r.createdAt());
+        segment.putInt(offset + 4, checksum(segment, offset, crc));
+        segment.putInt(offset, MAGIC);
+    }
+
+    // null — слот пуст или запись повреждена
+    static JournalRecord read(ByteBuffer segment, int slot, CRC32C crc) {
+        int offset = slot * RECORD_SIZE;
+        if (segment.getInt(offset) != MAGIC || segment.getInt(offset + 4) != checksum(segment, offset, crc)) {
+            return null;
+        }
+        return new JournalRecord(
+                segment.getLong(offset + 8),
+                segment.getLong(offset + 16),
+                segment.getLong(offset + 24),
+                segment.getLong(offset + 32),
+                segment.getLong(offset + 40),
+                segment.getLong(offset + 48),
+                segment.getLong(offset + 56));
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d", firstSequence) + SEGMENT_SUFFIX;
+    }
+
+    static Long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(ByteBuffer segment, int offset, CRC32C crc) {
+        crc.reset();
+        crc.update(segment.slice(offset + BODY_OFFSET, BODY_SIZE));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.shmatov.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Последовательное чтение журнала из каталога сегментов. Не зависит от пишущего процесса:
+ * подходит и для чтения живого журнала, и для разбора копии каталога.
+ */
+public class JournalReader {
+
+    private final Path directory;
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Передаёт записи начиная с номера fromSequence, пока не встретит пустой или повреждённый слот.
+     * Возвращает номер, с которого продолжать чтение в следующий раз.
+     */
+    public long read(long fromSequence, Consumer<JournalRecord> action) {
+        NavigableMap<Long, Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return fromSequence;
+        }
+        // номер раньше первого сегмента — читаем с начала того, что есть
+        Long first = segments.floorKey(fromSequence);
+        if (first == null) {
+            first = segments.firstKey();
+            fromSequence = first;
+        }
+        CRC32C crc = new CRC32C();
+        long next = fromSequence;
+        for (Map.Entry<Long, Path> segment : segments.tailMap(first, true).entrySet()) {
+            MappedByteBuffer buffer = map(segment.getValue());
+            int slots = buffer.capacity() / JournalFormat.RECORD_SIZE;
+            for (int slot = (int) (next - segment.getKey()); slot < slots; slot++) {
+                JournalRecord record = JournalFormat.read(buffer, slot, crc);
+                if (record == null) {
+                    return next;
+                }
+                action.accept(record);
+                next++;
+            }
+        }
+        return next;
+    }
+
+    static NavigableMap<Long, Path> segments(Path directory) {
+        NavigableMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Long first = JournalFormat.firstSequence(file);
+                if (first != null) {
+                    segments.put(first, file);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments;
+    }
+
+    private static MappedByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.shmatov.journal;
+
+public record JournalRecord(long sequence,
+                            long id,
+                            long mappedId,
+                            long fromBalanceId,
+                            long toBalanceId,
+                            long amount,
+                            long createdAt) {
+}
@@ -0,0 +1,10 @@
+package ru.shmatov.journal;
+
+import ru.shmatov.model.Transfer;
+
+/**
+ * Локальный журнал проведённых переводов, пишется после коммита.
+ */
+public interface TransferJournal {
+    void append(Transfer transfer);
+}
@@ -0,0 +1,110 @@
+package ru.shmatov.limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Окна в памяти узла. Окна одного вызова блокируются в порядке ключей, так что проверка и добавление
+ * по нескольким окнам атомарны и не взаимоблокируются. Окно вытесняется под своим замком; вызов,
+ * успевший взять вытесняемое окно, замечает это и повторяется со свежим.
+ */
+@Slf4j
+public class LocalSpendingCounter implements SpendingCounter {
+
+    private final Map<String, RollingWindow> windows = new ConcurrentHashMap<>();
+    private final int bucketCount;
+
+    public LocalSpendingCounter(int bucketCount, MeterRegistry meterRegistry) {
+        this.bucketCount = bucketCount;
+        Gauge.builder("spending.limit.windows", windows, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public int tryAdd(List<SpendingWindow> limits, long amount, boolean commit, long now) {
+        List<SpendingWindow> ordered = new ArrayList<>(limits);
+        ordered.sort(Comparator.comparing(SpendingWindow::key));
+        Integer exceeded;
+        do {
+            exceeded = tryAdd(limits, ordered, amount, commit, now);
+        } while (exceeded == null);
+        return exceeded;
+    }
+
+    // null — одно из окон вытеснили, пока мы его брали
+    private Integer tryAdd(List<SpendingWindow> limits, List<SpendingWindow> ordered,
+                           long amount, boolean commit, long now) {
+        List<RollingWindow> locked = new ArrayList<>(ordered.size());
+        try {
+            for (SpendingWindow limit : ordered) {
+                RollingWindow window = windows.computeIfAbsent(limit.key(),
+                        k -> new RollingWindow(limit.windowMs(), bucketCount, now));
+                window.lock().lock();
+                locked.add(window);
+                if (window.isRetired()) {
+                    windows.remove(limit.key(), window);
+                    return null;
+                }
+            }
+            for (int i = 0; i < ordered.size(); i++) {
+                if (locked.get(i).total(now) + amount > ordered.get(i).maxAmount()) {
+                    return limits.indexOf(ordered.get(i));
+                }
+            }
+            if (commit) {
+                locked.forEach(window -> window.add(now, amount));
+            }
+            return -1;
+        } finally {
+            locked.forEach(window -> window.lock().unlock());
+        }
+    }
+
+    // окна нет — значит, оно было пустым и вытеснено: возвращать нечего
+    @Override
+    public void release(List<SpendingWindow> limits, long amount, long reservedAt) {
+        long now = System.currentTimeMillis();
+        for (SpendingWindow limit : limits) {
+            RollingWindow window = windows.get(limit.key());
+            if (window == null) {
+                continue;
+            }
+            window.lock().lock();
+            try {
+                if (!window.isRetired()) {
+                    window.remove(now, reservedAt, amount);
+                }
+            } finally {
+                window.lock().unlock();
+            }
+        }
+    }
+
+    // пустое окно ничем не отличается от нового
+    @Scheduled(fixedDelayString = "${spending-limit.idle-eviction-ms}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int before = windows.size();
+        windows.values().removeIf(window -> {
+            if (!window.lock().tryLock()) {
+                return false;
+            }
+            try {
+                return window.retireIfEmpty(now);
+            } finally {
+                window.lock().unlock();
+            }
+        });
+        int evicted = before - windows.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle spending windows", evicted);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.shmatov.limit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Те же корзины, что и в {@link RollingWindow}, но в хэше Redis: поле на корзину, сумма в поле t, текущая корзина в h.
+ * Все окна проверяются и меняются одним скриптом, поэтому лимит общий для всех узлов.
+ * Если Redis недоступен, решение принимает локальный счётчик.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisSpendingCounter implements SpendingCounter {
+
+    private static final String KEY_PREFIX = "spending:";
+
+    private static final RedisScript<Long> ROLLING_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local amount = tonumber(ARGV[2])
+            local n = tonumber(ARGV[3])
+            local commit = ARGV[4] == '1'
+            local slots = {}
+            for i, key in ipairs(KEYS) do
+                local width = math.max(1, math.floor(tonumber(ARGV[3 + i * 2]) / n))
+                local max = tonumber(ARGV[4 + i * 2])
+                local bucket = math.floor(now / width)
+                local head = tonumber(redis.call('HGET', key, 'h') or bucket)
+                local total = tonumber(redis.call('HGET', key, 't') or 0)
+                if bucket < head then bucket = head end
+                if bucket - head >= n then
+                    redis.call('DEL', key)
+                    total = 0
+                else
+                    for b = head + 1, bucket do
+                        local old = tonumber(redis.call('HGET', key, tostring(b % n)) or 0)
+                        if old ~= 0 then
+                            total = total - old
+                            redis.call('HDEL', key, tostring(b % n))
+                        end
+                    end
+                end
+                redis.call('HSET', key, 'h', string.format('%d', bucket), 't', string.format('%d', total))
+                redis.call('PEXPIRE', key, width * n)
+                if total + amount > max then
+                    return i - 1
+                end
+                slots[i] = tostring(bucket % n)
+            end
+            if commit then
+                for i, key in ipairs(KEYS) do
+                    redis.call('HINCRBY', key, slots[i], amount)
+                    redis.call('HINCRBY', key, 't', amount)
+                end
+            end
+            return -1
+            """, Long.class);
+
+    // корзина резерва ещё в окне, если она не старше n корзин от текущей; сама по себе текущая корзина не сдвигается
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local amount = tonumber(ARGV[2])
+            local n = tonumber(ARGV[3])
+            local at = tonumber(ARGV[4])
+            for i, key in ipairs(KEYS) do
+                local width = math.max(1, math.floor(tonumber(ARGV[4 + i]) / n))
+                local head = tonumber(redis.call('HGET', key, 'h'))
+                local bucket = math.floor(at / width)
+                if head and bucket <= head and math.max(head, math.floor(now / width)) - bucket < n then
+                    local slot = tostring(bucket % n)
+                    local removed = math.min(amount, tonumber(redis.call('HGET', key, slot) or 0))
+                    if removed > 0 then
+                        redis.call('HINCRBY', key, slot, -removed)
+                        redis.call('HINCRBY', key, 't', -removed)
+                    end
+                end
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final LocalSpendingCounter fallback;
+    private final int bucketCount;
+
+    @Override
+    public int tryAdd(List<SpendingWindow> windows, long amount, boolean commit, long nowMs) {
+        List<String> keys = new ArrayList<>(windows.size());
+        List<String> args = new ArrayList<>(4 + windows.size() * 2);
+        args.add(String.valueOf(nowMs));
+        args.add(String.valueOf(amount));
+        args.add(String.valueOf(bucketCount));
+        args.add(commit ? "1" : "0");
+        for (SpendingWindow window : windows) {
+            keys.add(KEY_PREFIX + window.key());
+            args.add(String.valueOf(window.windowMs()));
+            args.add(String.valueOf(window.maxAmount()));
+        }
+        try {
+            Long exceeded = redis.execute(ROLLING_SCRIPT, keys, args.toArray());
+            return exceeded == null ? -1 : exceeded.intValue();
+        } catch (Exception e) {
+            log.warn("Redis spending counter unavailable, using local windows: {}", e.getMessage());
+            return fallback.tryAdd(windows, amount, commit, nowMs);
+        }
+    }
+
+    @Override
+    public void release(List<SpendingWindow> windows, long amount, long reservedAtMs) {
+        List<String> keys = new ArrayList<>(windows.size());
+        List<String> args = new ArrayList<>(4 + windows.size());
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(String.valueOf(amount));
+        args.add(String.valueOf(bucketCount));
+        args.add(String.valueOf(reservedAtMs));
+        for (SpendingWindow window : windows) {
+            keys.add(KEY_PREFIX + window.key());
+            args.add(String.valueOf(window.windowMs()));
+        }
+        try {
+            redis.execute(RELEASE_SCRIPT, keys, args.toArray());
+        } catch (Exception e) {
+            log.warn("Redis spending counter unavailable, releasing in local windows: {}", e.getMessage());
+            fallback.release(windows, amount, reservedAtMs);
+        }
+    }
+}
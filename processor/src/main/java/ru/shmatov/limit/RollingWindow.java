@@ -0,0 +1,85 @@
+package ru.shmatov.limit;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Скользящее окно из фиксированного числа корзин и их суммы. Сдвиг окна вычитает выпавшие корзины из суммы,
+ * поэтому проверка и добавление стоят O(1) независимо от числа переводов. Точность — одна корзина.
+ */
+public class RollingWindow {
+
+    private final long bucketMs;
+    private final long[] buckets;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long head;
+    private long total;
+    // вытесненное окно больше не принимает сумм: они потерялись бы вместе с ним
+    private boolean retired;
+
+    public RollingWindow(long windowMs, int bucketCount, long nowMs) {
+        this.bucketMs = Math.max(1, windowMs / bucketCount);
+        this.buckets = new long[bucketCount];
+        this.head = nowMs / bucketMs;
+    }
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    // вызывать под lock()
+    public long total(long nowMs) {
+        advance(nowMs / bucketMs);
+        return total;
+    }
+
+    // вызывать под lock()
+    public void add(long nowMs, long amount) {
+        advance(nowMs / bucketMs);
+        buckets[(int) (head % buckets.length)] += amount;
+        total += amount;
+    }
+
+    // вызывать под lock(); корзина не уходит в минус, даже если в неё учли меньше, чем возвращают
+    public void remove(long nowMs, long addedAtMs, long amount) {
+        advance(nowMs / bucketMs);
+        long bucket = addedAtMs / bucketMs;
+        if (bucket > head || head - bucket >= buckets.length) {
+            return;
+        }
+        int slot = (int) (bucket % buckets.length);
+        long removed = Math.min(amount, buckets[slot]);
+        buckets[slot] -= removed;
+        total -= removed;
+    }
+
+    // вызывать под lock()
+    public boolean retireIfEmpty(long nowMs) {
+        if (total(nowMs) == 0) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    // вызывать под lock()
+    public boolean isRetired() {
+        return retired;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= head) {
+            return;
+        }
+        if (bucket - head >= buckets.length) {
+            Arrays.fill(buckets, 0);
+            total = 0;
+        } else {
+            for (long b = head + 1; b <= bucket; b++) {
+                int slot = (int) (b % buckets.length);
+                total -= buckets[slot];
+                buckets[slot] = 0;
+            }
+        }
+        head = bucket;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.shmatov.limit;
+
+import java.util.List;
+
+public interface SpendingCounter {
+
+    /**
+     * Проверяет, что amount помещается во все окна, и при commit добавляет его во все сразу.
+     * Если не помещается хотя бы в одно, ни одно окно не меняется.
+     *
+     * @return -1, если сумма помещается, иначе индекс первого превышенного окна
+     */
+    int tryAdd(List<SpendingWindow> windows, long amount, boolean commit, long nowMs);
+
+    /**
+     * Возвращает amount, учтённый в момент reservedAtMs, из той же корзины, куда он попал.
+     * Если корзина уже выпала из окна, возвращать нечего: сумма ушла из окна вместе с ней.
+     */
+    void release(List<SpendingWindow> windows, long amount, long reservedAtMs);
+}
@@ -0,0 +1,7 @@
+package ru.shmatov.limit;
+
+/**
+ * Лимит суммы списаний по ключу за скользящее окно windowMs.
+ */
+public record SpendingWindow(String key, long windowMs, long maxAmount) {
+}
@@ -0,0 +1,16 @@
+package ru.shmatov.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class BalanceCheckpoint {
+    private Long balanceId;
+    private Long asOf;
+    private Long balance;
+    private Long lastEntryId;
+}
@@ -0,0 +1,19 @@
+package ru.shmatov.model;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class BalanceTotals {
+    private LocalDate periodStart;
+    private Long inAmount;
+    private Long outAmount;
+    private Long inCount;
+    private Long outCount;
+}
@@ -0,0 +1,8 @@
+package ru.shmatov.model;
+
+/**
+ * Проводка пакета конца дня по одному балансу. amount со знаком:
+ * отрицательная сумма списывается на служебный баланс, положительная зачисляется с него.
+ */
+public record BatchPosting(Long balanceId, long amount) {
+}
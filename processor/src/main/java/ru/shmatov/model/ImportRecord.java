@@ -0,0 +1,20 @@
+package ru.shmatov.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class ImportRecord {
+    private String username;
+    private String telegramUsername;
+    private String password;
+    private Long initialBalance;
+    private Long userId;
+    private Long accountId;
+    private Long balanceId;
+    private String accountNumber;
+}
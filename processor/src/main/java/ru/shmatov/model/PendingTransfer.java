@@ -0,0 +1,18 @@
+package ru.shmatov.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class PendingTransfer {
+    private Long id;
+    private Long mappedId;
+    private Long fromBalanceId;
+    private Long toBalanceId;
+    private Long amount;
+    private Long createdAt;
+}
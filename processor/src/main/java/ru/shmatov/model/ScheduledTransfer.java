@@ -0,0 +1,25 @@
+package ru.shmatov.model;
+
+import lombok.*;
+import ru.shmatov.enums.ScheduleRecurrence;
+import ru.shmatov.enums.ScheduledTransferStatus;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class ScheduledTransfer {
+    private Long id;
+    private Long fromBalanceId;
+    private Long toBalanceId;
+    private Long amount;
+    private ScheduleRecurrence recurrence;
+    private Long dueAt;
+    private Long nextRunAt;
+    private ScheduledTransferStatus status;
+    private Integer attempts;
+    private String lastError;
+    private Long createdAt;
+}
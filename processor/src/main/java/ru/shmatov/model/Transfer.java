@@ -0,0 +1,20 @@
+package ru.shmatov.model;
+
+import lombok.*;
+import ru.shmatov.enums.TransactionStatusEnum;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class Transfer {
+    private Long id;
+    private Long mappedId;
+    private Long fromBalanceId;
+    private Long toBalanceId;
+    private Long amount;
+    private TransactionStatusEnum status;
+    private Long createdAt;
+}
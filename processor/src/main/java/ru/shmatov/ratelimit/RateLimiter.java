@@ -0,0 +1,9 @@
+package ru.shmatov.ratelimit;
+
+public interface RateLimiter {
+
+    /**
+     * @return 0, если запрос пропущен, иначе через сколько миллисекунд повторить
+     */
+    long tryAcquire(String key, int capacity, double refillPerSecond);
+}
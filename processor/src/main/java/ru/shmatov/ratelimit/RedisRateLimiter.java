@@ -0,0 +1,52 @@
+package ru.shmatov.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Тот же GCRA, что и в {@link TokenBucket}, но состояние хранится в Redis, и лимит общий для всех узлов.
+ * Если Redis недоступен, решение принимает локальный лимитер.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    private static final RedisScript<Long> GCRA_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local interval = tonumber(ARGV[2])
+            local burst = tonumber(ARGV[3])
+            local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+            if tat < now then tat = now end
+            local nextTat = tat + interval
+            if nextTat - now > burst then
+                return math.ceil(nextTat - now - burst)
+            end
+            redis.call('SET', KEYS[1], tostring(nextTat), 'PX', math.ceil(burst) + 1000)
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final LocalRateLimiter fallback;
+
+    @Override
+    public long tryAcquire(String key, int capacity, double refillPerSecond) {
+        double intervalMs = 1000.0 / refillPerSecond;
+        try {
+            Long waitMs = redis.execute(GCRA_SCRIPT, List.of(KEY_PREFIX + key),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(intervalMs),
+                    String.valueOf(intervalMs * capacity));
+            return waitMs == null ? 0 : waitMs;
+        } catch (Exception e) {
+            log.warn("Redis rate limiter unavailable, using local buckets: {}", e.getMessage());
+            return fallback.tryAcquire(key, capacity, refillPerSecond);
+        }
+    }
+}
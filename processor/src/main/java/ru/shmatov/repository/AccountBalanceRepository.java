@@ -11,6 +11,9 @@ public interface AccountBalanceRepository {
     Optional<AccountBalance> findById(Long id);
     Long save(AccountBalance balance);
     String deleteById(Long id);
+    List<String> deleteAllByAccountId(Long accountId);
+    int purgeDeleted(int shard, int limit);
     void updateIsPrimary(Long balanceId, boolean isPrimary);
     void updateBalance(Long balanceId, Long amount);
+    void debit(Long balanceId, long amount);
 }
@@ -10,4 +10,5 @@ public interface AccountRepository {
     Optional<Account> findByAccountNumber(String accountNumber);
     Long save(Account account);
     String deleteByUserUsername(String username);
+    int purgeDeleted(int shard, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.model.BalanceCheckpoint;
+
+import java.util.Optional;
+
+public interface BalanceCheckpointRepository {
+    Optional<BalanceCheckpoint> findLatestAtOrBefore(Long balanceId, long timestamp);
+    Optional<BalanceCheckpoint> findEarliestAfter(Long balanceId, long timestamp);
+    Optional<Long> findLastAsOf(int shard);
+    int writeCheckpoints(int shard, long since, long asOf);
+}
@@ -0,0 +1,14 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.enums.TotalsPeriod;
+import ru.shmatov.model.BalanceTotals;
+import ru.shmatov.model.BatchPosting;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BalanceTotalsRepository {
+    void add(Long balanceId, long createdAt, long inAmount, long outAmount, int inCount, int outCount);
+    void addAll(int shard, List<BatchPosting> postings, long createdAt);
+    List<BalanceTotals> findByBalanceId(Long balanceId, LocalDate from, LocalDate to, TotalsPeriod period);
+}
@@ -0,0 +1,19 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.model.ImportRecord;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Массовая загрузка пользователей с аккаунтами и мастер-балансами на один шард.
+ * Вызывать внутри транзакции этого шарда: записи одной пачки попадают в БД вместе или не попадают вовсе.
+ */
+public interface BulkImportRepository {
+    Set<String> findExistingUsernames(int shard, List<String> usernames);
+    Set<Long> findExistingAccountNumbers(int shard, List<Long> accountNumbers);
+    List<Long> allocateIds(int shard, String sequence, int count);
+    void copyUsers(int shard, List<ImportRecord> records, int balanceCountLimit, long createdAt);
+    void copyAccounts(int shard, List<ImportRecord> records);
+    void copyBalances(int shard, List<ImportRecord> records, long createdAt);
+}
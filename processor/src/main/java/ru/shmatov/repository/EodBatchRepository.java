@@ -0,0 +1,16 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.BatchPosting;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface EodBatchRepository {
+    Optional<long[]> findIdRange(int shard);
+    boolean balanceExists(int shard, Long balanceId);
+    boolean claimChunk(int shard, String batchId, long chunkStart, long chunkEnd, long doneAt);
+    void completeChunk(int shard, String batchId, long chunkStart, int rows);
+    List<AccountBalance> lockRange(int shard, long fromInclusive, long toExclusive, Long excludedId);
+    void post(int shard, Long houseBalanceId, List<BatchPosting> postings, long createdAt);
+}
@@ -0,0 +1,12 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.model.PendingTransfer;
+
+import java.util.Optional;
+
+public interface PendingTransferRepository {
+    void save(PendingTransfer pendingTransfer);
+    Optional<PendingTransfer> findById(Long id);
+    Optional<PendingTransfer> claim(Long id);
+    int deleteCreatedBefore(long createdBefore);
+}
@@ -0,0 +1,16 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.enums.ScheduledTransferStatus;
+import ru.shmatov.model.ScheduledTransfer;
+
+import java.util.List;
+
+public interface ScheduledTransferRepository {
+    Long save(ScheduledTransfer scheduledTransfer);
+    List<ScheduledTransfer> findAllByFromBalanceIds(List<Long> fromBalanceIds);
+    boolean cancel(Long id, List<Long> fromBalanceIds);
+    List<ScheduledTransfer> claimDue(int shard, long now, long leaseUntil, int limit);
+    boolean markRun(Long id, long claimedRunAt, long nextDueAt, ScheduledTransferStatus status);
+    boolean markFailed(Long id, long expectedRunAt, long dueAt, long nextRunAt, int attempts, String error,
+                       ScheduledTransferStatus status);
+}
@@ -1,16 +1,20 @@
 package ru.shmatov.repository;
 
-import ru.shmatov.enums.TransactionStatusEnum;
 import ru.shmatov.model.Transaction;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
+/**
+ * Записи истории по балансам: представление balance_entries разворачивает каждый перевод из transfers в две ноги.
+ */
 public interface TransactionRepository {
     Optional<Transaction> findById(Long id);
     List<Transaction> findAllByBalanceId(Long balanceId);
-    Long save(Transaction transaction);
-    void updateStatus(Long transactionId, TransactionStatusEnum newStatus);
-    void updateReceiverTransactionId(Long transactionId, Long receiverTransactionId);
+    // вторым аргументом — номер баланса контрагента, если он лежит на том же шарде, иначе null
+    void streamByBalanceId(Long balanceId, long from, long to, BiConsumer<Transaction, String> action);
+    Long nextId(Long balanceId);
     boolean existsById(Long id);
+    long sumConfirmedAmounts(Long balanceId, long fromExclusive, long toInclusive);
 }
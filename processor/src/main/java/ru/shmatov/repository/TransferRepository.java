@@ -0,0 +1,15 @@
+package ru.shmatov.repository;
+
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.model.Transfer;
+
+import java.util.Optional;
+
+public interface TransferRepository {
+    Optional<Transfer> findById(Long id);
+    void save(Transfer transfer);
+    boolean saveReceiverCopy(Transfer transfer, long creditedAt);
+    boolean receiverCopyExists(Transfer transfer);
+    void updateStatus(Long transferId, TransactionStatusEnum newStatus);
+    int archiveCreatedBefore(int shard, long cutoff, int limit);
+}
@@ -0,0 +1,11 @@
+package ru.shmatov.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TransferSagaRepository {
+    void save(Long transferId, long createdAt, long nextAttemptAt);
+    List<Long> claimStale(int shard, long now, long leaseUntil, int limit);
+    boolean delete(Long transferId);
+    Optional<Long> findOldestCreatedAt(int shard);
+}
@@ -11,7 +11,7 @@ public interface UserRepository {
 
     Optional<User> findByTelegramUsername(String telegramUsername);
 
-    void save(User user);
+    void save(int shard, User user);
 
     boolean existsByUsername(String username);
 }
@@ -8,8 +8,12 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.exception.BalanceNotFoundException;
+import ru.shmatov.exception.InsufficientFundsException;
 import ru.shmatov.model.AccountBalance;
 import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.AccountNumbers;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -21,21 +25,25 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
 
-    private final JdbcTemplate jdbc;
+    private final ShardRouter shards;
     private final RowMapper<AccountBalance> mapper = (rs, n) -> mapBalance(rs);
 
     @Override
     public List<AccountBalance> findAllByAccountId(Long accountId) {
-        return jdbc.query("SELECT * FROM account_balances WHERE account_id = ?", mapper, accountId);
+        return shards.read(shards.shardOfId(accountId))
+                .query("SELECT * FROM account_balances WHERE account_id = ? AND deleted_at IS NULL", mapper, accountId);
     }
 
     @Override
     public Optional<AccountBalance> findByBalanceNumber(String balanceNumber) {
+        if (!AccountNumbers.isBalanceNumber(balanceNumber)) {
+            return Optional.empty();
+        }
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM account_balances WHERE balance_number = ?",
-                            mapper, balanceNumber));
+                    shards.read(shards.shardOfNumber(balanceNumber)).queryForObject(
+                            "SELECT * FROM account_balances WHERE number_account = ? AND number_seq = ? AND deleted_at IS NULL",
+                            mapper, AccountNumbers.accountPart(balanceNumber), AccountNumbers.sequence(balanceNumber)));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
         }
@@ -45,8 +53,8 @@ public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
     public Optional<AccountBalance> findById(Long id) {
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM account_balances WHERE id = ?",
+                    shards.read(shards.shardOfId(id)).queryForObject(
+                            "SELECT * FROM account_balances WHERE id = ? AND deleted_at IS NULL",
                             mapper, id));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
@@ -57,15 +65,16 @@ public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
     @Override
     public Long save(AccountBalance balance) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbc.update(c -> {
+        shards.write(shards.shardOfId(balance.getAccountId())).update(c -> {
             PreparedStatement ps = c.prepareStatement(
-                    "INSERT INTO account_balances (account_id, balance, is_primary, created_at, balance_number) VALUES (?,?,?,?,?)",
+                    "INSERT INTO account_balances (account_id, balance, is_primary, created_at, number_account, number_seq) VALUES (?,?,?,?,?,?)",
                     new String[]{"id"});
             ps.setLong(1, balance.getAccountId());
             ps.setLong(2, balance.getBalance());
             ps.setBoolean(3, balance.getIsPrimary());
             ps.setLong(4, balance.getCreatedAt());
-            ps.setString(5, balance.getBalanceNumber());
+            ps.setLong(5, AccountNumbers.accountPart(balance.getBalanceNumber()));
+            ps.setShort(6, AccountNumbers.sequence(balance.getBalanceNumber()));
             return ps;
         }, keyHolder);
 
@@ -74,39 +83,126 @@ public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
         return id;
     }
 
+    // баланс только помечается удалённым одним UPDATE; строку и её историю уберёт purgeDeleted
     @LogExecutionTime
     @Override
     public String deleteById(Long id) {
-        String balanceNumber = jdbc.queryForObject(
-                "SELECT balance_number FROM account_balances WHERE id = ?",
-                String.class,
-                id
+        String balanceNumber = shards.write(shards.shardOfId(id)).queryForObject(
+                "UPDATE account_balances SET deleted_at = ? WHERE id = ? AND deleted_at IS NULL RETURNING number_account, number_seq",
+                (rs, n) -> AccountNumbers.formatBalance(rs.getLong("number_account"), rs.getShort("number_seq")),
+                System.currentTimeMillis(), id
         );
-
-        jdbc.update("DELETE FROM account_balances WHERE id = ?", id);
         log.info("Deleted balance with id={}, number={}", id, balanceNumber);
         return balanceNumber;
     }
 
+    @LogExecutionTime
+    @Override
+    public List<String> deleteAllByAccountId(Long accountId) {
+        List<String> balanceNumbers = shards.write(shards.shardOfId(accountId)).query(
+                "UPDATE account_balances SET deleted_at = ? WHERE account_id = ? AND deleted_at IS NULL RETURNING number_account, number_seq",
+                (rs, n) -> AccountNumbers.formatBalance(rs.getLong("number_account"), rs.getShort("number_seq")),
+                System.currentTimeMillis(), accountId
+        );
+        log.info("Deleted {} balances of account id={}", balanceNumbers.size(), accountId);
+        return balanceNumbers;
+    }
+
+    /**
+     * Убирает до limit удалённых балансов шарда: сначала их записи в старой таблице transactions, чекпоинты
+     * и дневные обороты, затем сами строки, у которых ничего из этого не осталось.
+     * Каждый шаг — отдельный короткий запрос.
+     */
+    @LogExecutionTime
+    @Override
+    public int purgeDeleted(int shard, int limit) {
+        JdbcTemplate jdbc = shards.scan(shard);
+        int entries = jdbc.update("""
+                        DELETE FROM transactions
+                        WHERE id IN (SELECT t.id FROM transactions t
+                                     JOIN account_balances b ON b.id = t.balance_id
+                                     WHERE b.deleted_at IS NOT NULL
+                                     LIMIT ?)
+                        """,
+                limit);
+        int checkpoints = jdbc.update("""
+                        DELETE FROM balance_checkpoints
+                        WHERE (balance_id, as_of) IN (SELECT c.balance_id, c.as_of FROM balance_checkpoints c
+                                                      JOIN account_balances b ON b.id = c.balance_id
+                                                      WHERE b.deleted_at IS NOT NULL
+                                                      LIMIT ?)
+                        """,
+                limit);
+        int totals = jdbc.update("""
+                        DELETE FROM balance_daily_totals
+                        WHERE (balance_id, day) IN (SELECT d.balance_id, d.day FROM balance_daily_totals d
+                                                    JOIN account_balances b ON b.id = d.balance_id
+                                                    WHERE b.deleted_at IS NOT NULL
+                                                    LIMIT ?)
+                        """,
+                limit);
+        int balances = jdbc.update("""
+                        DELETE FROM account_balances
+                        WHERE id IN (SELECT b.id FROM account_balances b
+                                     WHERE b.deleted_at IS NOT NULL
+                                       AND NOT EXISTS (SELECT 1 FROM transactions t WHERE t.balance_id = b.id)
+                                       AND NOT EXISTS (SELECT 1 FROM balance_checkpoints c WHERE c.balance_id = b.id)
+                                       AND NOT EXISTS (SELECT 1 FROM balance_daily_totals d WHERE d.balance_id = b.id)
+                                     LIMIT ?)
+                        """,
+                limit);
+        if (entries > 0 || checkpoints > 0 || totals > 0 || balances > 0) {
+            log.info("Purged deleted balances on shard {}: balances={}, entries={}, checkpoints={}, dailyTotals={}",
+                    shard, balances, entries, checkpoints, totals);
+        }
+        // чекпоинты и обороты входят в результат: пока они остаются, баланс не удаляется и продолжать есть что
+        return entries + checkpoints + totals + balances;
+    }
+
     @Override
     public void updateIsPrimary(Long balanceId, boolean isPrimary) {
-        jdbc.update(
+        shards.write(shards.shardOfId(balanceId)).update(
                 "UPDATE account_balances SET is_primary = ? WHERE id = ?",
                 isPrimary, balanceId
         );
         log.info("Updated primary status for balanceId={}, isPrimary={}", balanceId, isPrimary);
     }
 
+    // зачисление на удалённый баланс откатывает транзакцию или сагу, а не пропадает без следа
     @LogExecutionTime
     @Override
     public void updateBalance(Long balanceId, Long amount) {
-        jdbc.update(
-                "UPDATE account_balances SET balance = balance + ? WHERE id = ?",
+        int updated = shards.write(shards.shardOfId(balanceId)).update(
+                "UPDATE account_balances SET balance = balance + ? WHERE id = ? AND deleted_at IS NULL",
                 amount, balanceId
         );
+        if (updated == 0) {
+            throw new BalanceNotFoundException(String.valueOf(balanceId));
+        }
         log.info("Updated balance: id={}, delta={}", balanceId, amount);
     }
 
+    /**
+     * Списание с проверкой остатка в одном UPDATE: строка блокируется на время проверки, поэтому параллельное
+     * подтверждение или отложенный перевод не уведут баланс в минус.
+     */
+    @LogExecutionTime
+    @Override
+    public void debit(Long balanceId, long amount) {
+        int updated = shards.write(shards.shardOfId(balanceId)).update(
+                "UPDATE account_balances SET balance = balance - ? WHERE id = ? AND deleted_at IS NULL AND balance >= ?",
+                amount, balanceId, amount
+        );
+        if (updated == 0) {
+            if (findById(balanceId).isEmpty()) {
+                throw new BalanceNotFoundException(String.valueOf(balanceId));
+            }
+            throw new InsufficientFundsException(
+                    "Not enough money on balance id=%d: need %d".formatted(balanceId, amount));
+        }
+        log.info("Debited balance: id={}, amount={}", balanceId, amount);
+    }
+
     private AccountBalance mapBalance(ResultSet rs) throws java.sql.SQLException {
         return AccountBalance.builder()
                 .id(rs.getLong("id"))
@@ -114,7 +210,7 @@ public class AccountBalanceRepositoryImpl implements AccountBalanceRepository {
                 .balance(rs.getLong("balance"))
                 .isPrimary(rs.getBoolean("is_primary"))
                 .createdAt(rs.getLong("created_at"))
-                .balanceNumber(rs.getString("balance_number"))
+                .balanceNumber(AccountNumbers.formatBalance(rs.getLong("number_account"), rs.getShort("number_seq")))
                 .build();
     }
 }
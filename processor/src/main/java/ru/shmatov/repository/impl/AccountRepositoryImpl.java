@@ -3,13 +3,14 @@ package ru.shmatov.repository.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import ru.shmatov.annotation.LogExecutionTime;
 import ru.shmatov.model.Account;
 import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.AccountNumbers;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -20,15 +21,15 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class AccountRepositoryImpl implements AccountRepository {
 
-    private final JdbcTemplate jdbc;
+    private final ShardRouter shards;
     private final RowMapper<Account> mapper = (rs, n) -> mapAccount(rs);
 
     @Override
     public Optional<Account> findByUsername(String username) {
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM accounts WHERE user_username = ?",
+                    shards.read(shards.shardOfUsername(username)).queryForObject(
+                            "SELECT * FROM accounts WHERE user_username = ? AND deleted_at IS NULL",
                             mapper, username));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
@@ -39,8 +40,8 @@ public class AccountRepositoryImpl implements AccountRepository {
     public Optional<Account> findByUserId(Long userId) {
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM accounts WHERE user_id = ?",
+                    shards.read(shards.shardOfId(userId)).queryForObject(
+                            "SELECT * FROM accounts WHERE user_id = ? AND deleted_at IS NULL",
                             mapper, userId));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
@@ -49,11 +50,14 @@ public class AccountRepositoryImpl implements AccountRepository {
 
     @Override
     public Optional<Account> findByAccountNumber(String accountNumber) {
+        if (!AccountNumbers.isAccountNumber(accountNumber)) {
+            return Optional.empty();
+        }
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM accounts WHERE account_number = ?",
-                            mapper, accountNumber));
+                    shards.read(shards.shardOfNumber(accountNumber)).queryForObject(
+                            "SELECT * FROM accounts WHERE account_number = ? AND deleted_at IS NULL",
+                            mapper, AccountNumbers.accountPart(accountNumber)));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
         }
@@ -63,14 +67,14 @@ public class AccountRepositoryImpl implements AccountRepository {
     @Override
     public Long save(Account account) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbc.update(c -> {
+        shards.write(shards.shardOfId(account.getUserId())).update(c -> {
             PreparedStatement ps = c.prepareStatement(
                     "INSERT INTO accounts (user_id, user_username, user_telegram_username, account_number) VALUES (?,?,?,?)",
                     new String[]{"id"});
             ps.setLong(1, account.getUserId());
             ps.setString(2, account.getUserUsername());
             ps.setString(3, account.getUserTelegramUsername());
-            ps.setString(4, account.getAccountNumber());
+            ps.setLong(4, AccountNumbers.accountPart(account.getAccountNumber()));
             return ps;
         }, keyHolder);
         Long id = Objects.requireNonNull(keyHolder.getKey()).longValue();
@@ -81,15 +85,31 @@ public class AccountRepositoryImpl implements AccountRepository {
     @LogExecutionTime
     @Override
     public String deleteByUserUsername(String username) {
-        String accountNumber = jdbc.queryForObject(
-                "SELECT account_number FROM accounts WHERE user_username = ?",
-                String.class,
-                username
+        Long accountNumber = shards.write(shards.shardOfUsername(username)).queryForObject(
+                "UPDATE accounts SET deleted_at = ? WHERE user_username = ? AND deleted_at IS NULL RETURNING account_number",
+                Long.class,
+                System.currentTimeMillis(), username
         );
+        log.info("Deleted account: username={}, accountNumber={}", username, AccountNumbers.formatAccount(accountNumber));
+        return AccountNumbers.formatAccount(accountNumber);
+    }
 
-        jdbc.update("DELETE FROM accounts WHERE user_username = ?", username);
-        log.info("Deleted account: username={}, accountNumber={}", username, accountNumber);
-        return accountNumber;
+    // удалённый аккаунт убирается, когда очистка балансов дошла до всех его балансов
+    @LogExecutionTime
+    @Override
+    public int purgeDeleted(int shard, int limit) {
+        int purged = shards.scan(shard).update("""
+                        DELETE FROM accounts
+                        WHERE id IN (SELECT a.id FROM accounts a
+                                     WHERE a.deleted_at IS NOT NULL
+                                       AND NOT EXISTS (SELECT 1 FROM account_balances b WHERE b.account_id = a.id)
+                                     LIMIT ?)
+                        """,
+                limit);
+        if (purged > 0) {
+            log.info("Purged {} deleted accounts on shard {}", purged, shard);
+        }
+        return purged;
     }
 
     private Account mapAccount(ResultSet rs) throws java.sql.SQLException {
@@ -98,7 +118,7 @@ public class AccountRepositoryImpl implements AccountRepository {
                 .userId(rs.getLong("user_id"))
                 .userUsername(rs.getString("user_username"))
                 .userTelegramUsername(rs.getString("user_telegram_username"))
-                .accountNumber(rs.getString("account_number"))
+                .accountNumber(AccountNumbers.formatAccount(rs.getLong("account_number")))
                 .build();
     }
 }
@@ -0,0 +1,101 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.model.BalanceCheckpoint;
+import ru.shmatov.repository.BalanceCheckpointRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+@Slf4j
+@RequiredArgsConstructor
+public class BalanceCheckpointRepositoryImpl implements BalanceCheckpointRepository {
+
+    // деньги двигают только проведённые переводы; отклонённые сагой уже возвращены отправителю
+    private static final short CONFIRMED = TransactionStatusEnum.CONFIRMED.getCode();
+
+    private final ShardRouter shards;
+    private final RowMapper<BalanceCheckpoint> mapper = (rs, n) -> mapCheckpoint(rs);
+
+    @Override
+    public Optional<BalanceCheckpoint> findLatestAtOrBefore(Long balanceId, long timestamp) {
+        try {
+            return Optional.ofNullable(
+                    shards.read(shards.shardOfId(balanceId)).queryForObject("""
+                                    SELECT * FROM balance_checkpoints
+                                    WHERE balance_id = ? AND as_of <= ?
+                                    ORDER BY as_of DESC LIMIT 1
+                                    """,
+                            mapper, balanceId, timestamp));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<BalanceCheckpoint> findEarliestAfter(Long balanceId, long timestamp) {
+        try {
+            return Optional.ofNullable(
+                    shards.read(shards.shardOfId(balanceId)).queryForObject("""
+                                    SELECT * FROM balance_checkpoints
+                                    WHERE balance_id = ? AND as_of > ?
+                                    ORDER BY as_of LIMIT 1
+                                    """,
+                            mapper, balanceId, timestamp));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<Long> findLastAsOf(int shard) {
+        return Optional.ofNullable(shards.scan(shard)
+                .queryForObject("SELECT MAX(as_of) FROM balance_checkpoints", Long.class));
+    }
+
+    /**
+     * Одним запросом, то есть на одном снимке БД: остаток на as_of = текущий остаток минус записи после as_of.
+     * Новые балансы получают первый чекпоинт, остальные — только если с since по as_of по ним были проводки.
+     * Узлы считают одинаковый as_of, поэтому повторная запись того же чекпоинта пропускается.
+     */
+    @LogExecutionTime
+    @Override
+    public int writeCheckpoints(int shard, long since, long asOf) {
+        int written = shards.scan(shard).update("""
+                        INSERT INTO balance_checkpoints (balance_id, as_of, balance, last_entry_id)
+                        SELECT b.id,
+                               ?,
+                               b.balance - COALESCE((SELECT SUM(e.amount) FROM balance_entries e
+                                                     WHERE e.balance_id = b.id AND e.created_at > ?
+                                                       AND e.transaction_status = ?), 0),
+                               (SELECT e.id FROM balance_entries e
+                                WHERE e.balance_id = b.id AND e.created_at <= ?
+                                ORDER BY e.created_at DESC, e.id DESC LIMIT 1)
+                        FROM account_balances b
+                        WHERE b.created_at <= ? AND b.deleted_at IS NULL
+                          AND (NOT EXISTS (SELECT 1 FROM balance_checkpoints c WHERE c.balance_id = b.id)
+                               OR EXISTS (SELECT 1 FROM balance_entries e
+                                          WHERE e.balance_id = b.id AND e.created_at > ? AND e.created_at <= ?))
+                        ON CONFLICT DO NOTHING
+                        """,
+                asOf, asOf, CONFIRMED, asOf, asOf, since, asOf);
+        log.info("Balance checkpoints written: shard={}, asOf={}, count={}", shard, asOf, written);
+        return written;
+    }
+
+    private BalanceCheckpoint mapCheckpoint(ResultSet rs) throws SQLException {
+        return BalanceCheckpoint.builder()
+                .balanceId(rs.getLong("balance_id"))
+                .asOf(rs.getLong("as_of"))
+                .balance(rs.getLong("balance"))
+                .lastEntryId(rs.getObject("last_entry_id") == null ? null : rs.getLong("last_entry_id"))
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import ru.shmatov.enums.TotalsPeriod;
+import ru.shmatov.model.BalanceTotals;
+import ru.shmatov.model.BatchPosting;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+public class BalanceTotalsRepositoryImpl implements BalanceTotalsRepository {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    // отрицательные значения откатывают ранее учтённую проводку (компенсация саги)
+    private static final String UPSERT = """
+            INSERT INTO balance_daily_totals AS t (balance_id, day, in_amount, out_amount, in_count, out_count)
+            VALUES (?,?,?,?,?,?)
+            ON CONFLICT (balance_id, day) DO UPDATE
+            SET in_amount  = t.in_amount + EXCLUDED.in_amount,
+                out_amount = t.out_amount + EXCLUDED.out_amount,
+                in_count   = t.in_count + EXCLUDED.in_count,
+                out_count  = t.out_count + EXCLUDED.out_count
+            """;
+
+    private final ShardRouter shards;
+    private final RowMapper<BalanceTotals> mapper = (rs, n) -> BalanceTotals.builder()
+            .periodStart(rs.getObject("period_start", LocalDate.class))
+            .inAmount(rs.getLong("in_amount"))
+            .outAmount(rs.getLong("out_amount"))
+            .inCount(rs.getLong("in_count"))
+            .outCount(rs.getLong("out_count"))
+            .build();
+
+    @Override
+    public void add(Long balanceId, long createdAt, long inAmount, long outAmount, int inCount, int outCount) {
+        shards.write(shards.shardOfId(balanceId)).update(UPSERT,
+                balanceId, dayOf(createdAt), inAmount, outAmount, inCount, outCount);
+    }
+
+    @Override
+    public void addAll(int shard, List<BatchPosting> postings, long createdAt) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        LocalDate day = dayOf(createdAt);
+        shards.write(shard).batchUpdate(UPSERT, postings, postings.size(), (ps, p) -> {
+            ps.setLong(1, p.balanceId());
+            ps.setObject(2, day);
+            ps.setLong(3, Math.max(p.amount(), 0));
+            ps.setLong(4, Math.max(-p.amount(), 0));
+            ps.setInt(5, p.amount() > 0 ? 1 : 0);
+            ps.setInt(6, p.amount() < 0 ? 1 : 0);
+        });
+    }
+
+    @Override
+    public List<BalanceTotals> findByBalanceId(Long balanceId, LocalDate from, LocalDate to, TotalsPeriod period) {
+        String periodStart = period == TotalsPeriod.MONTH ? "date_trunc('month', day)::DATE" : "day";
+        return shards.read(shards.shardOfId(balanceId)).query(
+                "SELECT " + periodStart + """
+                         AS period_start,
+                               SUM(in_amount) AS in_amount, SUM(out_amount) AS out_amount,
+                               SUM(in_count) AS in_count, SUM(out_count) AS out_count
+                        FROM balance_daily_totals
+                        WHERE balance_id = ? AND day >= ? AND day <= ?
+                        GROUP BY 1
+                        ORDER BY 1
+                        """,
+                mapper, balanceId, from, to);
+    }
+
+    private static LocalDate dayOf(long createdAt) {
+        return LocalDate.ofEpochDay(Math.floorDiv(createdAt, DAY_MS));
+    }
+}
@@ -0,0 +1,138 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.model.ImportRecord;
+import ru.shmatov.repository.BulkImportRepository;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.AccountNumbers;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@RequiredArgsConstructor
+public class BulkImportRepositoryImpl implements BulkImportRepository {
+
+    private static final String USER_ROLE = "USER";
+
+    private final ShardRouter shards;
+
+    @Override
+    public Set<String> findExistingUsernames(int shard, List<String> usernames) {
+        return new HashSet<>(shards.write(shard).query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT username FROM users WHERE username = ANY (?)");
+            ps.setArray(1, con.createArrayOf("varchar", usernames.toArray()));
+            return ps;
+        }, (rs, n) -> rs.getString(1)));
+    }
+
+    @Override
+    public Set<Long> findExistingAccountNumbers(int shard, List<Long> accountNumbers) {
+        return new HashSet<>(shards.write(shard).query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT account_number FROM accounts WHERE account_number = ANY (?)");
+            ps.setArray(1, con.createArrayOf("bigint", accountNumbers.toArray()));
+            return ps;
+        }, (rs, n) -> rs.getLong(1)));
+    }
+
+    // id берутся из последовательности шарда одним запросом: COPY не возвращает сгенерированные ключи
+    @Override
+    public List<Long> allocateIds(int shard, String sequence, int count) {
+        return shards.write(shard).queryForList(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)",
+                Long.class, sequence, count);
+    }
+
+    @LogExecutionTime
+    @Override
+    public void copyUsers(int shard, List<ImportRecord> records, int balanceCountLimit, long createdAt) {
+        StringBuilder users = new StringBuilder(records.size() * 128);
+        StringBuilder roles = new StringBuilder(records.size() * 32);
+        for (ImportRecord r : records) {
+            users.append(r.getUserId()).append(',');
+            quote(users, r.getUsername()).append(',');
+            quote(users, r.getTelegramUsername()).append(',');
+            quote(users, r.getPassword()).append(",t,t,t,t,")
+                    .append(balanceCountLimit).append(',')
+                    .append(createdAt).append('\n');
+            roles.append(r.getUserId()).append(',').append(USER_ROLE).append('\n');
+        }
+        copy(shard, """
+                COPY users (id, username, telegram_username, password,
+                            enabled, account_non_expired, account_non_locked, credentials_non_expired,
+                            balance_count_limit, created_at)
+                FROM STDIN WITH (FORMAT csv)
+                """, users);
+        copy(shard, "COPY user_roles (user_id, role) FROM STDIN WITH (FORMAT csv)", roles);
+    }
+
+    @LogExecutionTime
+    @Override
+    public void copyAccounts(int shard, List<ImportRecord> records) {
+        StringBuilder rows = new StringBuilder(records.size() * 96);
+        for (ImportRecord r : records) {
+            rows.append(r.getAccountId()).append(',')
+                    .append(r.getUserId()).append(',');
+            quote(rows, r.getUsername()).append(',');
+            quote(rows, r.getTelegramUsername()).append(',')
+                    .append(AccountNumbers.accountPart(r.getAccountNumber())).append('\n');
+        }
+        copy(shard, """
+                COPY accounts (id, user_id, user_username, user_telegram_username, account_number)
+                FROM STDIN WITH (FORMAT csv)
+                """, rows);
+    }
+
+    @LogExecutionTime
+    @Override
+    public void copyBalances(int shard, List<ImportRecord> records, long createdAt) {
+        StringBuilder rows = new StringBuilder(records.size() * 64);
+        for (ImportRecord r : records) {
+            rows.append(r.getBalanceId()).append(',')
+                    .append(r.getAccountId()).append(',')
+                    .append(r.getInitialBalance()).append(",t,")
+                    .append(createdAt).append(',')
+                    .append(AccountNumbers.accountPart(r.getAccountNumber())).append(",1\n");
+        }
+        copy(shard, """
+                COPY account_balances (id, account_id, balance, is_primary, created_at, number_account, number_seq)
+                FROM STDIN WITH (FORMAT csv)
+                """, rows);
+    }
+
+    private void copy(int shard, String sql, CharSequence rows) {
+        long copied = shards.write(shard).execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(rows.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.debug("Copied {} rows on shard {}", copied, shard);
+    }
+
+    // в CSV-формате COPY пустое поле без кавычек — NULL, поэтому строки всегда в кавычках
+    private static StringBuilder quote(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+}
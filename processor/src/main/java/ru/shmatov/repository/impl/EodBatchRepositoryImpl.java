@@ -0,0 +1,110 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.BatchPosting;
+import ru.shmatov.repository.EodBatchRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+@Slf4j
+@RequiredArgsConstructor
+public class EodBatchRepositoryImpl implements EodBatchRepository {
+
+    private final ShardRouter shards;
+
+    @Override
+    public Optional<long[]> findIdRange(int shard) {
+        return shards.scan(shard).query(
+                "SELECT min(id), max(id) FROM account_balances WHERE deleted_at IS NULL",
+                (rs, n) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)}
+        ).stream().filter(Objects::nonNull).findFirst();
+    }
+
+    @Override
+    public boolean balanceExists(int shard, Long balanceId) {
+        Integer count = shards.scan(shard).queryForObject(
+                "SELECT COUNT(*) FROM account_balances WHERE id = ? AND deleted_at IS NULL",
+                Integer.class, balanceId);
+        return count != null && count > 0;
+    }
+
+    // вставка занимает диапазон: параллельная вставка того же ключа ждёт коммита и получает конфликт
+    @Override
+    public boolean claimChunk(int shard, String batchId, long chunkStart, long chunkEnd, long doneAt) {
+        return shards.write(shard).update("""
+                        INSERT INTO eod_batch_chunks (batch_id, chunk_start, chunk_end, done_at)
+                        VALUES (?,?,?,?)
+                        ON CONFLICT DO NOTHING
+                        """,
+                batchId, chunkStart, chunkEnd, doneAt) > 0;
+    }
+
+    @Override
+    public void completeChunk(int shard, String batchId, long chunkStart, int rows) {
+        shards.write(shard).update(
+                "UPDATE eod_batch_chunks SET rows = ? WHERE batch_id = ? AND chunk_start = ?",
+                rows, batchId, chunkStart);
+    }
+
+    // блокировка нужна, чтобы сумма считалась от остатка, который не изменится до коммита пакета
+    @Override
+    public List<AccountBalance> lockRange(int shard, long fromInclusive, long toExclusive, Long excludedId) {
+        return shards.write(shard).query("""
+                        SELECT id, balance FROM account_balances
+                        WHERE id >= ? AND id < ? AND id <> ? AND deleted_at IS NULL
+                        ORDER BY id
+                        FOR UPDATE
+                        """,
+                (rs, n) -> AccountBalance.builder().id(rs.getLong("id")).balance(rs.getLong("balance")).build(),
+                fromInclusive, toExclusive, excludedId);
+    }
+
+    /**
+     * Проводки диапазона двумя пакетами: изменение остатков и строки журнала transfers, по одной на баланс.
+     * Служебный баланс меняется одним UPDATE на итог, чтобы его строка не блокировалась на каждой проводке.
+     */
+    @LogExecutionTime
+    @Override
+    public void post(int shard, Long houseBalanceId, List<BatchPosting> postings, long createdAt) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        shards.write(shard).batchUpdate(
+                "UPDATE account_balances SET balance = balance + ? WHERE id = ?",
+                postings,
+                postings.size(),
+                (ps, p) -> {
+                    ps.setLong(1, p.amount());
+                    ps.setLong(2, p.balanceId());
+                });
+        shards.write(shard).batchUpdate("""
+                        INSERT INTO transfers (id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+                        VALUES (nextval('transactions_id_seq'), nextval('transactions_id_seq'), ?, ?, ?, ?, ?)
+                        """,
+                postings,
+                postings.size(),
+                (ps, p) -> {
+                    ps.setLong(1, p.amount() < 0 ? p.balanceId() : houseBalanceId);
+                    ps.setLong(2, p.amount() < 0 ? houseBalanceId : p.balanceId());
+                    ps.setLong(3, Math.abs(p.amount()));
+                    ps.setShort(4, TransactionStatusEnum.CONFIRMED.getCode());
+                    ps.setLong(5, createdAt);
+                });
+        long total = postings.stream().mapToLong(BatchPosting::amount).sum();
+        // без служебного баланса комиссии пропали бы, а проценты взялись из ниоткуда: откатываем весь диапазон
+        int updated = shards.write(shard).update(
+                "UPDATE account_balances SET balance = balance - ? WHERE id = ? AND deleted_at IS NULL",
+                total, houseBalanceId);
+        if (updated == 0) {
+            throw new IllegalStateException("House balance " + houseBalanceId + " not found on shard " + shard);
+        }
+        log.info("Posted batch of {} entries on shard {}, house delta={}", postings.size(), shard, -total);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.model.PendingTransfer;
+import ru.shmatov.repository.PendingTransferRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+@Slf4j
+@RequiredArgsConstructor
+public class PendingTransferRepositoryImpl implements PendingTransferRepository {
+
+    private final ShardRouter shards;
+    private final RowMapper<PendingTransfer> mapper = (rs, n) -> mapPending(rs);
+
+    @LogExecutionTime
+    @Override
+    public void save(PendingTransfer p) {
+        shards.write(shards.shardOfId(p.getId())).update("""
+                        INSERT INTO pending_transfers
+                          (id, mapped_id, from_balance_id, to_balance_id, amount, created_at)
+                        VALUES (?,?,?,?,?,?)
+                        """,
+                p.getId(), p.getMappedId(), p.getFromBalanceId(), p.getToBalanceId(),
+                p.getAmount(), p.getCreatedAt());
+        log.info("Pending transfer saved with id={}", p.getId());
+    }
+
+    @Override
+    public Optional<PendingTransfer> findById(Long id) {
+        try {
+            return Optional.ofNullable(
+                    shards.read(shards.shardOfId(id)).queryForObject(
+                            "SELECT * FROM pending_transfers WHERE id = ?",
+                            mapper, id));
+        } catch (EmptyResultDataAccessException ex) {
+            return Optional.empty();
+        }
+    }
+
+    // DELETE ... RETURNING забирает перевод атомарно: второй конкурирующий вызов получит пустой результат
+    @LogExecutionTime
+    @Override
+    public Optional<PendingTransfer> claim(Long id) {
+        Optional<PendingTransfer> claimed = shards.write(shards.shardOfId(id)).query(
+                "DELETE FROM pending_transfers WHERE id = ? RETURNING *",
+                mapper, id).stream().findFirst();
+        log.info("Pending transfer claimed: id={}, found={}", id, claimed.isPresent());
+        return claimed;
+    }
+
+    @Override
+    public int deleteCreatedBefore(long createdBefore) {
+        int deleted = 0;
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            deleted += shards.scan(shard).update(
+                    "DELETE FROM pending_transfers WHERE created_at < ?", createdBefore);
+        }
+        return deleted;
+    }
+
+    private PendingTransfer mapPending(ResultSet rs) throws SQLException {
+        return PendingTransfer.builder()
+                .id(rs.getLong("id"))
+                .mappedId(rs.getLong("mapped_id"))
+                .fromBalanceId(rs.getLong("from_balance_id"))
+                .toBalanceId(rs.getLong("to_balance_id"))
+                .amount(rs.getLong("amount"))
+                .createdAt(rs.getLong("created_at"))
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.ScheduleRecurrence;
+import ru.shmatov.enums.ScheduledTransferStatus;
+import ru.shmatov.model.ScheduledTransfer;
+import ru.shmatov.repository.ScheduledTransferRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+public class ScheduledTransferRepositoryImpl implements ScheduledTransferRepository {
+
+    private final ShardRouter shards;
+    private final RowMapper<ScheduledTransfer> mapper = (rs, n) -> mapScheduled(rs);
+
+    // задача живёт на шарде отправителя и берёт id из его последовательности
+    @LogExecutionTime
+    @Override
+    public Long save(ScheduledTransfer s) {
+        Long id = shards.write(shards.shardOfId(s.getFromBalanceId())).queryForObject("""
+                        INSERT INTO scheduled_transfers
+                          (from_balance_id, to_balance_id, amount, recurrence, due_at, next_run_at, status, created_at)
+                        VALUES (?,?,?,?,?,?,?,?)
+                        RETURNING id
+                        """,
+                Long.class,
+                s.getFromBalanceId(), s.getToBalanceId(), s.getAmount(), s.getRecurrence().getCode(),
+                s.getDueAt(), s.getDueAt(), ScheduledTransferStatus.ACTIVE.getCode(), s.getCreatedAt());
+        log.info("Scheduled transfer saved with id={}", id);
+        return id;
+    }
+
+    // все балансы аккаунта лежат на одном шарде
+    @Override
+    public List<ScheduledTransfer> findAllByFromBalanceIds(List<Long> fromBalanceIds) {
+        if (fromBalanceIds.isEmpty()) {
+            return List.of();
+        }
+        return shards.read(shards.shardOfId(fromBalanceIds.get(0))).query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT * FROM scheduled_transfers WHERE from_balance_id = ANY (?) ORDER BY id");
+            ps.setArray(1, con.createArrayOf("bigint", fromBalanceIds.toArray()));
+            return ps;
+        }, mapper);
+    }
+
+    @LogExecutionTime
+    @Override
+    public boolean cancel(Long id, List<Long> fromBalanceIds) {
+        int updated = shards.write(shards.shardOfId(id)).update(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    UPDATE scheduled_transfers SET status = ?
+                    WHERE id = ? AND from_balance_id = ANY (?) AND status = ?
+                    """);
+            ps.setShort(1, ScheduledTransferStatus.CANCELLED.getCode());
+            ps.setLong(2, id);
+            ps.setArray(3, con.createArrayOf("bigint", fromBalanceIds.toArray()));
+            ps.setShort(4, ScheduledTransferStatus.ACTIVE.getCode());
+            return ps;
+        });
+        log.info("Scheduled transfer cancelled: id={}, found={}", id, updated > 0);
+        return updated > 0;
+    }
+
+    /**
+     * Забирает не больше limit наступивших задач, сдвигая их next_run_at на срок аренды.
+     * Строки, которые в этот момент забирает другой узел, пропускаются, поэтому узлы не ждут друг друга.
+     * Если узел упадёт, задача снова станет доступной, когда аренда истечёт.
+     */
+    @LogExecutionTime
+    @Override
+    public List<ScheduledTransfer> claimDue(int shard, long now, long leaseUntil, int limit) {
+        return shards.scan(shard).query("""
+                        UPDATE scheduled_transfers SET next_run_at = ?
+                        WHERE id IN (SELECT id FROM scheduled_transfers
+                                     WHERE status = ? AND next_run_at <= ?
+                                     ORDER BY next_run_at
+                                     LIMIT ? FOR UPDATE SKIP LOCKED)
+                        RETURNING *
+                        """,
+                mapper,
+                leaseUntil, ScheduledTransferStatus.ACTIVE.getCode(), now, limit);
+    }
+
+    // проходит, только если аренда ещё наша: next_run_at не менялся с момента захвата
+    @Override
+    public boolean markRun(Long id, long claimedRunAt, long nextDueAt, ScheduledTransferStatus status) {
+        return shards.write(shards.shardOfId(id)).update("""
+                        UPDATE scheduled_transfers
+                        SET due_at = ?, next_run_at = ?, status = ?, attempts = 0, last_error = NULL
+                        WHERE id = ? AND next_run_at = ? AND status = ?
+                        """,
+                nextDueAt, nextDueAt, status.getCode(),
+                id, claimedRunAt, ScheduledTransferStatus.ACTIVE.getCode()) > 0;
+    }
+
+    /**
+     * Как и markRun, проходит, только если next_run_at равен тому, что этот узел видел последним:
+     * иначе аренда истекла и повтор уже выполнил другой узел. Отменённую пользователем задачу не возвращаем в очередь.
+     */
+    @Override
+    public boolean markFailed(Long id, long expectedRunAt, long dueAt, long nextRunAt, int attempts, String error,
+                              ScheduledTransferStatus status) {
+        boolean updated = shards.write(shards.shardOfId(id)).update("""
+                        UPDATE scheduled_transfers
+                        SET due_at = ?, next_run_at = ?, attempts = ?, last_error = ?, status = ?
+                        WHERE id = ? AND next_run_at = ? AND status <> ?
+                        """,
+                dueAt, nextRunAt, attempts, error, status.getCode(),
+                id, expectedRunAt, ScheduledTransferStatus.CANCELLED.getCode()) > 0;
+        log.info("Scheduled transfer failed: id={}, attempts={}, status={}, recorded={}", id, attempts, status, updated);
+        return updated;
+    }
+
+    private ScheduledTransfer mapScheduled(ResultSet rs) throws SQLException {
+        return ScheduledTransfer.builder()
+                .id(rs.getLong("id"))
+                .fromBalanceId(rs.getLong("from_balance_id"))
+                .toBalanceId(rs.getLong("to_balance_id"))
+                .amount(rs.getLong("amount"))
+                .recurrence(ScheduleRecurrence.ofCode(rs.getShort("recurrence")))
+                .dueAt(rs.getLong("due_at"))
+                .nextRunAt(rs.getLong("next_run_at"))
+                .status(ScheduledTransferStatus.ofCode(rs.getShort("status")))
+                .attempts((int) rs.getShort("attempts"))
+                .lastError(rs.getString("last_error"))
+                .createdAt(rs.getLong("created_at"))
+                .build();
+    }
+}
@@ -3,36 +3,44 @@ package ru.shmatov.repository.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
-import ru.shmatov.annotation.LogExecutionTime;
 import ru.shmatov.enums.TransactionStatusEnum;
 import ru.shmatov.enums.TransactionType;
 import ru.shmatov.model.Transaction;
 import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.AccountNumbers;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @RequiredArgsConstructor
 public class TransactionRepositoryImpl implements TransactionRepository {
 
-    private final JdbcTemplate jdbc;
+    // строк за один FETCH курсора при выгрузке выписки
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String HOT = "balance_entries";
+    private static final String WITH_ARCHIVE = "balance_entries_all";
+    // запас на время между запусками архиватора и на сам запрос
+    private static final long ARCHIVE_MARGIN_MS = 60 * 60 * 1000L;
+
+    private final ShardRouter shards;
+    private final long archiveAgeMs;
     private final RowMapper<Transaction> mapper = (rs, n) -> mapTx(rs);
 
     @Override
     public Optional<Transaction> findById(Long id) {
         try {
             return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM transactions WHERE id = ?",
+                    shards.read(shards.shardOfId(id)).queryForObject(
+                            "SELECT * FROM " + WITH_ARCHIVE + " WHERE id = ?",
                             mapper, id));
         } catch (EmptyResultDataAccessException ex) {
             return Optional.empty();
@@ -41,76 +49,83 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 
     @Override
     public List<Transaction> findAllByBalanceId(Long balanceId) {
-        return jdbc.query(
-                "SELECT * FROM transactions WHERE balance_id = ?",
+        return shards.read(shards.shardOfId(balanceId)).query(
+                "SELECT * FROM " + WITH_ARCHIVE + " WHERE balance_id = ?",
                 mapper, balanceId);
     }
 
-    @LogExecutionTime
+    /**
+     * Отдаёт записи по одной, не собирая список. PostgreSQL держит серверный курсор только при
+     * fetchSize > 0 и выключенном autocommit, поэтому вызывать внутри транзакции.
+     * Номер контрагента берётся тем же запросом; контрагента с другого шарда или уже удалённого в нём нет.
+     */
     @Override
-    public Long save(Transaction t) {
-        KeyHolder kh = new GeneratedKeyHolder();
-        jdbc.update(con -> {
-            PreparedStatement ps = con.prepareStatement("""
-                    INSERT INTO transactions
-                      (balance_id, amount, transaction_type, transaction_status,
-                       created_at, receiver_balance_id, receiver_transaction_id)
-                    VALUES (?,?,?,?,?,?,?)
-                    """, new String[]{"id"});
-            ps.setLong(1, t.getBalanceId());
-            ps.setLong(2, t.getAmount());
-            ps.setString(3, t.getTransactionType().name());
-            ps.setString(4, t.getTransactionStatus().name());
-            ps.setLong(5, t.getCreatedAt());
-            ps.setLong(6, t.getReceiverBalanceId());
-            if (t.getReceiverTransactionId() != null)
-                ps.setLong(7, t.getReceiverTransactionId());
-            else
-                ps.setNull(7, java.sql.Types.BIGINT);
-            return ps;
-        }, kh);
-        Long id = Objects.requireNonNull(kh.getKey()).longValue();
-        log.info("Transaction saved with id={}", id);
-        return id;
+    public void streamByBalanceId(Long balanceId, long from, long to, BiConsumer<Transaction, String> action) {
+        shards.read(shards.shardOfId(balanceId)).query(con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT e.*, c.number_account AS counterparty_account, c.number_seq AS counterparty_seq"
+                                    + " FROM " + source(from) + """
+                                     e
+                                    LEFT JOIN account_balances c ON c.id = e.receiver_balance_id AND c.deleted_at IS NULL
+                                    WHERE e.balance_id = ? AND e.created_at >= ? AND e.created_at <= ?
+                                    ORDER BY e.created_at, e.id
+                                    """,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    ps.setLong(1, balanceId);
+                    ps.setLong(2, from);
+                    ps.setLong(3, to);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> action.accept(mapTx(rs), counterparty(rs)));
     }
 
-    @LogExecutionTime
+    // nextval не откатывается и не ждёт транзакцию, поэтому id можно взять на чужом шарде заранее
     @Override
-    public void updateStatus(Long transactionId, TransactionStatusEnum newStatus) {
-        jdbc.update(
-                "UPDATE transactions SET transaction_status = ? WHERE id = ?",
-                newStatus.name(), transactionId
-        );
-        log.info("Transaction status updated: id={}, newStatus={}", transactionId, newStatus);
-    }
-
-    @LogExecutionTime
-    @Override
-    public void updateReceiverTransactionId(Long transactionId, Long receiverTransactionId) {
-        jdbc.update(
-                "UPDATE transactions SET receiver_transaction_id = ? WHERE id = ?",
-                receiverTransactionId, transactionId
-        );
-        log.info("Receiver transaction ID updated: id={}, receiverTxId={}", transactionId, receiverTransactionId);
+    public Long nextId(Long balanceId) {
+        return shards.read(shards.shardOfId(balanceId))
+                .queryForObject("SELECT nextval('transactions_id_seq')", Long.class);
     }
 
     @Override
     public boolean existsById(Long id) {
-        Integer count = jdbc.queryForObject(
-                "SELECT COUNT(*) FROM transactions WHERE id = ?",
+        Integer count = shards.read(shards.shardOfId(id)).queryForObject(
+                "SELECT COUNT(*) FROM " + WITH_ARCHIVE + " WHERE id = ?",
                 Integer.class,
                 id
         );
         return count != null && count > 0;
     }
 
+    // изменение остатка за интервал (from, to]: суммы ног уже со знаком
+    @Override
+    public long sumConfirmedAmounts(Long balanceId, long fromExclusive, long toInclusive) {
+        Long sum = shards.read(shards.shardOfId(balanceId)).queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM " + source(fromExclusive) + """
+                         WHERE balance_id = ? AND created_at > ? AND created_at <= ? AND transaction_status = ?
+                        """,
+                Long.class,
+                balanceId, fromExclusive, toInclusive, TransactionStatusEnum.CONFIRMED.getCode());
+        return sum == null ? 0 : sum;
+    }
+
+    // переводы старше archiveAgeMs могут быть уже в архиве; если диапазон туда не заходит, архив не читаем
+    private String source(long from) {
+        return from >= System.currentTimeMillis() - archiveAgeMs + ARCHIVE_MARGIN_MS ? HOT : WITH_ARCHIVE;
+    }
+
+    private static String counterparty(ResultSet rs) throws SQLException {
+        long account = rs.getLong("counterparty_account");
+        return rs.wasNull() ? null : AccountNumbers.formatBalance(account, rs.getShort("counterparty_seq"));
+    }
+
     private Transaction mapTx(ResultSet rs) throws SQLException {
         return Transaction.builder()
                 .id(rs.getLong("id"))
                 .balanceId(rs.getLong("balance_id"))
                 .amount(rs.getLong("amount"))
-                .transactionType(TransactionType.valueOf(rs.getString("transaction_type")))
-                .transactionStatus(TransactionStatusEnum.valueOf(rs.getString("transaction_status")))
+                .transactionType(TransactionType.ofCode(rs.getShort("transaction_type")))
+                .transactionStatus(TransactionStatusEnum.ofCode(rs.getShort("transaction_status")))
                 .createdAt(rs.getLong("created_at"))
                 .receiverBalanceId(rs.getLong("receiver_balance_id"))
                 .receiverTransactionId(
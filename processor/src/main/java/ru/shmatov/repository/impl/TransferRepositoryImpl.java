@@ -0,0 +1,122 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.model.Transfer;
+import ru.shmatov.repository.TransferRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+@Slf4j
+@RequiredArgsConstructor
+public class TransferRepositoryImpl implements TransferRepository {
+
+    private static final String INSERT = """
+            INSERT INTO transfers
+              (id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+            VALUES (?,?,?,?,?,?,?)
+            """;
+
+    private final ShardRouter shards;
+    private final RowMapper<Transfer> mapper = (rs, n) -> mapTransfer(rs);
+
+    @Override
+    public Optional<Transfer> findById(Long id) {
+        try {
+            return Optional.ofNullable(
+                    shards.read(shards.shardOfId(id)).queryForObject(
+                            "SELECT * FROM transfers WHERE id = ?",
+                            mapper, id));
+        } catch (EmptyResultDataAccessException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @LogExecutionTime
+    @Override
+    public void save(Transfer t) {
+        insert(shards.write(shards.shardOfId(t.getFromBalanceId())), t);
+        log.info("Transfer saved with id={}", t.getId());
+    }
+
+    /**
+     * Копия перевода с другого шарда: без неё история получателя не найдёт входящий перевод локально.
+     * Повтор саги после сбоя копию не дублирует; false — копия уже была, зачислять второй раз не нужно.
+     */
+    @LogExecutionTime
+    @Override
+    public boolean saveReceiverCopy(Transfer t, long creditedAt) {
+        boolean inserted = shards.write(shards.shardOfId(t.getToBalanceId())).update(
+                INSERT + " ON CONFLICT (id) DO NOTHING",
+                t.getId(), t.getMappedId(), t.getFromBalanceId(), t.getToBalanceId(),
+                t.getAmount(), t.getStatus().getCode(), creditedAt) > 0;
+        log.info("Transfer copy saved on receiver shard with id={}, inserted={}", t.getId(), inserted);
+        return inserted;
+    }
+
+    @Override
+    public boolean receiverCopyExists(Transfer t) {
+        Integer count = shards.read(shards.shardOfId(t.getToBalanceId())).queryForObject(
+                "SELECT COUNT(*) FROM transfers WHERE id = ?", Integer.class, t.getId());
+        return count != null && count > 0;
+    }
+
+    // проведённый перевод не меняется; статус правит только компенсация неудавшейся саги
+    @LogExecutionTime
+    @Override
+    public void updateStatus(Long transferId, TransactionStatusEnum newStatus) {
+        shards.write(shards.shardOfId(transferId)).update(
+                "UPDATE transfers SET status = ? WHERE id = ?",
+                newStatus.getCode(), transferId
+        );
+        log.info("Transfer status updated: id={}, newStatus={}", transferId, newStatus);
+    }
+
+    /**
+     * Переносит в архив не больше limit самых старых переводов одним запросом: что удалено, то и вставлено.
+     * Строки, занятые другим узлом с тем же архиватором, пропускаются.
+     */
+    @LogExecutionTime
+    @Override
+    public int archiveCreatedBefore(int shard, long cutoff, int limit) {
+        return shards.scan(shard).update("""
+                        WITH moved AS (
+                            DELETE FROM transfers
+                            WHERE id IN (SELECT id FROM transfers
+                                         WHERE created_at < ?
+                                         ORDER BY created_at
+                                         LIMIT ? FOR UPDATE SKIP LOCKED)
+                            RETURNING id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+                        INSERT INTO transfers_archive
+                          (id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+                        SELECT * FROM moved
+                        """,
+                cutoff, limit);
+    }
+
+    private void insert(JdbcTemplate jdbc, Transfer t) {
+        jdbc.update(INSERT,
+                t.getId(), t.getMappedId(), t.getFromBalanceId(), t.getToBalanceId(),
+                t.getAmount(), t.getStatus().getCode(), t.getCreatedAt());
+    }
+
+    private Transfer mapTransfer(ResultSet rs) throws SQLException {
+        return Transfer.builder()
+                .id(rs.getLong("id"))
+                .mappedId(rs.getLong("mapped_id"))
+                .fromBalanceId(rs.getLong("from_balance_id"))
+                .toBalanceId(rs.getLong("to_balance_id"))
+                .amount(rs.getLong("amount"))
+                .status(TransactionStatusEnum.ofCode(rs.getShort("status")))
+                .createdAt(rs.getLong("created_at"))
+                .build();
+    }
+}
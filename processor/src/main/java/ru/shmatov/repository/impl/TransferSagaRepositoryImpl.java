@@ -0,0 +1,59 @@
+package ru.shmatov.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.repository.TransferSagaRepository;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
+@RequiredArgsConstructor
+public class TransferSagaRepositoryImpl implements TransferSagaRepository {
+
+    private final ShardRouter shards;
+
+    // сага живёт на шарде отправителя, рядом со списанием
+    @Override
+    public void save(Long transferId, long createdAt, long nextAttemptAt) {
+        shards.write(shards.shardOfId(transferId)).update("""
+                        INSERT INTO transfer_sagas (transfer_id, next_attempt_at, created_at)
+                        VALUES (?,?,?)
+                        """,
+                transferId, nextAttemptAt, createdAt);
+    }
+
+    /**
+     * Забирает не больше limit саг, которые никто не довёл за срок аренды, и продлевает им аренду.
+     * Строки, которые в этот момент забирает другой узел, пропускаются.
+     */
+    @LogExecutionTime
+    @Override
+    public List<Long> claimStale(int shard, long now, long leaseUntil, int limit) {
+        return shards.scan(shard).queryForList("""
+                        UPDATE transfer_sagas SET next_attempt_at = ?, attempts = attempts + 1
+                        WHERE transfer_id IN (SELECT transfer_id FROM transfer_sagas
+                                              WHERE next_attempt_at <= ?
+                                              ORDER BY next_attempt_at
+                                              LIMIT ? FOR UPDATE SKIP LOCKED)
+                        RETURNING transfer_id
+                        """,
+                Long.class,
+                leaseUntil, now, limit);
+    }
+
+    // DELETE берёт блокировку строки: из двух узлов, завершающих одну сагу, строку получит только один
+    @Override
+    public boolean delete(Long transferId) {
+        return shards.write(shards.shardOfId(transferId)).update(
+                "DELETE FROM transfer_sagas WHERE transfer_id = ?", transferId) > 0;
+    }
+
+    @Override
+    public Optional<Long> findOldestCreatedAt(int shard) {
+        return Optional.ofNullable(shards.scan(shard)
+                .queryForObject("SELECT MIN(created_at) FROM transfer_sagas", Long.class));
+    }
+}
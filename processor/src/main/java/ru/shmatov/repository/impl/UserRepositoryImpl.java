@@ -10,6 +10,7 @@ import org.springframework.jdbc.support.KeyHolder;
 import ru.shmatov.annotation.LogExecutionTime;
 import ru.shmatov.model.User;
 import ru.shmatov.repository.UserRepository;
+import ru.shmatov.shard.ShardRouter;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -23,16 +24,16 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class UserRepositoryImpl implements UserRepository {
 
-    private final JdbcTemplate jdbc;
-    private final RowMapper<User> userRowMapper = (rs, rowNum) -> mapUser(rs);
+    private final ShardRouter shards;
 
     @Override
     public Optional<User> findByUsername(String username) {
+        JdbcTemplate jdbc = shards.read(shards.shardOfUsername(username));
         try {
             return Optional.ofNullable(
                     jdbc.queryForObject(
                             "SELECT * FROM users WHERE username = ?",
-                            userRowMapper,
+                            mapper(jdbc),
                             username
                     )
             );
@@ -42,23 +43,28 @@ public class UserRepositoryImpl implements UserRepository {
     }
 
     @Override
+    // шард по telegram-имени не вычислить — опрашиваем все
     public Optional<User> findByTelegramUsername(String tgUsername) {
-        try {
-            return Optional.ofNullable(
-                    jdbc.queryForObject(
-                            "SELECT * FROM users WHERE telegram_username = ?",
-                            userRowMapper,
-                            tgUsername
-                    )
-            );
-        } catch (EmptyResultDataAccessException ex) {
-            return Optional.empty();
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            JdbcTemplate jdbc = shards.scan(shard);
+            try {
+                return Optional.ofNullable(
+                        jdbc.queryForObject(
+                                "SELECT * FROM users WHERE telegram_username = ?",
+                                mapper(jdbc),
+                                tgUsername
+                        )
+                );
+            } catch (EmptyResultDataAccessException ex) {
+                // нет на этом шарде
+            }
         }
+        return Optional.empty();
     }
 
     @Override
     public boolean existsByUsername(String username) {
-        Integer cnt = jdbc.queryForObject(
+        Integer cnt = shards.read(shards.shardOfUsername(username)).queryForObject(
                 "SELECT COUNT(*) FROM users WHERE username = ?",
                 Integer.class,
                 username
@@ -68,7 +74,7 @@ public class UserRepositoryImpl implements UserRepository {
 
     @LogExecutionTime
     @Override
-    public void save(User user) {
+    public void save(int shard, User user) {
         final String sql = """
                 INSERT INTO users
                   (username, telegram_username, password,
@@ -78,6 +84,7 @@ public class UserRepositoryImpl implements UserRepository {
                 """;
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
+        JdbcTemplate jdbc = shards.write(shard);
 
         jdbc.update(conn -> {
             PreparedStatement ps = conn.prepareStatement(sql, new String[]{"id"});
@@ -109,7 +116,11 @@ public class UserRepositoryImpl implements UserRepository {
         log.info("User [{}] saved with id={}", user.getUsername(), userId);
     }
 
-    private User mapUser(ResultSet rs) throws SQLException {
+    private RowMapper<User> mapper(JdbcTemplate jdbc) {
+        return (rs, rowNum) -> mapUser(rs, jdbc);
+    }
+
+    private User mapUser(ResultSet rs, JdbcTemplate jdbc) throws SQLException {
         long userId = rs.getLong("id");
 
         Set<String> roles = new HashSet<>(
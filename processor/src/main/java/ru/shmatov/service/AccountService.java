@@ -2,9 +2,16 @@ package ru.shmatov.service;
 
 import ru.shmatov.AccountMasterBalanceNumberPairDTO;
 import ru.shmatov.AccountAndBalancesPairDTO;
+import ru.shmatov.enums.StatementFormat;
+import ru.shmatov.enums.TotalsPeriod;
 import ru.shmatov.exception.*;
 import ru.shmatov.request.AccountCreateRequest;
 import ru.shmatov.response.AccountViewResponse;
+import ru.shmatov.response.BalanceAtResponse;
+import ru.shmatov.response.BalanceTotalsResponse;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
 
 public interface AccountService {
 
@@ -22,4 +29,12 @@ public interface AccountService {
 
     String switchPrimaryBalance(String username, String balanceNumber);
 
+    BalanceAtResponse getBalanceAt(String username, String balanceNumber, long timestamp);
+
+    void exportStatement(String username, String balanceNumber, long from, long to,
+                         StatementFormat format, OutputStream out);
+
+    BalanceTotalsResponse getTotals(String username, String balanceNumber, LocalDate from, LocalDate to,
+                                    TotalsPeriod period);
+
 }
\ No newline at end of file
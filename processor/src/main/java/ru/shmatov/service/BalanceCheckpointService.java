@@ -0,0 +1,8 @@
+package ru.shmatov.service;
+
+import ru.shmatov.model.AccountBalance;
+
+public interface BalanceCheckpointService {
+    long balanceAt(AccountBalance balance, long timestamp);
+    void writeCheckpoints();
+}
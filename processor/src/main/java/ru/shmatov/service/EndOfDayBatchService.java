@@ -0,0 +1,10 @@
+package ru.shmatov.service;
+
+import ru.shmatov.enums.EodPostingKind;
+import ru.shmatov.response.EodBatchResponse;
+
+import java.time.LocalDate;
+
+public interface EndOfDayBatchService {
+    EodBatchResponse run(EodPostingKind kind, LocalDate businessDate, long amount);
+}
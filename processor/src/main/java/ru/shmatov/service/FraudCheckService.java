@@ -0,0 +1,5 @@
+package ru.shmatov.service;
+
+public interface FraudCheckService {
+    void check(String username, String toBalanceNumber, long amount);
+}
@@ -0,0 +1,9 @@
+package ru.shmatov.service;
+
+import ru.shmatov.response.ImportResponse;
+
+import java.io.InputStream;
+
+public interface ImportService {
+    ImportResponse importUsers(InputStream csv);
+}
@@ -0,0 +1,8 @@
+package ru.shmatov.service;
+
+public interface RefreshTokenService {
+    String issue(String username);
+    String consume(String refreshToken);
+    void revoke(String refreshToken);
+    long getTtlMs();
+}
@@ -0,0 +1,14 @@
+package ru.shmatov.service;
+
+import ru.shmatov.ScheduledTransferDTO;
+import ru.shmatov.enums.ScheduleRecurrence;
+
+import java.util.List;
+
+public interface ScheduledTransferService {
+    ScheduledTransferDTO create(String username, Long amount, String fromBalanceNumber, String toBalanceNumber,
+                                Long firstRunAt, ScheduleRecurrence recurrence);
+    List<ScheduledTransferDTO> findAll(String username);
+    void cancel(String username, Long id);
+    void runDueTransfers();
+}
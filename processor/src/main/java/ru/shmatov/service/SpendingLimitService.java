@@ -0,0 +1,9 @@
+package ru.shmatov.service;
+
+import ru.shmatov.model.AccountBalance;
+
+public interface SpendingLimitService {
+    void check(AccountBalance fromBalance, long amount);
+    void reserve(AccountBalance fromBalance, long amount);
+    void release(AccountBalance fromBalance, long amount, long reservedAt);
+}
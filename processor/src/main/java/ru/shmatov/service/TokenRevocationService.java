@@ -0,0 +1,6 @@
+package ru.shmatov.service;
+
+public interface TokenRevocationService {
+    void revoke(String jti, long expiresAtMs);
+    boolean isRevoked(String jti, long expiresAtMs);
+}
@@ -0,0 +1,5 @@
+package ru.shmatov.service;
+
+public interface TransferArchiveService {
+    void archiveTransfers();
+}
@@ -0,0 +1,16 @@
+package ru.shmatov.service;
+
+import ru.shmatov.model.Transfer;
+
+/**
+ * Проводка переводов между балансами на разных шардах.
+ * Перевод, списание и строка саги пишутся в текущей транзакции, копия перевода и зачисление —
+ * отдельной транзакцией на шарде получателя после её коммита; если это не удалось — списание компенсируется.
+ * Саги, которые узел не довёл (упал или не смог компенсировать), доводит recover.
+ */
+public interface TransferSagaService {
+
+    void post(Transfer transfer);
+
+    void recover();
+}
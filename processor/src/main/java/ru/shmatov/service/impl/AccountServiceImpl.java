@@ -6,8 +6,11 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.shmatov.AccountAndBalancesPairDTO;
 import ru.shmatov.AccountBalanceDTO;
 import ru.shmatov.AccountMasterBalanceNumberPairDTO;
+import ru.shmatov.BalanceTotalsDTO;
 import ru.shmatov.TransactionDTO;
 import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.enums.StatementFormat;
+import ru.shmatov.enums.TotalsPeriod;
 import ru.shmatov.exception.*;
 import ru.shmatov.model.Account;
 import ru.shmatov.model.AccountBalance;
@@ -15,15 +18,24 @@ import ru.shmatov.model.Transaction;
 import ru.shmatov.model.User;
 import ru.shmatov.repository.AccountBalanceRepository;
 import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.repository.BalanceTotalsRepository;
 import ru.shmatov.repository.TransactionRepository;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.request.AccountCreateRequest;
 import ru.shmatov.response.AccountViewResponse;
+import ru.shmatov.response.BalanceAtResponse;
+import ru.shmatov.response.BalanceTotalsResponse;
 import ru.shmatov.service.AccountService;
+import ru.shmatov.service.BalanceCheckpointService;
+import ru.shmatov.shard.ShardKeys;
 import ru.shmatov.util.AccountNumberGenerator;
+import ru.shmatov.util.StatementWriter;
 
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -33,18 +45,25 @@ public class AccountServiceImpl implements AccountService {
     private final UserRepository userRepository;
     private final AccountBalanceRepository accountBalanceRepository;
     private final TransactionRepository transactionRepository;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final BalanceTotalsRepository balanceTotalsRepository;
+
+    // сколько номеров контрагентов помнит одна выгрузка выписки
+    private static final int COUNTERPARTY_CACHE_SIZE = 1024;
 
     private TransactionDTO mapToTransactionDTO(Transaction tx) {
         var sender = accountBalanceRepository.findById(tx.getBalanceId())
                 .orElseThrow(() -> new BalanceNotFoundException("sender"));
-        var receiver = accountBalanceRepository.findById(tx.getReceiverBalanceId())
-                .orElseThrow(() -> new BalanceNotFoundException("receiver"));
+        // баланс получателя может лежать на другом шарде и быть уже удалённым: связи между шардами без FK
+        String receiverBalanceNumber = accountBalanceRepository.findById(tx.getReceiverBalanceId())
+                .map(AccountBalance::getBalanceNumber)
+                .orElse(null);
         return TransactionDTO.builder()
                 .id(tx.getId())
                 .transactionType(tx.getTransactionType())
                 .transactionStatus(tx.getTransactionStatus())
                 .senderBalanceNumber(sender.getBalanceNumber())
-                .receiverBalanceNumber(receiver.getBalanceNumber())
+                .receiverBalanceNumber(receiverBalanceNumber)
                 .amount(tx.getAmount())
                 .createdAt(tx.getCreatedAt())
                 .build();
@@ -81,7 +100,7 @@ public class AccountServiceImpl implements AccountService {
         String accountNumber;
         int retry = 0;
         do {
-            accountNumber = AccountNumberGenerator.generateAccountNumber();
+            accountNumber = AccountNumberGenerator.generateAccountNumber(ShardKeys.ofId(userId));
             retry++;
         } while (accountRepository.findByAccountNumber(accountNumber).isPresent() && retry < 5);
 
@@ -127,8 +146,8 @@ public class AccountServiceImpl implements AccountService {
             if (b.getBalance() != 0) throw new BalanceNotEmptyException(b.getBalanceNumber());
         });
 
-        List<String> numbers = new ArrayList<>();
-        balances.forEach(b -> numbers.add(accountBalanceRepository.deleteById(b.getId())));
+        // балансы и аккаунт только помечаются удалёнными, историю и сами строки уберёт фоновая очистка
+        List<String> numbers = accountBalanceRepository.deleteAllByAccountId(account.getId());
         String accountNumber = accountRepository.deleteByUserUsername(username);
 
         log.info("Account {} deleted for user {}", accountNumber, username);
@@ -136,6 +155,7 @@ public class AccountServiceImpl implements AccountService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     @LogExecutionTime
     public AccountViewResponse getAccountView(String username) {
         if (!userRepository.existsByUsername(username))
@@ -263,4 +283,82 @@ public class AccountServiceImpl implements AccountService {
                 currentPrimary.getBalanceNumber(), balanceNumber, username);
         return currentPrimary.getBalanceNumber();
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    @LogExecutionTime
+    public BalanceAtResponse getBalanceAt(String username, String balanceNumber, long timestamp) {
+        AccountBalance balance = findOwnedBalance(username, balanceNumber);
+
+        long amount = timestamp < balance.getCreatedAt()
+                ? 0
+                : balanceCheckpointService.balanceAt(balance, timestamp);
+        return new BalanceAtResponse(balanceNumber, timestamp, amount);
+    }
+
+    /**
+     * Выписка пишется прямо в поток ответа, пока открыт курсор по истории баланса.
+     * Номера контрагентов на том же шарде приходят из самого курсора; остальные ищутся по одному разу
+     * на баланс через ограниченный LRU-кэш, так что в памяти только текущая строка и этот кэш.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @LogExecutionTime
+    public void exportStatement(String username, String balanceNumber, long from, long to,
+                                StatementFormat format, OutputStream out) {
+        AccountBalance balance = findOwnedBalance(username, balanceNumber);
+
+        StatementWriter writer = new StatementWriter(out, format);
+        Map<Long, String> counterparties = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > COUNTERPARTY_CACHE_SIZE;
+            }
+        };
+        writer.writeHeader();
+        transactionRepository.streamByBalanceId(balance.getId(), from, to, (tx, localCounterparty) -> {
+            if (localCounterparty != null) {
+                writer.write(tx, localCounterparty);
+                return;
+            }
+            // контрагент на другом шарде или его баланс уже удалён, тогда номер пустой
+            String counterparty = counterparties.computeIfAbsent(tx.getReceiverBalanceId(),
+                    id -> accountBalanceRepository.findById(id).map(AccountBalance::getBalanceNumber).orElse(""));
+            writer.write(tx, counterparty.isEmpty() ? null : counterparty);
+        });
+        writer.flush();
+        log.info("Statement of balance {} exported for user {}", balanceNumber, username);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @LogExecutionTime
+    public BalanceTotalsResponse getTotals(String username, String balanceNumber, LocalDate from, LocalDate to,
+                                           TotalsPeriod period) {
+        AccountBalance balance = findOwnedBalance(username, balanceNumber);
+
+        List<BalanceTotalsDTO> totals = balanceTotalsRepository.findByBalanceId(balance.getId(), from, to, period)
+                .stream()
+                .map(t -> BalanceTotalsDTO.builder()
+                        .periodStart(t.getPeriodStart())
+                        .inAmount(t.getInAmount())
+                        .outAmount(t.getOutAmount())
+                        .inCount(t.getInCount())
+                        .outCount(t.getOutCount())
+                        .build())
+                .toList();
+        return new BalanceTotalsResponse(balanceNumber, period, totals);
+    }
+
+    private AccountBalance findOwnedBalance(String username, String balanceNumber) {
+        if (!userRepository.existsByUsername(username))
+            throw new UserNotFoundException(username);
+
+        Account account = accountRepository.findByUsername(username)
+                .orElseThrow(() -> new AccountNotFoundException(username));
+
+        return accountBalanceRepository.findByBalanceNumber(balanceNumber)
+                .filter(b -> b.getAccountId().equals(account.getId()))
+                .orElseThrow(() -> new BalanceNotFoundException(balanceNumber));
+    }
 }
@@ -0,0 +1,80 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.BalanceCheckpoint;
+import ru.shmatov.repository.BalanceCheckpointRepository;
+import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.TransferSagaRepository;
+import ru.shmatov.service.BalanceCheckpointService;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.Optional;
+
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceCheckpointServiceImpl implements BalanceCheckpointService {
+
+    private final ShardRouter shardRouter;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransferSagaRepository transferSagaRepository;
+
+    @Value("${balance-checkpoint.interval-ms}")
+    private long intervalMs;
+    @Value("${balance-checkpoint.settle-lag-ms}")
+    private long settleLagMs;
+
+    /**
+     * Остаток на момент timestamp: ближайший чекпоинт не позже него плюс проведённое после чекпоинта.
+     * Если такого нет, берётся ближайший более поздний чекпоинт, а если нет и его — текущий остаток,
+     * из которых вычитается проведённое после timestamp.
+     */
+    @Override
+    public long balanceAt(AccountBalance balance, long timestamp) {
+        Long balanceId = balance.getId();
+        Optional<BalanceCheckpoint> before = balanceCheckpointRepository.findLatestAtOrBefore(balanceId, timestamp);
+        if (before.isPresent()) {
+            return before.get().getBalance()
+                    + transactionRepository.sumConfirmedAmounts(balanceId, before.get().getAsOf(), timestamp);
+        }
+        Optional<BalanceCheckpoint> after = balanceCheckpointRepository.findEarliestAfter(balanceId, timestamp);
+        if (after.isPresent()) {
+            return after.get().getBalance()
+                    - transactionRepository.sumConfirmedAmounts(balanceId, timestamp, after.get().getAsOf());
+        }
+        return balance.getBalance()
+                - transactionRepository.sumConfirmedAmounts(balanceId, timestamp, Long.MAX_VALUE);
+    }
+
+    /**
+     * as_of кратен интервалу и отстаёт на settle-lag от текущего времени, поэтому все узлы пишут одни и те же точки.
+     * Незавершённая сага может ещё вернуть списание со старым created_at, поэтому as_of шарда не заходит
+     * за самую старую его сагу: settle-lag покрывает только обычные транзакции, а сагу восстановление
+     * может доводить сколько угодно долго.
+     */
+    @Scheduled(fixedDelayString = "${balance-checkpoint.interval-ms}",
+            initialDelayString = "${balance-checkpoint.settle-lag-ms}")
+    @Override
+    public void writeCheckpoints() {
+        long settled = System.currentTimeMillis() - settleLagMs;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                long safe = transferSagaRepository.findOldestCreatedAt(shard)
+                        .map(oldest -> Math.min(settled, oldest - 1))
+                        .orElse(settled);
+                long asOf = Math.floorDiv(safe, intervalMs) * intervalMs;
+                long since = balanceCheckpointRepository.findLastAsOf(shard).orElse(0L);
+                if (since >= asOf) {
+                    continue;
+                }
+                balanceCheckpointRepository.writeCheckpoints(shard, since, asOf);
+            } catch (RuntimeException e) {
+                log.warn("Could not write balance checkpoints on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+}
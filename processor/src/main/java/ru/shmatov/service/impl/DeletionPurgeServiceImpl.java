@@ -0,0 +1,39 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.service.DeletionPurgeService;
+import ru.shmatov.shard.ShardRouter;
+
+/**
+ * Дочищает мягко удалённые аккаунты и балансы. За запуск на каждом шарде удаляется не больше
+ * chunk-size строк на шаг, так что блокировки короткие и не мешают переводам.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class DeletionPurgeServiceImpl implements DeletionPurgeService {
+
+    private final ShardRouter shardRouter;
+    private final AccountRepository accountRepository;
+    private final AccountBalanceRepository accountBalanceRepository;
+
+    @Value("${deletion-purge.chunk-size}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${deletion-purge.interval-ms}")
+    @Override
+    public void purgeDeleted() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                accountBalanceRepository.purgeDeleted(shard, chunkSize);
+                accountRepository.purgeDeleted(shard, chunkSize);
+            } catch (RuntimeException e) {
+                log.warn("Could not purge deleted accounts on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+}
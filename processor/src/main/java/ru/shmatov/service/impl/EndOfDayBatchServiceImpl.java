@@ -0,0 +1,172 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.config.properties.EodBatchProperties;
+import ru.shmatov.enums.EodPostingKind;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.BatchPosting;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.EodBatchRepository;
+import ru.shmatov.response.EodBatchResponse;
+import ru.shmatov.service.EndOfDayBatchService;
+import ru.shmatov.shard.ShardRouter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетные проводки по всем балансам: балансы каждого шарда делятся на диапазоны id по chunk-size,
+ * диапазоны проводятся параллельно, каждый своей транзакцией вместе с отметкой в eod_batch_chunks.
+ * Прерванный пакет запускается заново с теми же параметрами и продолжает с непроведённых диапазонов.
+ * Границы диапазонов кратны chunk-size, а не отсчитываются от текущего min(id): удалённый или новый баланс
+ * между запусками не сдвигает сетку, и уже проведённый диапазон при повторе находится по тому же ключу.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class EndOfDayBatchServiceImpl implements EndOfDayBatchService {
+
+    private static final long BASIS_POINTS = 10_000;
+    private static final long DAYS_IN_YEAR = 365;
+
+    private final ShardRouter shardRouter;
+    private final EodBatchRepository eodBatchRepository;
+    private final BalanceTotalsRepository balanceTotalsRepository;
+    private final Executor eodBatchExecutor;
+    private final EodBatchProperties properties;
+
+    @Override
+    @LogExecutionTime
+    public EodBatchResponse run(EodPostingKind kind, LocalDate businessDate, long amount) {
+        if (kind == null || businessDate == null) {
+            throw new IllegalArgumentException("kind and businessDate are required");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        long[] houseBalanceIds = properties.getHouseBalanceIds();
+        if (houseBalanceIds.length != shardRouter.getShardCount()) {
+            throw new IllegalStateException("eod-batch.house-balance-ids must list one balance per shard, got "
+                    + houseBalanceIds.length + " for " + shardRouter.getShardCount());
+        }
+        for (int shard = 0; shard < houseBalanceIds.length; shard++) {
+            long houseBalanceId = houseBalanceIds[shard];
+            if (shardRouter.shardOfId(houseBalanceId) != shard || !eodBatchRepository.balanceExists(shard, houseBalanceId)) {
+                throw new IllegalStateException("House balance " + houseBalanceId + " not found on shard " + shard);
+            }
+        }
+
+        String batchId = kind + ":" + businessDate;
+        long startedAt = System.currentTimeMillis();
+        AtomicLong rows = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int s = shard;
+            long[] range = eodBatchRepository.findIdRange(shard).orElse(null);
+            if (range == null) {
+                continue;
+            }
+            long chunkSize = properties.getChunkSize();
+            for (long start = Math.floorDiv(range[0], chunkSize) * chunkSize; start <= range[1]; start += chunkSize) {
+                long from = start;
+                long to = start + chunkSize;
+                chunks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        Integer posted = runChunk(s, batchId, kind, amount, from, to);
+                        if (posted == null) {
+                            skipped.incrementAndGet();
+                        } else {
+                            rows.addAndGet(posted);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        log.error("EOD batch {} chunk [{}, {}) on shard {} failed", batchId, from, to, s, e);
+                    }
+                }, eodBatchExecutor));
+            }
+        }
+        CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+
+        long elapsedMs = Math.max(1, System.currentTimeMillis() - startedAt);
+        long rowsPerSecond = rows.get() * 1000 / elapsedMs;
+        log.info("EOD batch {} finished: chunks={}, skipped={}, failed={}, rows={}, elapsedMs={}, rowsPerSecond={}",
+                batchId, chunks.size(), skipped.get(), failed.get(), rows.get(), elapsedMs, rowsPerSecond);
+
+        return EodBatchResponse.builder()
+                .batchId(batchId)
+                .chunks(chunks.size())
+                .skippedChunks(skipped.get())
+                .failedChunks(failed.get())
+                .rows(rows.get())
+                .elapsedMs(elapsedMs)
+                .rowsPerSecond(rowsPerSecond)
+                .build();
+    }
+
+    /**
+     * null — диапазон уже проведён этим пакетом раньше или другим узлом.
+     * Время проводок берётся в транзакции диапазона, а не при запуске пакета: диапазон, дождавшийся своей очереди,
+     * иначе попал бы в прошлое дальше, чем допускает задержка контрольных точек остатков.
+     */
+    private Integer runChunk(int shard, String batchId, EodPostingKind kind, long amount, long from, long to) {
+        Long houseBalanceId = properties.getHouseBalanceIds()[shard];
+        return shardRouter.inNewTransaction(shard, () -> {
+            long createdAt = System.currentTimeMillis();
+            if (!eodBatchRepository.claimChunk(shard, batchId, from, to, createdAt)) {
+                return null;
+            }
+            List<BatchPosting> postings = new ArrayList<>();
+            for (AccountBalance balance : eodBatchRepository.lockRange(shard, from, to, houseBalanceId)) {
+                long delta = delta(kind, amount, balance.getBalance());
+                if (delta != 0) {
+                    postings.add(new BatchPosting(balance.getId(), delta));
+                }
+            }
+            eodBatchRepository.post(shard, houseBalanceId, postings, createdAt);
+            addTotals(shard, houseBalanceId, postings, createdAt);
+            eodBatchRepository.completeChunk(shard, batchId, from, postings.size());
+            return postings.size();
+        });
+    }
+
+    // обороты служебного баланса — зеркало проводок диапазона, одной строкой на пачку
+    private void addTotals(int shard, Long houseBalanceId, List<BatchPosting> postings, long createdAt) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        balanceTotalsRepository.addAll(shard, postings, createdAt);
+        long in = 0;
+        long out = 0;
+        int inCount = 0;
+        int outCount = 0;
+        for (BatchPosting posting : postings) {
+            if (posting.amount() < 0) {
+                in -= posting.amount();
+                inCount++;
+            } else {
+                out += posting.amount();
+                outCount++;
+            }
+        }
+        balanceTotalsRepository.add(houseBalanceId, createdAt, in, out, inCount, outCount);
+    }
+
+    // комиссия не уводит баланс в минус, проценты начисляются только на положительный остаток
+    private static long delta(EodPostingKind kind, long amount, long balance) {
+        if (balance <= 0) {
+            return 0;
+        }
+        return switch (kind) {
+            case FEE -> -Math.min(amount, balance);
+            case INTEREST -> Math.multiplyExact(balance, amount) / BASIS_POINTS / DAYS_IN_YEAR;
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package ru.shmatov.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.config.properties.FraudProperties;
+import ru.shmatov.exception.TransferBlockedException;
+import ru.shmatov.fraud.ActivityRing;
+import ru.shmatov.fraud.ActivityTracker;
+import ru.shmatov.fraud.FraudRule;
+import ru.shmatov.fraud.FraudVerdict;
+import ru.shmatov.fraud.TransferAttempt;
+import ru.shmatov.service.FraudCheckService;
+
+import java.util.List;
+
+/**
+ * Предварительная проверка создаваемого перевода по активности отправителя и получателя на этом узле.
+ * Правила только читают кольца; перевод, который не заблокирован, записывается в оба кольца
+ * под теми же замками, что и проверка.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class FraudCheckServiceImpl implements FraudCheckService {
+
+    private final ActivityTracker activityTracker;
+    private final List<FraudRule> rules;
+    private final FraudProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void check(String username, String toBalanceNumber, long amount) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean recorded;
+        do {
+            ActivityRing sender = activityTracker.sender(username);
+            ActivityRing recipient = activityTracker.recipient(toBalanceNumber);
+            // в кольцах хранятся хэши ключей контрагентов: совпадение хэшей лишь занижает число различных
+            TransferAttempt attempt = new TransferAttempt(now, amount,
+                    sender, toBalanceNumber.hashCode(), recipient, username.hashCode());
+            recorded = ActivityRing.checkAndRecord(attempt, () -> evaluate(attempt, username, toBalanceNumber, amount));
+        } while (!recorded);
+    }
+
+    private void evaluate(TransferAttempt attempt, String username, String toBalanceNumber, long amount) {
+        for (FraudRule rule : rules) {
+            FraudVerdict verdict = rule.evaluate(attempt);
+            if (verdict == FraudVerdict.BLOCK) {
+                meterRegistry.counter("fraud.check.blocked", "rule", rule.name()).increment();
+                log.warn("Transfer by {} to {} for {} blocked by rule {}", username, toBalanceNumber, amount, rule.name());
+                throw new TransferBlockedException(rule.name());
+            }
+            if (verdict == FraudVerdict.FLAG) {
+                meterRegistry.counter("fraud.check.flagged", "rule", rule.name()).increment();
+                log.warn("Transfer by {} to {} for {} flagged by rule {}", username, toBalanceNumber, amount, rule.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.config.properties.ImportProperties;
+import ru.shmatov.model.ImportRecord;
+import ru.shmatov.repository.BulkImportRepository;
+import ru.shmatov.response.ImportResponse;
+import ru.shmatov.service.ImportService;
+import ru.shmatov.shard.ShardRouter;
+import ru.shmatov.util.AccountNumberGenerator;
+import ru.shmatov.util.AccountNumbers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт пользователей из CSV: username,telegram_username,password,initial_balance, первая строка — заголовок.
+ * Файл читается пачками: пока пачка загружается в БД, пароли следующей уже хэшируются в отдельном пуле.
+ * Каждая пачка ложится на свой шард одной транзакцией через COPY.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ImportServiceImpl implements ImportService {
+
+    private static final int ACCOUNT_NUMBER_RETRIES = 5;
+
+    private final ShardRouter shardRouter;
+    private final BulkImportRepository bulkImportRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final Executor hashingExecutor;
+    private final ImportProperties properties;
+
+    @Override
+    @LogExecutionTime
+    public ImportResponse importUsers(InputStream csv) {
+        Progress progress = new Progress();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            reader.readLine();
+            CompletableFuture<List<ImportRecord>> hashing = null;
+            List<ImportRecord> chunk;
+            while (!(chunk = readChunk(reader, progress)).isEmpty()) {
+                CompletableFuture<List<ImportRecord>> next = hash(chunk);
+                if (hashing != null) {
+                    load(hashing.join(), progress);
+                }
+                hashing = next;
+            }
+            if (hashing != null) {
+                load(hashing.join(), progress);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Import finished: processed={}, imported={}, skipped={}, rejected={}",
+                progress.processed, progress.imported, progress.skipped, progress.rejected);
+        return new ImportResponse(progress.processed, progress.imported, progress.skipped, progress.rejected);
+    }
+
+    private List<ImportRecord> readChunk(BufferedReader reader, Progress progress) throws IOException {
+        List<ImportRecord> chunk = new ArrayList<>(properties.getChunkSize());
+        String line;
+        while (chunk.size() < properties.getChunkSize() && (line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            progress.processed++;
+            ImportRecord record = parse(line);
+            if (record == null) {
+                progress.rejected++;
+                log.warn("Import line {} rejected", progress.processed);
+                continue;
+            }
+            chunk.add(record);
+        }
+        return chunk;
+    }
+
+    // пароль может содержать запятые, поэтому он — всё между вторым и последним разделителем
+    private ImportRecord parse(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        int last = line.lastIndexOf(',');
+        if (second < 0 || last <= second) {
+            return null;
+        }
+        String username = line.substring(0, first).trim();
+        String telegramUsername = line.substring(first + 1, second).trim();
+        String password = line.substring(second + 1, last);
+        long initialBalance;
+        try {
+            initialBalance = Long.parseLong(line.substring(last + 1).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (username.isEmpty() || telegramUsername.isEmpty() || password.length() < 6 || initialBalance < 0) {
+            return null;
+        }
+        return ImportRecord.builder()
+                .username(username)
+                .telegramUsername(telegramUsername)
+                .password(password)
+                .initialBalance(initialBalance)
+                .build();
+    }
+
+    private CompletableFuture<List<ImportRecord>> hash(List<ImportRecord> chunk) {
+        CompletableFuture<?>[] hashed = chunk.stream()
+                .map(r -> CompletableFuture.runAsync(
+                        () -> r.setPassword(passwordEncoder.encode(r.getPassword())), hashingExecutor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(hashed).thenApply(v -> chunk);
+    }
+
+    private void load(List<ImportRecord> chunk, Progress progress) {
+        // размещение закрепляется в справочнике до загрузки; уже существующие пользователи остаются на своём шарде
+        Map<String, Integer> placement = shardRouter.placeUsernames(
+                chunk.stream().map(ImportRecord::getUsername).collect(Collectors.toSet()));
+        Map<Integer, Map<String, ImportRecord>> byShard = new HashMap<>();
+        for (ImportRecord r : chunk) {
+            Map<String, ImportRecord> shard = byShard.computeIfAbsent(
+                    placement.get(r.getUsername()), s -> new LinkedHashMap<>());
+            if (shard.putIfAbsent(r.getUsername(), r) != null) {
+                progress.skipped++;
+            }
+        }
+        byShard.forEach((shard, records) -> {
+            List<ImportRecord> list = new ArrayList<>(records.values());
+            try {
+                int imported = shardRouter.inNewTransaction(shard, () -> loadShard(shard, list));
+                progress.imported += imported;
+                progress.skipped += list.size() - imported;
+            } catch (DataAccessException | IllegalStateException e) {
+                // пачка откатилась целиком, например пользователь с тем же username зарегистрировался параллельно
+                progress.rejected += list.size();
+                log.warn("Import chunk of {} users rejected on shard {}: {}", list.size(), shard, e.getMessage());
+            }
+        });
+        log.info("Import progress: processed={}, imported={}, skipped={}, rejected={}",
+                progress.processed, progress.imported, progress.skipped, progress.rejected);
+    }
+
+    private int loadShard(int shard, List<ImportRecord> records) {
+        Set<String> existing = bulkImportRepository.findExistingUsernames(shard,
+                records.stream().map(ImportRecord::getUsername).toList());
+        List<ImportRecord> fresh = records.stream()
+                .filter(r -> !existing.contains(r.getUsername()))
+                .toList();
+        if (fresh.isEmpty()) {
+            return 0;
+        }
+
+        Iterator<Long> userIds = bulkImportRepository.allocateIds(shard, "users_id_seq", fresh.size()).iterator();
+        Iterator<Long> accountIds = bulkImportRepository.allocateIds(shard, "accounts_id_seq", fresh.size()).iterator();
+        Iterator<Long> balanceIds = bulkImportRepository.allocateIds(shard, "account_balances_id_seq", fresh.size()).iterator();
+        fresh.forEach(r -> {
+            r.setUserId(userIds.next());
+            r.setAccountId(accountIds.next());
+            r.setBalanceId(balanceIds.next());
+        });
+        assignAccountNumbers(shard, fresh);
+
+        long now = System.currentTimeMillis();
+        bulkImportRepository.copyUsers(shard, fresh, properties.getBalanceCountLimit(), now);
+        bulkImportRepository.copyAccounts(shard, fresh);
+        bulkImportRepository.copyBalances(shard, fresh, now);
+        return fresh.size();
+    }
+
+    // номера случайные, как при создании аккаунта; совпавшие с уже занятыми перевыпускаются
+    private void assignAccountNumbers(int shard, List<ImportRecord> records) {
+        List<ImportRecord> pending = records;
+        Set<String> taken = new HashSet<>();
+        for (int retry = 0; retry < ACCOUNT_NUMBER_RETRIES && !pending.isEmpty(); retry++) {
+            pending.forEach(r -> {
+                String number;
+                do {
+                    number = AccountNumberGenerator.generateAccountNumber(shard);
+                } while (!taken.add(number));
+                r.setAccountNumber(number);
+            });
+            Set<Long> existing = bulkImportRepository.findExistingAccountNumbers(shard, pending.stream()
+                    .map(r -> AccountNumbers.accountPart(r.getAccountNumber()))
+                    .toList());
+            // номер, совпавший со старым номером без префикса, справочник отправил бы на другой шард
+            pending = pending.stream()
+                    .filter(r -> existing.contains(AccountNumbers.accountPart(r.getAccountNumber()))
+                            || shardRouter.shardOfNumber(r.getAccountNumber()) != shard)
+                    .toList();
+        }
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException("Could not allocate " + pending.size() + " account numbers on shard " + shard);
+        }
+    }
+
+    private static class Progress {
+        private long processed;
+        private long imported;
+        private long skipped;
+        private long rejected;
+    }
+}
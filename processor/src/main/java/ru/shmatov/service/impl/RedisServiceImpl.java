@@ -4,7 +4,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.transaction.annotation.Transactional;
 import ru.shmatov.annotation.LogExecutionTime;
 import ru.shmatov.enums.CodeVerificationResult;
 import ru.shmatov.service.RedisService;
@@ -25,7 +24,6 @@ public class RedisServiceImpl implements RedisService {
     }
 
     @Override
-    @Transactional
     @LogExecutionTime
     public void saveTransferCode(String username, Long transactionId, String code) {
         redis.opsForValue().set(key(username, transactionId), code, ttlSeconds, TimeUnit.SECONDS);
@@ -33,7 +31,6 @@ public class RedisServiceImpl implements RedisService {
     }
 
     @Override
-    @Transactional
     @LogExecutionTime
     public CodeVerificationResult verifyTransferCode(String username, Long transactionId, String code) {
         String key = key(username, transactionId);
@@ -55,7 +52,6 @@ public class RedisServiceImpl implements RedisService {
     }
 
     @Override
-    @Transactional
     @LogExecutionTime
     public void deleteTransferCode(String username, Long transactionId) {
         redis.delete(key(username, transactionId));
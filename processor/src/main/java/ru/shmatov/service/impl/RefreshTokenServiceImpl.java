@@ -0,0 +1,88 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.exception.InvalidRefreshTokenException;
+import ru.shmatov.service.RefreshTokenService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+
+    private static final SecureRandom RND = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+    // GET и DEL одной операцией (GETDEL появился только в Redis 6.2): владельца получает ровно один запрос
+    private static final RedisScript<String> GET_AND_DELETE_SCRIPT = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if value then
+                redis.call('DEL', KEYS[1])
+            end
+            return value
+            """, String.class);
+
+    private final StringRedisTemplate redis;
+
+    @Value("${jwt.refresh-ttl-ms}")
+    private long ttlMs;
+
+    // в Redis лежит только хэш токена, сам токен знает лишь клиент
+    private String key(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+            return "auth:refresh:" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    @LogExecutionTime
+    public String issue(String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RND.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        redis.opsForValue().set(key(token), username, ttlMs, TimeUnit.MILLISECONDS);
+        log.debug("Refresh token issued for user [{}]", username);
+        return token;
+    }
+
+    @Override
+    @LogExecutionTime
+    public String consume(String refreshToken) {
+        // токен одноразовый: из конкурирующих запросов владельца получит только первый
+        String username = redis.execute(GET_AND_DELETE_SCRIPT, List.of(key(refreshToken)));
+        if (username == null) {
+            log.debug("Refresh token not found or already used");
+            throw new InvalidRefreshTokenException();
+        }
+
+        log.debug("Refresh token consumed for user [{}]", username);
+        return username;
+    }
+
+    @Override
+    public void revoke(String refreshToken) {
+        redis.delete(key(refreshToken));
+        log.debug("Refresh token revoked");
+    }
+
+    @Override
+    public long getTtlMs() {
+        return ttlMs;
+    }
+}
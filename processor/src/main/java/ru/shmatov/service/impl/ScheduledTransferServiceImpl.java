@@ -0,0 +1,267 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+import ru.shmatov.ScheduledTransferDTO;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.config.properties.ScheduledTransferProperties;
+import ru.shmatov.enums.ScheduleRecurrence;
+import ru.shmatov.enums.ScheduledTransferStatus;
+import ru.shmatov.exception.*;
+import ru.shmatov.model.Account;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.PendingTransfer;
+import ru.shmatov.model.ScheduledTransfer;
+import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.repository.ScheduledTransferRepository;
+import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.service.ScheduledTransferService;
+import ru.shmatov.service.SpendingLimitService;
+import ru.shmatov.service.TransactionService;
+import ru.shmatov.shard.ShardRouter;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledTransferServiceImpl implements ScheduledTransferService {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final ShardRouter shardRouter;
+    private final ScheduledTransferRepository scheduledTransferRepository;
+    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final SpendingLimitService spendingLimitService;
+    private final Executor scheduledTransferExecutor;
+    private final ScheduledTransferProperties properties;
+
+    // задачи, забранные этим узлом и ещё не выполненные
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Override
+    @Transactional
+    @LogExecutionTime
+    public ScheduledTransferDTO create(String username, Long amount, String fromBalanceNumber, String toBalanceNumber,
+                                       Long firstRunAt, ScheduleRecurrence recurrence) {
+        if (amount == null || amount <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        if (recurrence == null) {
+            throw new IllegalArgumentException("recurrence is required");
+        }
+
+        AccountBalance fromBalance = ownedBalances(username).stream()
+                .filter(b -> b.getBalanceNumber().equals(fromBalanceNumber))
+                .findFirst()
+                .orElseThrow(() -> new BalanceNotFoundException(fromBalanceNumber));
+        AccountBalance toBalance = accountBalanceRepository.findByBalanceNumber(toBalanceNumber)
+                .orElseThrow(() -> new BalanceNotFoundException(toBalanceNumber));
+        if (fromBalance.getId().equals(toBalance.getId())) {
+            throw new SameBalancesException();
+        }
+
+        long now = System.currentTimeMillis();
+        ScheduledTransfer scheduled = ScheduledTransfer.builder()
+                .fromBalanceId(fromBalance.getId())
+                .toBalanceId(toBalance.getId())
+                .amount(amount)
+                .recurrence(recurrence)
+                .dueAt(firstRunAt == null ? now : firstRunAt)
+                .status(ScheduledTransferStatus.ACTIVE)
+                .attempts(0)
+                .createdAt(now)
+                .build();
+        scheduled.setId(scheduledTransferRepository.save(scheduled));
+
+        log.debug("Created scheduled transfer: id={}, amount={}, fromBalance={}, toBalance={}, recurrence={}",
+                scheduled.getId(), amount, fromBalanceNumber, toBalanceNumber, recurrence);
+
+        return toDto(scheduled, fromBalanceNumber, toBalanceNumber);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @LogExecutionTime
+    public List<ScheduledTransferDTO> findAll(String username) {
+        List<AccountBalance> balances = ownedBalances(username);
+        Map<Long, String> numbers = new HashMap<>();
+        balances.forEach(b -> numbers.put(b.getId(), b.getBalanceNumber()));
+
+        return scheduledTransferRepository.findAllByFromBalanceIds(balances.stream().map(AccountBalance::getId).toList())
+                .stream()
+                .map(s -> toDto(s, numbers.get(s.getFromBalanceId()), numbers.computeIfAbsent(s.getToBalanceId(),
+                        id -> accountBalanceRepository.findById(id).map(AccountBalance::getBalanceNumber).orElse(null))))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    @LogExecutionTime
+    public void cancel(String username, Long id) {
+        List<Long> balanceIds = ownedBalances(username).stream().map(AccountBalance::getId).toList();
+        if (!scheduledTransferRepository.cancel(id, balanceIds)) {
+            throw new ScheduledTransferNotFoundException(id);
+        }
+    }
+
+    /**
+     * Забирает наступившие задачи пачкой с каждого шарда и отдаёт их пулу исполнителей.
+     * Узлы забирают разные строки (SKIP LOCKED), поэтому пропускная способность растёт с числом узлов;
+     * на одном узле в работе не больше batch-size задач, остальные ждут в таблице, а не в памяти.
+     */
+    @Scheduled(fixedDelayString = "${scheduled-transfers.interval-ms}")
+    @Override
+    public void runDueTransfers() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int free = properties.getBatchSize() - inFlight.get();
+            if (free <= 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            try {
+                scheduledTransferRepository.claimDue(shard, now, now + properties.getLeaseMs(), free)
+                        .forEach(this::submit);
+            } catch (RuntimeException e) {
+                log.warn("Could not claim scheduled transfers on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    private void submit(ScheduledTransfer scheduled) {
+        inFlight.incrementAndGet();
+        try {
+            scheduledTransferExecutor.execute(() -> {
+                try {
+                    execute(scheduled);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // узел останавливается: задачу заберёт другой узел, когда истечёт аренда
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Перевод проводится тем же post, что и подтверждённый пользователем, в одной транзакции
+     * со сдвигом задачи на следующий повтор: либо и перевод, и сдвиг, либо ничего.
+     */
+    private void execute(ScheduledTransfer scheduled) {
+        try {
+            boolean ran = shardRouter.inNewTransaction(shardRouter.shardOfId(scheduled.getId()), () -> {
+                ScheduledTransferStatus status = scheduled.getRecurrence() == ScheduleRecurrence.ONCE
+                        ? ScheduledTransferStatus.COMPLETED
+                        : ScheduledTransferStatus.ACTIVE;
+                if (!scheduledTransferRepository.markRun(
+                        scheduled.getId(), scheduled.getNextRunAt(), nextDueAt(scheduled), status)) {
+                    return false;
+                }
+                post(scheduled);
+                return true;
+            });
+            if (!ran) {
+                log.debug("Scheduled transfer {} lease expired, skipped", scheduled.getId());
+            }
+        } catch (TransferSagaPendingException e) {
+            // списание проведено, зачисление доведёт восстановление саги: повтор заплатил бы второй раз
+            log.warn("Scheduled transfer {} is posted, its receiver side is left to saga recovery", scheduled.getId());
+        } catch (TransferSagaFailedException e) {
+            // сага откатила списание уже после коммита сдвига: возвращаем due_at к тому, что сдвинули
+            fail(scheduled, e, nextDueAt(scheduled), true);
+        } catch (BalanceNotFoundException e) {
+            fail(scheduled, e, scheduled.getNextRunAt(), false);
+        } catch (RuntimeException e) {
+            fail(scheduled, e, scheduled.getNextRunAt(), true);
+        }
+    }
+
+    // остаток проверяет само списание в post: прочитанный здесь баланс к моменту проводки может устареть
+    private void post(ScheduledTransfer scheduled) {
+        AccountBalance fromBalance = accountBalanceRepository.findById(scheduled.getFromBalanceId())
+                .orElseThrow(() -> new BalanceNotFoundException(String.valueOf(scheduled.getFromBalanceId())));
+        accountBalanceRepository.findById(scheduled.getToBalanceId())
+                .orElseThrow(() -> new BalanceNotFoundException(String.valueOf(scheduled.getToBalanceId())));
+
+        spendingLimitService.reserve(fromBalance, scheduled.getAmount());
+
+        transactionService.post(PendingTransfer.builder()
+                .id(transactionRepository.nextId(scheduled.getFromBalanceId()))
+                .mappedId(transactionRepository.nextId(scheduled.getToBalanceId()))
+                .fromBalanceId(scheduled.getFromBalanceId())
+                .toBalanceId(scheduled.getToBalanceId())
+                .amount(scheduled.getAmount())
+                .createdAt(System.currentTimeMillis())
+                .build());
+    }
+
+    // expectedRunAt — next_run_at, который оставил этот узел: срок аренды или сдвиг после проводки
+    private void fail(ScheduledTransfer scheduled, RuntimeException e, long expectedRunAt, boolean retryable) {
+        int attempts = scheduled.getAttempts() + 1;
+        boolean giveUp = !retryable || attempts >= properties.getMaxAttempts();
+        log.warn("Scheduled transfer {} failed, attempt {}{}: {}",
+                scheduled.getId(), attempts, giveUp ? ", giving up" : "", e.getMessage());
+        try {
+            scheduledTransferRepository.markFailed(
+                    scheduled.getId(),
+                    expectedRunAt,
+                    scheduled.getDueAt(),
+                    System.currentTimeMillis() + properties.getRetryBackoffMs() * attempts,
+                    attempts,
+                    truncate(e.getClass().getSimpleName() + ": " + e.getMessage()),
+                    giveUp ? ScheduledTransferStatus.FAILED : ScheduledTransferStatus.ACTIVE);
+        } catch (RuntimeException ex) {
+            // не записали — задача всё равно вернётся в очередь, когда истечёт аренда
+            log.warn("Could not record failure of scheduled transfer {}: {}", scheduled.getId(), ex.getMessage());
+        }
+    }
+
+    // повторы считаются от планового времени, а не от факта выполнения, чтобы дата не уползала из-за задержек
+    private long nextDueAt(ScheduledTransfer scheduled) {
+        ZonedDateTime due = Instant.ofEpochMilli(scheduled.getDueAt()).atZone(ZoneOffset.UTC);
+        return switch (scheduled.getRecurrence()) {
+            case ONCE -> scheduled.getDueAt();
+            case DAILY -> due.plusDays(1).toInstant().toEpochMilli();
+            case WEEKLY -> due.plusWeeks(1).toInstant().toEpochMilli();
+            case MONTHLY -> due.plusMonths(1).toInstant().toEpochMilli();
+        };
+    }
+
+    private List<AccountBalance> ownedBalances(String username) {
+        Account account = accountRepository.findByUsername(username)
+                .orElseThrow(() -> new AccountNotFoundException(username));
+        return accountBalanceRepository.findAllByAccountId(account.getId());
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private ScheduledTransferDTO toDto(ScheduledTransfer s, String fromBalanceNumber, String toBalanceNumber) {
+        return ScheduledTransferDTO.builder()
+                .id(s.getId())
+                .amount(s.getAmount())
+                .fromBalanceNumber(fromBalanceNumber)
+                .toBalanceNumber(toBalanceNumber)
+                .recurrence(s.getRecurrence())
+                .dueAt(s.getDueAt())
+                .status(s.getStatus())
+                .attempts(s.getAttempts())
+                .lastError(s.getLastError())
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.config.properties.SpendingLimitProperties;
+import ru.shmatov.exception.SpendingLimitExceededException;
+import ru.shmatov.limit.SpendingCounter;
+import ru.shmatov.limit.SpendingWindow;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.service.SpendingLimitService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.shmatov.util.TransactionHooks.afterRollback;
+
+/**
+ * Лимиты списаний по балансу и по аккаунту за скользящие окна. Суммы копятся в счётчиках при проводке,
+ * историю переводов для проверки не читаем.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class SpendingLimitServiceImpl implements SpendingLimitService {
+
+    private final SpendingCounter spendingCounter;
+    private final SpendingLimitProperties properties;
+
+    // при создании перевода: только проверка, сумма учтётся при проводке
+    @Override
+    public void check(AccountBalance fromBalance, long amount) {
+        apply(fromBalance, amount, false, System.currentTimeMillis());
+    }
+
+    // при проводке: проверка и учёт одной операцией; если транзакция откатится, сумма возвращается
+    @Override
+    public void reserve(AccountBalance fromBalance, long amount) {
+        long reservedAt = System.currentTimeMillis();
+        if (apply(fromBalance, amount, true, reservedAt)) {
+            afterRollback(() -> release(fromBalance, amount, reservedAt));
+        }
+    }
+
+    /**
+     * Возврат учтённой суммы: откат проводки или компенсация межшардового перевода. Сумма вычитается из корзины
+     * резерва, а не из текущей: иначе, когда корзина резерва выпадет из окна, итог ушёл бы в минус
+     * и отправитель смог бы потратить возвращённое ещё раз.
+     */
+    @Override
+    public void release(AccountBalance fromBalance, long amount, long reservedAt) {
+        if (!properties.isEnabled() || properties.getLimits().isEmpty()) {
+            return;
+        }
+        spendingCounter.release(windows(fromBalance), amount, reservedAt);
+    }
+
+    private boolean apply(AccountBalance fromBalance, long amount, boolean commit, long now) {
+        if (!properties.isEnabled() || properties.getLimits().isEmpty()) {
+            return false;
+        }
+        int exceeded = spendingCounter.tryAdd(windows(fromBalance), amount, commit, now);
+        if (exceeded >= 0) {
+            SpendingLimitProperties.Limit limit = properties.getLimits().get(exceeded);
+            log.info("Spending limit {} exceeded by balance {}: amount={}",
+                    limit.getName(), fromBalance.getId(), amount);
+            throw new SpendingLimitExceededException(limit.getName(), limit.getMaxAmount());
+        }
+        return true;
+    }
+
+    private List<SpendingWindow> windows(AccountBalance fromBalance) {
+        List<SpendingWindow> windows = new ArrayList<>(properties.getLimits().size());
+        for (SpendingLimitProperties.Limit limit : properties.getLimits()) {
+            String owner = limit.getScope() == SpendingLimitProperties.Scope.ACCOUNT
+                    ? "account:" + fromBalance.getAccountId()
+                    : "balance:" + fromBalance.getId();
+            windows.add(new SpendingWindow(owner + ":" + limit.getName(), limit.getWindowMs(), limit.getMaxAmount()));
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.shmatov.service.TokenRevocationService;
+import ru.shmatov.util.TokenRevocationRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationServiceImpl implements TokenRevocationService, MessageListener {
+
+    public static final String CHANNEL = "auth:revocations";
+    private static final String REVOKED_KEY = "auth:revoked";
+
+    private final StringRedisTemplate redis;
+    private final TokenRevocationRegistry registry;
+
+    /**
+     * Узел, поднявшийся позже, догоняет отзывы из sorted set, а дальше слушает канал.
+     * Снимок читается после старта контейнера подписок: отзыв, опубликованный в промежутке, попадёт
+     * и в канал, и в sorted set, так что не потеряется; повторное применение отзыва ничего не меняет.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRevoked() {
+        long now = System.currentTimeMillis();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> revoked =
+                    redis.opsForZSet().rangeByScoreWithScores(REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+            if (revoked != null) {
+                revoked.forEach(t -> registry.revoke(t.getValue(), t.getScore().longValue()));
+            }
+            log.info("Loaded {} revoked tokens", registry.size());
+        } catch (Exception e) {
+            log.warn("Could not load revoked tokens from Redis: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void revoke(String jti, long expiresAtMs) {
+        if (jti == null) {
+            return;
+        }
+        registry.revoke(jti, expiresAtMs);
+        redis.opsForZSet().add(REVOKED_KEY, jti, expiresAtMs);
+        redis.convertAndSend(CHANNEL, jti + ":" + expiresAtMs);
+        log.debug("Token [{}] revoked until {}", jti, expiresAtMs);
+    }
+
+    @Override
+    public boolean isRevoked(String jti, long expiresAtMs) {
+        return registry.isRevoked(jti, expiresAtMs);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.lastIndexOf(':');
+        if (separator <= 0) {
+            log.warn("Malformed revocation message: {}", payload);
+            return;
+        }
+        try {
+            registry.revoke(payload.substring(0, separator), Long.parseLong(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Malformed revocation message: {}", payload);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.evict-interval-ms}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int evicted = registry.evictExpired(now);
+        try {
+            redis.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, now);
+        } catch (Exception e) {
+            log.warn("Could not evict expired revocations from Redis: {}", e.getMessage());
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} expired revocation buckets", evicted);
+        }
+    }
+}
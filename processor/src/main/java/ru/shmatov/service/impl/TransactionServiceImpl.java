@@ -6,28 +6,40 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.annotation.LogExecutionTime;
 import ru.shmatov.enums.TransactionStatusEnum;
-import ru.shmatov.enums.TransactionType;
 import ru.shmatov.exception.*;
+import ru.shmatov.journal.TransferJournal;
 import ru.shmatov.model.Account;
 import ru.shmatov.model.AccountBalance;
-import ru.shmatov.model.Transaction;
-import ru.shmatov.model.User;
+import ru.shmatov.model.PendingTransfer;
+import ru.shmatov.model.Transfer;
 import ru.shmatov.repository.AccountBalanceRepository;
 import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.PendingTransferRepository;
 import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.TransferRepository;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.service.TransactionService;
+import ru.shmatov.service.TransferSagaService;
+import ru.shmatov.shard.ShardKeys;
 
 import java.util.List;
 
+import static ru.shmatov.util.TransactionHooks.afterCommit;
+
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final PendingTransferRepository pendingTransferRepository;
+    private final TransferRepository transferRepository;
     private final AccountRepository accountRepository;
     private final AccountBalanceRepository accountBalanceRepository;
+    private final BalanceTotalsRepository balanceTotalsRepository;
     private final UserRepository userRepository;
+    private final TransferSagaService transferSagaService;
+    private final TransferJournal transferJournal;
 
     private AccountBalance doPrepare(String username, String fromBalanceNumber) {
         if (!userRepository.existsByUsername(username)) {
@@ -45,6 +57,10 @@ public class TransactionServiceImpl implements TransactionService {
                 .orElseThrow(() -> new BalanceNotFoundException(fromBalanceNumber));
     }
 
+    /**
+     * Создаёт перевод в pending_transfers; в transactions он попадёт только после подтверждения.
+     * id обеих ног берутся заранее, чтобы клиент получил ту же пару, что потом окажется в журнале.
+     */
     @Override
     @Transactional
     @LogExecutionTime
@@ -53,79 +69,55 @@ public class TransactionServiceImpl implements TransactionService {
         AccountBalance toAccountBalance = accountBalanceRepository.findByBalanceNumber(toBalanceNumber)
                 .orElseThrow(() -> new BalanceNotFoundException(toBalanceNumber));
 
-        long now = System.currentTimeMillis();
-
-        Long fromTransactionId = transactionRepository.save(
-                Transaction.builder()
-                        .createdAt(now)
-                        .amount(amount * -1)
-                        .transactionType(TransactionType.TRANSFER_TO)
-                        .transactionStatus(TransactionStatusEnum.CREATED)
-                        .balanceId(fromAccountBalance.getId())
-                        .receiverBalanceId(toAccountBalance.getId())
-                        .build()
-        );
-
-        Long toTransactionId = transactionRepository.save(
-                Transaction.builder()
-                        .createdAt(now)
-                        .amount(amount)
-                        .transactionType(TransactionType.TRANSFER_FROM)
-                        .transactionStatus(TransactionStatusEnum.CREATED)
-                        .balanceId(toAccountBalance.getId())
-                        .receiverBalanceId(fromAccountBalance.getId())
-                        .build()
-        );
-
-        transactionRepository.updateReceiverTransactionId(fromTransactionId, toTransactionId);
-        transactionRepository.updateReceiverTransactionId(toTransactionId, fromTransactionId);
-
-        log.debug("Created transaction pair: fromId={}, toId={}, amount={}, fromBalance={}, toBalance={}",
-                fromTransactionId, toTransactionId, amount, fromBalanceNumber, toBalanceNumber);
-
-        return new TransactionIdPairDTO(fromTransactionId, toTransactionId);
+        PendingTransfer pendingTransfer = PendingTransfer.builder()
+                .id(transactionRepository.nextId(fromAccountBalance.getId()))
+                .mappedId(transactionRepository.nextId(toAccountBalance.getId()))
+                .fromBalanceId(fromAccountBalance.getId())
+                .toBalanceId(toAccountBalance.getId())
+                .amount(amount)
+                .createdAt(System.currentTimeMillis())
+                .build();
+        pendingTransferRepository.save(pendingTransfer);
+
+        log.debug("Created pending transfer: fromId={}, toId={}, amount={}, fromBalance={}, toBalance={}",
+                pendingTransfer.getId(), pendingTransfer.getMappedId(), amount, fromBalanceNumber, toBalanceNumber);
+
+        return new TransactionIdPairDTO(pendingTransfer.getId(), pendingTransfer.getMappedId());
     }
 
+    /**
+     * Проводит подтверждённый перевод: он пишется в журнал transfers одной строкой сразу в статусе CONFIRMED
+     * и больше не обновляется, балансы и дневные обороты меняются в той же транзакции.
+     */
     @Override
     @Transactional
     @LogExecutionTime
-    public TransactionIdPairDTO updateStatus(String username, TransactionStatusEnum status, TransactionStatusEnum statusMapped, TransactionIdPairDTO idPair) {
-        Transaction fromTransaction = transactionRepository.findById(idPair.getId())
-                .orElseThrow(() -> new SenderTransactionNotFoundException(idPair.getId()));
-
-        Transaction toTransaction = transactionRepository.findById(idPair.getMappedId())
-                .orElseThrow(() -> new ReceiverTransactionNotFoundException(idPair.getMappedId()));
-
-        AccountBalance fromBalance = accountBalanceRepository.findById(fromTransaction.getBalanceId())
-                .orElseThrow(() -> new BalanceNotFoundException("unknown balance"));
-
-        AccountBalance toBalance = accountBalanceRepository.findById(toTransaction.getBalanceId())
-                .orElseThrow(() -> new BalanceNotFoundException("unknown balance"));
-
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UserNotFoundException(username));
-
-        Account sender = accountRepository.findByUsername(username)
-                .orElseThrow(() -> new AccountNotFoundException(username));
-
-        List<AccountBalance> balances = accountBalanceRepository.findAllByAccountId(sender.getId());
-
-        boolean notOwned = balances.stream()
-                .noneMatch(b -> b.getId().equals(fromBalance.getId()));
-
-        if (notOwned) {
-            throw new SecurityBalanceNotBelongTransactionException(
-                    "Transaction " + idPair.getId() + " does not belong to balance " +
-                            fromBalance.getBalanceNumber() + " — security error. All changes have been reverted."
-            );
+    public TransactionIdPairDTO post(PendingTransfer pendingTransfer) {
+        Transfer transfer = Transfer.builder()
+                .id(pendingTransfer.getId())
+                .mappedId(pendingTransfer.getMappedId())
+                .fromBalanceId(pendingTransfer.getFromBalanceId())
+                .toBalanceId(pendingTransfer.getToBalanceId())
+                .amount(pendingTransfer.getAmount())
+                .status(TransactionStatusEnum.CONFIRMED)
+                .createdAt(System.currentTimeMillis())
+                .build();
+
+        if (ShardKeys.sameShard(transfer.getFromBalanceId(), transfer.getToBalanceId())) {
+            transferRepository.save(transfer);
+            accountBalanceRepository.debit(transfer.getFromBalanceId(), transfer.getAmount());
+            accountBalanceRepository.updateBalance(transfer.getToBalanceId(), transfer.getAmount());
+            balanceTotalsRepository.add(transfer.getFromBalanceId(), transfer.getCreatedAt(), 0, transfer.getAmount(), 0, 1);
+            balanceTotalsRepository.add(transfer.getToBalanceId(), transfer.getCreatedAt(), transfer.getAmount(), 0, 1, 0);
+            afterCommit(() -> transferJournal.append(transfer));
+        } else {
+            // межшардовый перевод журналирует сага, когда знает исход ноги получателя
+            transferSagaService.post(transfer);
         }
 
-        transactionRepository.updateStatus(idPair.getId(), status);
-        transactionRepository.updateStatus(idPair.getMappedId(), statusMapped);
-
-        log.debug("Updated transaction statuses: id={} => {}, mappedId={} => {}",
-                idPair.getId(), status, idPair.getMappedId(), statusMapped);
+        log.debug("Posted transfer: id={}, mappedId={}, amount={}",
+                transfer.getId(), transfer.getMappedId(), transfer.getAmount());
 
-        return idPair;
+        return new TransactionIdPairDTO(transfer.getId(), transfer.getMappedId());
     }
 }
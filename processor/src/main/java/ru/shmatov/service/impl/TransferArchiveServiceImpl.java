@@ -0,0 +1,42 @@
+package ru.shmatov.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.shmatov.repository.TransferRepository;
+import ru.shmatov.service.TransferArchiveService;
+import ru.shmatov.shard.ShardRouter;
+
+/**
+ * Переносит старые переводы в transfers_archive. За один запуск — не больше одной пачки на шард,
+ * так что скорость переноса ограничена chunk-size строк за interval-ms и не даёт всплесков ввода-вывода.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class TransferArchiveServiceImpl implements TransferArchiveService {
+
+    private final ShardRouter shardRouter;
+    private final TransferRepository transferRepository;
+
+    @Value("${archive.transfers.age-ms}")
+    private long ageMs;
+    @Value("${archive.transfers.chunk-size}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${archive.transfers.interval-ms}")
+    @Override
+    public void archiveTransfers() {
+        long cutoff = System.currentTimeMillis() - ageMs;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                int moved = transferRepository.archiveCreatedBefore(shard, cutoff, chunkSize);
+                if (moved > 0) {
+                    log.debug("Archived {} transfers on shard {}", moved, shard);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not archive transfers on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.shmatov.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.shmatov.annotation.LogExecutionTime;
+import ru.shmatov.config.properties.TransferSagaProperties;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.exception.TransferSagaFailedException;
+import ru.shmatov.exception.TransferSagaPendingException;
+import ru.shmatov.journal.TransferJournal;
+import ru.shmatov.model.Transfer;
+import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.TransferRepository;
+import ru.shmatov.repository.TransferSagaRepository;
+import ru.shmatov.service.SpendingLimitService;
+import ru.shmatov.service.TransferSagaService;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.shmatov.util.TransactionHooks.afterCommit;
+
+@RequiredArgsConstructor
+@Slf4j
+public class TransferSagaServiceImpl implements TransferSagaService {
+
+    // ключ ресурса транзакции: отложенные шаги по шардам получателей
+    private static final Object REMOTE_STEPS = new Object();
+
+    private enum Outcome {
+        // зачисление закоммичено
+        COMPLETED,
+        // списание возвращено отправителю
+        REVERTED,
+        // компенсация не записалась: исход решит recover
+        IN_DOUBT
+    }
+
+    private final ShardRouter shardRouter;
+    private final TransferRepository transferRepository;
+    private final TransferSagaRepository transferSagaRepository;
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final BalanceTotalsRepository balanceTotalsRepository;
+    private final SpendingLimitService spendingLimitService;
+    private final TransferJournal transferJournal;
+    private final TransferSagaProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    @LogExecutionTime
+    public void post(Transfer transfer) {
+        transferRepository.save(transfer);
+        accountBalanceRepository.debit(transfer.getFromBalanceId(), transfer.getAmount());
+        balanceTotalsRepository.add(transfer.getFromBalanceId(), transfer.getCreatedAt(), 0, transfer.getAmount(), 0, 1);
+        // коммитится вместе со списанием: если узел упадёт до зачисления, сагу доведёт recover
+        transferSagaRepository.save(transfer.getId(), transfer.getCreatedAt(),
+                transfer.getCreatedAt() + properties.getLeaseMs());
+
+        remote(transfer.getId(), transfer.getMappedId()).transfers.add(transfer);
+
+        log.debug("Posted cross-shard transfer: id={}, mappedId={}, amount={}",
+                transfer.getId(), transfer.getMappedId(), transfer.getAmount());
+    }
+
+    /**
+     * Доводит саги, которые узел, проводивший перевод, не завершил за срок аренды: упал после коммита списания
+     * или не смог записать компенсацию. Зачисление повторяется, а если шард получателя его не принимает —
+     * списание компенсируется. Повтор зачисления безопасен: копия перевода на шарде получателя не дублируется.
+     */
+    @Scheduled(fixedDelayString = "${transfer.saga.recovery-interval-ms}")
+    @Override
+    public void recover() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            long now = System.currentTimeMillis();
+            List<Long> stale;
+            try {
+                stale = transferSagaRepository.claimStale(
+                        shard, now, now + properties.getLeaseMs(), properties.getRecoveryBatchSize());
+            } catch (RuntimeException e) {
+                log.warn("Could not claim stale transfer sagas on shard {}: {}", shard, e.getMessage());
+                continue;
+            }
+            stale.forEach(this::recover);
+        }
+    }
+
+    private void recover(Long transferId) {
+        meterRegistry.counter("transfer.saga.recovered").increment();
+        Transfer transfer = transferRepository.findById(transferId).orElse(null);
+        if (transfer == null) {
+            // строка саги пишется вместе с переводом, так что без перевода её быть не может
+            log.error("Transfer {} of a pending saga not found, dropping the saga", transferId);
+            transferSagaRepository.delete(transferId);
+            return;
+        }
+        log.info("Recovering transfer saga {}", transferId);
+        try {
+            Outcome outcome = run(new Steps(shardRouter.shardOfId(transfer.getId()),
+                    shardRouter.shardOfId(transfer.getMappedId()), List.of(transfer))).get(0);
+            switch (outcome) {
+                case REVERTED -> log.warn("Recovered transfer saga {} was reverted", transferId);
+                case IN_DOUBT -> log.warn("Transfer saga {} is still in doubt, left to the next recovery", transferId);
+                case COMPLETED -> log.info("Recovered transfer saga {} completed", transferId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not recover transfer saga {}: {}", transferId, e.getMessage());
+        }
+    }
+
+    /**
+     * Шаги для шарда получателя копятся до коммита текущей транзакции и выполняются одной транзакцией на его шарде.
+     * Без транзакции отправителя откладывать шаги некуда, поэтому такой вызов — ошибка.
+     */
+    private Steps remote(Long localTransactionId, Long remoteTransactionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Cross-shard transfer requires an active transaction");
+        }
+        @SuppressWarnings("unchecked")
+        Map<Integer, Steps> pending = (Map<Integer, Steps>) TransactionSynchronizationManager.getResource(REMOTE_STEPS);
+        if (pending == null) {
+            Map<Integer, Steps> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(REMOTE_STEPS, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    finish(created.values());
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(REMOTE_STEPS);
+                }
+            });
+            pending = created;
+        }
+        int remoteShard = shardRouter.shardOfId(remoteTransactionId);
+        int localShard = shardRouter.shardOfId(localTransactionId);
+        return pending.computeIfAbsent(remoteShard, s -> new Steps(localShard, remoteShard, new ArrayList<>()));
+    }
+
+    /**
+     * Завершает переводы транзакции после её коммита. В журнал попадает всё, что не вернули отправителю:
+     * перевод с неясным исходом уже списан и, скорее всего, будет зачислен recover.
+     * Ошибкой для вызывающего считается только возвращённое списание; шаги других шардов выполняются в любом случае.
+     */
+    private void finish(Collection<Steps> pending) {
+        Long reverted = null;
+        Long inDoubt = null;
+        for (Steps steps : pending) {
+            List<Outcome> outcomes = run(steps);
+            for (int i = 0; i < steps.transfers.size(); i++) {
+                Transfer transfer = steps.transfers.get(i);
+                switch (outcomes.get(i)) {
+                    case COMPLETED -> transferJournal.append(transfer);
+                    case IN_DOUBT -> {
+                        transferJournal.append(transfer);
+                        inDoubt = inDoubt == null ? transfer.getId() : inDoubt;
+                    }
+                    case REVERTED -> reverted = reverted == null ? transfer.getId() : reverted;
+                }
+            }
+        }
+        if (reverted != null) {
+            throw new TransferSagaFailedException(reverted);
+        }
+        if (inDoubt != null) {
+            throw new TransferSagaPendingException(inDoubt);
+        }
+    }
+
+    // исходы в порядке steps.transfers
+    private List<Outcome> run(Steps steps) {
+        try {
+            shardRouter.inNewTransaction(steps.remoteShard, () -> steps.transfers.forEach(this::credit));
+        } catch (RuntimeException e) {
+            meterRegistry.counter("transfer.saga.failed").increment();
+            log.error("Remote leg of transfer {} failed on shard {}, compensating",
+                    steps.transfers.get(0).getId(), steps.remoteShard, e);
+            return steps.transfers.stream().map(transfer -> compensate(steps, transfer)).toList();
+        }
+
+        for (Transfer transfer : steps.transfers) {
+            try {
+                shardRouter.inNewTransaction(steps.localShard, () -> transferSagaRepository.delete(transfer.getId()));
+            } catch (RuntimeException e) {
+                // зачисление уже закоммичено; recover повторит его вхолостую и удалит сагу
+                log.warn("Could not close saga of transfer {}: {}", transfer.getId(), e.getMessage());
+            }
+        }
+        return steps.transfers.stream().map(transfer -> Outcome.COMPLETED).toList();
+    }
+
+    // зачисление датируется своей транзакцией: после восстановления саги время перевода уже за контрольной точкой остатков
+    private void credit(Transfer transfer) {
+        long creditedAt = System.currentTimeMillis();
+        if (transferRepository.saveReceiverCopy(transfer, creditedAt)) {
+            accountBalanceRepository.updateBalance(transfer.getToBalanceId(), transfer.getAmount());
+            balanceTotalsRepository.add(transfer.getToBalanceId(), creditedAt, transfer.getAmount(), 0, 1, 0);
+        }
+    }
+
+    /**
+     * Сага удаляется до проверки зачисления: другой узел удаляет её только после того, как зачисление
+     * закоммичено, или вместе с компенсацией, поэтому после удаления проверка уже не опаздывает.
+     */
+    private Outcome compensate(Steps steps, Transfer transfer) {
+        try {
+            return shardRouter.inNewTransaction(steps.localShard, () -> {
+                boolean claimed = transferSagaRepository.delete(transfer.getId());
+                // зачисление прошло, потерялся только ответ шарда получателя
+                if (transferRepository.receiverCopyExists(transfer)) {
+                    return Outcome.COMPLETED;
+                }
+                // зачисления нет, а сагу уже закрыл другой узел: он и вернул списание
+                if (!claimed) {
+                    return Outcome.REVERTED;
+                }
+                accountBalanceRepository.updateBalance(transfer.getFromBalanceId(), transfer.getAmount());
+                balanceTotalsRepository.add(transfer.getFromBalanceId(), transfer.getCreatedAt(), 0, -transfer.getAmount(), 0, -1);
+                transferRepository.updateStatus(transfer.getId(), TransactionStatusEnum.DECLINED);
+                // отклонённый перевод не должен расходовать лимит отправителя; резерв сделан непосредственно
+                // перед проводкой, так что его корзина — корзина created_at перевода
+                accountBalanceRepository.findById(transfer.getFromBalanceId()).ifPresent(fromBalance ->
+                        afterCommit(() -> spendingLimitService.release(
+                                fromBalance, transfer.getAmount(), transfer.getCreatedAt())));
+                afterCommit(() -> meterRegistry.counter("transfer.saga.compensated").increment());
+                return Outcome.REVERTED;
+            });
+        } catch (RuntimeException e) {
+            // строка саги осталась: recover повторит зачисление или компенсацию, когда истечёт аренда
+            meterRegistry.counter("transfer.saga.compensation.failed").increment();
+            log.error("Compensation of transfer {} failed on shard {}, left to saga recovery",
+                    transfer.getId(), steps.localShard, e);
+            return Outcome.IN_DOUBT;
+        }
+    }
+
+    private record Steps(int localShard, int remoteShard, List<Transfer> transfers) {
+    }
+}
@@ -2,6 +2,8 @@ package ru.shmatov.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.enums.CodeVerificationResult;
@@ -9,14 +11,16 @@ import ru.shmatov.enums.TransactionStatusEnum;
 import ru.shmatov.exception.*;
 import ru.shmatov.model.Account;
 import ru.shmatov.model.AccountBalance;
-import ru.shmatov.model.Transaction;
+import ru.shmatov.model.PendingTransfer;
 import ru.shmatov.repository.AccountBalanceRepository;
 import ru.shmatov.repository.AccountRepository;
-import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.PendingTransferRepository;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.response.APIResponse;
 import ru.shmatov.response.TransferResponse;
+import ru.shmatov.service.FraudCheckService;
 import ru.shmatov.service.RedisService;
+import ru.shmatov.service.SpendingLimitService;
 import ru.shmatov.service.TransactionService;
 import ru.shmatov.service.TransferService;
 
@@ -33,10 +37,19 @@ public class TransferServiceImpl implements TransferService {
     private final AccountRepository accountRepository;
     private final AccountBalanceRepository accountBalanceRepository;
     private final RedisService redisService;
-    private final TransactionRepository transactionRepository;
-
+    private final PendingTransferRepository pendingTransferRepository;
+    private final SpendingLimitService spendingLimitService;
+    private final FraudCheckService fraudCheckService;
+
+    @Value("${transfer.pending.ttl-ms}")
+    private long pendingTtlMs;
+
+    /**
+     * Без своей транзакции: записи в БД делает create в собственной транзакции, и к моменту записи кода
+     * в Redis соединение уже возвращено в пул. afterCommit для этого не годится — он выполняется до того,
+     * как соединение освобождается.
+     */
     @Override
-    @Transactional
     public TransferResponse transfer(String username, Long amount, String fromBalanceNumber, String toBalanceNumber) {
         if (amount == null || amount <= 0) {
             throw new IllegalArgumentException("amount must be positive");
@@ -55,15 +68,14 @@ public class TransferServiceImpl implements TransferService {
                     "Not enough money on balance %s: need %d, have %d"
                             .formatted(fromBalanceNumber, amount, fromBalance.getBalance()));
         }
+        spendingLimitService.check(fromBalance, amount);
+        fraudCheckService.check(username, toBalanceNumber, amount);
 
         TransactionIdPairDTO idPair = transactionService.create(username, amount, fromBalanceNumber, toBalanceNumber);
 
         String confirmationCode = generateCode();
         redisService.saveTransferCode(username, idPair.getId(), confirmationCode);
 
-        transactionService.updateStatus(username, TransactionStatusEnum.PENDING_CONFIRMATION,
-                TransactionStatusEnum.PENDING_CONFIRMATION, idPair);
-
         return TransferResponse.builder()
                 .code(confirmationCode)
                 .idPair(idPair)
@@ -80,10 +92,15 @@ public class TransferServiceImpl implements TransferService {
         Account sender = accountRepository.findByUsername(username)
                 .orElseThrow(() -> new AccountNotFoundException(username));
 
-        Transaction fromTx = transactionRepository.findById(idPair.getId())
+        PendingTransfer pendingTransfer = pendingTransferRepository.findById(idPair.getId())
                 .orElseThrow(() -> new SenderTransactionNotFoundException(idPair.getId()));
 
-        AccountBalance senderBalance = accountBalanceRepository.findById(fromTx.getBalanceId())
+        if (!Objects.equals(pendingTransfer.getMappedId(), idPair.getMappedId())) {
+            throw new SecurityBalanceNotBelongTransactionException(
+                    "Transactions are not linked correctly — security error");
+        }
+
+        AccountBalance senderBalance = accountBalanceRepository.findById(pendingTransfer.getFromBalanceId())
                 .orElseThrow(() -> new BalanceNotFoundException("unknown balance"));
 
         boolean notOwned = accountBalanceRepository.findAllByAccountId(sender.getId()).stream()
@@ -100,45 +117,31 @@ public class TransferServiceImpl implements TransferService {
 
         return switch (result) {
             case SUCCESS -> {
-                APIResponse response = processTransfer(username, idPair);
-                transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED,
-                        TransactionStatusEnum.CONFIRMED, idPair);
-                yield response;
+                PendingTransfer claimed = claim(idPair);
+                spendingLimitService.reserve(senderBalance, claimed.getAmount());
+                transactionService.post(claimed);
+                yield new APIResponse("Transfer completed successfully");
             }
             case CODE_MISMATCH, CODE_NOT_FOUND -> {
-                transactionService.updateStatus(username, TransactionStatusEnum.DECLINED,
-                        TransactionStatusEnum.DECLINED, idPair);
+                pendingTransferRepository.claim(idPair.getId());
                 throw new InvalidConfirmationCodeException(code);
             }
             default -> throw new IllegalStateException("Unexpected verification result: " + result);
         };
     }
 
-    private APIResponse processTransfer(String username, TransactionIdPairDTO idPair) {
-        Transaction fromTx = transactionRepository.findById(idPair.getId())
-                .orElseThrow(() -> new SenderTransactionNotFoundException(idPair.getId()));
-        Transaction toTx = transactionRepository.findById(idPair.getMappedId())
-                .orElseThrow(() -> new ReceiverTransactionNotFoundException(idPair.getMappedId()));
-
-        AccountBalance fromBalance = accountBalanceRepository.findById(fromTx.getBalanceId())
-                .orElseThrow(() -> new BalanceNotFoundException("From balance not found"));
-        AccountBalance toBalance = accountBalanceRepository.findById(toTx.getBalanceId())
-                .orElseThrow(() -> new BalanceNotFoundException("To balance not found"));
-
-        boolean inconsistent = !Objects.equals(fromTx.getReceiverBalanceId(), toBalance.getId()) ||
-                !Objects.equals(toTx.getReceiverBalanceId(), fromBalance.getId());
+    // перевод забирается из pending одним DELETE: повторное подтверждение той же пары сюда уже не пройдёт
+    private PendingTransfer claim(TransactionIdPairDTO idPair) {
+        return pendingTransferRepository.claim(idPair.getId())
+                .orElseThrow(() -> new TransactionStatusConflictException(idPair.getId(),
+                        TransactionStatusEnum.PENDING_CONFIRMATION, TransactionStatusEnum.CONFIRMED));
+    }
 
-        if (inconsistent) {
-            throw new SecurityBalanceNotBelongTransactionException(
-                    "Transactions are not linked correctly — security error");
+    @Scheduled(fixedDelayString = "${transfer.pending.purge-interval-ms}")
+    public void purgeExpiredPendingTransfers() {
+        int purged = pendingTransferRepository.deleteCreatedBefore(System.currentTimeMillis() - pendingTtlMs);
+        if (purged > 0) {
+            log.info("Purged {} expired pending transfers", purged);
         }
-
-        transactionService.updateStatus(username, TransactionStatusEnum.NO_ACTIVE,
-                TransactionStatusEnum.NO_ACTIVE, idPair);
-
-        accountBalanceRepository.updateBalance(fromBalance.getId(), fromTx.getAmount());
-        accountBalanceRepository.updateBalance(toBalance.getId(), toTx.getAmount());
-
-        return new APIResponse("Transfer completed successfully");
     }
 }
@@ -3,6 +3,7 @@ package ru.shmatov.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -13,6 +14,7 @@ import ru.shmatov.exception.UserAlreadyExistsException;
 import ru.shmatov.model.User;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.service.UserService;
+import ru.shmatov.shard.ShardRouter;
 
 import java.util.Set;
 
@@ -22,22 +24,28 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ShardRouter shardRouter;
 
     @Value("${spring.account-max-balance}")
     private int USER_BALANCE_COUNT_LIMIT;
 
+    /**
+     * Пароль хэшируется до начала транзакции: bcrypt работает сотни миллисекунд, и всё это время
+     * транзакция держала бы соединение из пула. Занятое имя отсекается проверкой заранее,
+     * а одновременную регистрацию того же имени ловит уникальный индекс при вставке.
+     */
     @Override
-    @Transactional
     @LogExecutionTime
     public String registerUser(String username, String telegramUsername, String rawPassword) {
         if (userRepository.existsByUsername(username)) {
             throw new UserAlreadyExistsException(username);
         }
+        String password = passwordEncoder.encode(rawPassword);
 
         User user = User.builder()
                 .username(username)
                 .telegramUsername(telegramUsername)
-                .password(passwordEncoder.encode(rawPassword))
+                .password(password)
                 .enabled(true)
                 .accountNonExpired(true)
                 .accountNonLocked(true)
@@ -47,17 +55,25 @@ public class UserServiceImpl implements UserService {
                 .roles(Set.of("USER"))
                 .build();
 
-        userRepository.save(user);
+        try {
+            int shard = shardRouter.placeUsername(username);
+            shardRouter.inNewTransaction(shard, () -> userRepository.save(shard, user));
+        } catch (DuplicateKeyException e) {
+            // то же имя успели зарегистрировать, пока считался хэш
+            throw new UserAlreadyExistsException(username);
+        }
         log.info("User [{}] has been successfully registered", username);
         return user.getUsername();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) {
         UserDetails userDetails = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
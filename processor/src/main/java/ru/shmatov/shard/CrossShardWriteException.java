@@ -0,0 +1,9 @@
+package ru.shmatov.shard;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+public class CrossShardWriteException extends InvalidDataAccessApiUsageException {
+    public CrossShardWriteException(int boundShard, int requestedShard) {
+        super("Transaction is bound to shard " + boundShard + ", cannot write to shard " + requestedShard);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.shmatov.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Справочник размещения на шарде 0: где лежит пользователь и где лежат счета со старыми номерами без префикса шарда.
+ * Размещение пользователя не меняется, поэтому найденное значение кэшируется; отсутствие — нет,
+ * чтобы только что зарегистрированный на другом узле пользователь нашёлся сразу.
+ * Старые номера выданы один раз и больше не появляются: они загружаются целиком при старте в отсортированный массив.
+ */
+@Slf4j
+public class ShardDirectory {
+
+    private final List<JdbcTemplate> shards;
+    private final JdbcTemplate home;
+    private final Map<String, Integer> users;
+
+    private long[] legacyNumbers = new long[0];
+    private byte[] legacyShards = new byte[0];
+
+    public ShardDirectory(List<JdbcTemplate> shards, int cacheSize) {
+        this.shards = List.copyOf(shards);
+        this.home = shards.get(0);
+        this.users = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Загружает старые номера со всех шардов и проверяет, что на шарде 0 нет данных мимо справочника:
+     * без этого включение второго шарда на существующей базе молча теряет пользователей и счета.
+     */
+    public void load() {
+        List<long[]> rows = new ArrayList<>();
+        for (JdbcTemplate shard : shards) {
+            shard.query("SELECT account_number, shard FROM account_number_shards",
+                    (RowCallbackHandler) rs -> rows.add(new long[]{rs.getLong(1), rs.getShort(2)}));
+        }
+        rows.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] numbers = new long[rows.size()];
+        byte[] owners = new byte[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            numbers[i] = rows.get(i)[0];
+            owners[i] = (byte) rows.get(i)[1];
+        }
+        legacyNumbers = numbers;
+        legacyShards = owners;
+
+        Boolean unlistedUsers = home.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM users u
+                               WHERE NOT EXISTS (SELECT 1 FROM user_shards d WHERE d.username = u.username))
+                """, Boolean.class);
+        Boolean unlistedNumbers = home.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM accounts a
+                               WHERE a.account_number / 100000000000000 <> 0
+                                 AND NOT EXISTS (SELECT 1 FROM account_number_shards d
+                                                 WHERE d.account_number = a.account_number))
+                """, Boolean.class);
+        if (Boolean.TRUE.equals(unlistedUsers) || Boolean.TRUE.equals(unlistedNumbers)) {
+            throw new IllegalStateException(
+                    "Shard 0 has users or account numbers missing from the shard directory, refusing to start sharded");
+        }
+        log.info("Shard directory loaded: {} legacy account numbers", numbers.length);
+    }
+
+    // null — номер выдан после шардирования, шард в его префиксе
+    public Integer legacyShardOfNumber(long accountNumber) {
+        int i = Arrays.binarySearch(legacyNumbers, accountNumber);
+        return i >= 0 ? (int) legacyShards[i] : null;
+    }
+
+    // null — такого пользователя нет
+    public Integer shardOfUsername(String username) {
+        Integer cached = users.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        List<Integer> found = home.queryForList(
+                "SELECT shard FROM user_shards WHERE username = ?", Integer.class, username);
+        if (found.isEmpty()) {
+            return null;
+        }
+        users.put(username, found.get(0));
+        return found.get(0);
+    }
+
+    /**
+     * Закрепляет за пользователями шард, если его ещё нет, и возвращает итоговое размещение.
+     * Пишется отдельно от транзакции регистрации: запись без пользователя безвредна, повторная регистрация
+     * с тем же именем попадёт на тот же шард.
+     */
+    public Map<String, Integer> assign(Map<String, Integer> proposed) {
+        if (proposed.isEmpty()) {
+            return Map.of();
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(proposed.entrySet());
+        home.batchUpdate("INSERT INTO user_shards (username, shard) VALUES (?,?) ON CONFLICT DO NOTHING",
+                entries, entries.size(), (ps, e) -> {
+                    ps.setString(1, e.getKey());
+                    ps.setShort(2, e.getValue().shortValue());
+                });
+        Map<String, Integer> placed = new HashMap<>();
+        home.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT username, shard FROM user_shards WHERE username = ANY (?)");
+            ps.setArray(1, con.createArrayOf("varchar", proposed.keySet().toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> placed.put(rs.getString(1), (int) rs.getShort(2)));
+        users.putAll(placed);
+        return placed;
+    }
+
+    public int assign(String username, int proposed) {
+        return assign(Map.of(username, proposed)).get(username);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.shmatov.shard;
+
+/**
+ * Как номер шарда зашит в ключи.
+ * Идентификаторы: старшие 16 бит — шард (последовательности на шарде N стартуют с N << 48).
+ * Номера счетов и балансов: первые две цифры — шард.
+ */
+public final class ShardKeys {
+
+    public static final int ID_SHIFT = 48;
+    public static final int NUMBER_PREFIX_LENGTH = 2;
+    public static final int MAX_SHARDS = 100;
+
+    private ShardKeys() {}
+
+    public static int ofId(long id) {
+        return (int) (id >>> ID_SHIFT);
+    }
+
+    public static int ofNumber(String number) {
+        return Integer.parseInt(number.substring(0, NUMBER_PREFIX_LENGTH));
+    }
+
+    public static int ofUsername(String username, int shardCount) {
+        return Math.floorMod(username.hashCode(), shardCount);
+    }
+
+    public static boolean sameShard(long firstId, long secondId) {
+        return ofId(firstId) == ofId(secondId);
+    }
+
+    public static String numberPrefix(int shard) {
+        return String.format("%0" + NUMBER_PREFIX_LENGTH + "d", shard);
+    }
+}
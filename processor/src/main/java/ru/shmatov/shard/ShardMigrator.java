@@ -0,0 +1,34 @@
+package ru.shmatov.shard;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Шард 0 мигрирует Spring Boot, остальные — этот класс, с тем же набором скриптов.
+ * Плейсхолдер shard_id задаёт стартовые значения последовательностей (shard << 48).
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardMigrator {
+
+    private final List<DataSource> shards;
+    private final String[] locations;
+
+    public void migrate() {
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i + 1;
+            Flyway.configure()
+                    .dataSource(shards.get(i))
+                    .locations(locations)
+                    .placeholders(Map.of("shard_id", String.valueOf(shard)))
+                    .load()
+                    .migrate();
+            log.info("Shard {} migrated", shard);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.shmatov.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ru.shmatov.util.AccountNumbers;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Выдаёт репозиториям JdbcTemplate нужного шарда.
+ * Локальная транзакция привязывается к шарду первого запроса в ней. Запись в другой шард внутри неё запрещена,
+ * для этого есть inNewTransaction. Чтение из другого шарда идёт мимо транзакции, отдельным соединением.
+ * Шард пользователя и счёта со старым номером берётся из ShardDirectory, остальное — из самих ключей.
+ */
+public class ShardRouter {
+
+    // ключ ресурса транзакции: к какому шарду она уже привязана
+    private static final Object BOUND_SHARD = new Object();
+
+    private final int shardCount;
+    private final JdbcTemplate jdbc;
+    private final List<JdbcTemplate> direct;
+    private final TransactionTemplate requiresNew;
+    private final ShardDirectory directory;
+
+    public ShardRouter(JdbcTemplate jdbc, List<JdbcTemplate> direct, PlatformTransactionManager transactionManager,
+                       ShardDirectory directory) {
+        this.shardCount = direct.size();
+        this.jdbc = jdbc;
+        this.direct = List.copyOf(direct);
+        this.directory = directory;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // пользователя нет в справочнике — значит, его нет вообще; хэш указывает, куда его поместила бы регистрация
+    public int shardOfUsername(String username) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        Integer shard = directory.shardOfUsername(username);
+        return shard != null ? checked(shard) : ShardKeys.ofUsername(username, shardCount);
+    }
+
+    // шард для регистрации: новый пользователь закрепляется по хэшу, существующий остаётся на своём
+    public int placeUsername(String username) {
+        return shardCount == 1 ? 0 : checked(directory.assign(username, ShardKeys.ofUsername(username, shardCount)));
+    }
+
+    public Map<String, Integer> placeUsernames(Collection<String> usernames) {
+        Map<String, Integer> proposed = new HashMap<>();
+        usernames.forEach(u -> proposed.put(u, shardCount == 1 ? 0 : ShardKeys.ofUsername(u, shardCount)));
+        return shardCount == 1 ? proposed : directory.assign(proposed);
+    }
+
+    public int shardOfId(Long id) {
+        return shardCount == 1 ? 0 : checked(ShardKeys.ofId(id));
+    }
+
+    // номера, выданные до шардирования, не несут префикса шарда и лежат в справочнике
+    public int shardOfNumber(String number) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        Integer legacy = directory.legacyShardOfNumber(AccountNumbers.accountPart(number));
+        return checked(legacy != null ? legacy : ShardKeys.ofNumber(number));
+    }
+
+    public JdbcTemplate write(int shard) {
+        if (shardCount == 1) {
+            return jdbc;
+        }
+        Integer bound = boundShard();
+        if (bound != null && bound != shard) {
+            throw new CrossShardWriteException(bound, shard);
+        }
+        bind(shard);
+        return jdbc;
+    }
+
+    public JdbcTemplate read(int shard) {
+        if (shardCount == 1) {
+            return jdbc;
+        }
+        Integer bound = boundShard();
+        if (bound != null && bound != shard) {
+            return direct.get(shard);
+        }
+        bind(shard);
+        return jdbc;
+    }
+
+    // чтение, которое не должно привязывать текущую транзакцию к шарду (обход всех шардов)
+    public JdbcTemplate scan(int shard) {
+        return shardCount == 1 ? jdbc : direct.get(shard);
+    }
+
+    public <T> T inNewTransaction(int shard, Supplier<T> action) {
+        return requiresNew.execute(status -> {
+            if (shardCount > 1) {
+                bind(shard);
+            }
+            return action.get();
+        });
+    }
+
+    public void inNewTransaction(int shard, Runnable action) {
+        inNewTransaction(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private Integer boundShard() {
+        return (Integer) TransactionSynchronizationManager.getResource(BOUND_SHARD);
+    }
+
+    private void bind(int shard) {
+        ShardContext.set(shard);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(BOUND_SHARD)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(BOUND_SHARD, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BOUND_SHARD);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(BOUND_SHARD, shard);
+                ShardContext.set(shard);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BOUND_SHARD);
+            }
+        });
+    }
+
+    private int checked(int shard) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Unknown shard " + shard + ", configured " + shardCount);
+        }
+        return shard;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.shmatov.util;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.shmatov.shard.ShardKeys;
 
 import java.security.SecureRandom;
 
@@ -8,14 +9,15 @@ import java.security.SecureRandom;
 public final class AccountNumberGenerator {
 
     private static final SecureRandom RND = new SecureRandom();
-    private static final long MAX_16_DIGIT = 1_0000_0000_0000_0000L;
-    private static final int BALANCE_SEQ_LENGTH = 4;
+    // первые две цифры номера — шард, остальные 14 случайные
+    private static final long MAX_14_DIGIT = 100_0000_0000_0000L;
+    private static final int BALANCE_SEQ_LENGTH = AccountNumbers.SEQUENCE_LENGTH;
 
     private AccountNumberGenerator() {}
 
-    public static String generateAccountNumber() {
-        long n = Math.abs(RND.nextLong()) % MAX_16_DIGIT;
-        String result = String.format("%016d", n);
+    public static String generateAccountNumber(int shard) {
+        long n = Math.abs(RND.nextLong()) % MAX_14_DIGIT;
+        String result = ShardKeys.numberPrefix(shard) + String.format("%014d", n);
         log.debug("Generated account number: {}", result);
         return result;
     }
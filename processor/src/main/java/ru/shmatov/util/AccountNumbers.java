@@ -0,0 +1,56 @@
+package ru.shmatov.util;
+
+/**
+ * Номера счетов и балансов в БД хранятся числами: номер счёта — BIGINT из 16 цифр,
+ * номер баланса — пара (номер счёта, порядковый номер SMALLINT). Наружу они остаются строками с ведущими нулями.
+ */
+public final class AccountNumbers {
+
+    public static final int ACCOUNT_LENGTH = 16;
+    public static final int SEQUENCE_LENGTH = 4;
+
+    private AccountNumbers() {}
+
+    public static boolean isAccountNumber(String number) {
+        return isDigits(number, ACCOUNT_LENGTH);
+    }
+
+    public static boolean isBalanceNumber(String number) {
+        return isDigits(number, ACCOUNT_LENGTH + SEQUENCE_LENGTH);
+    }
+
+    // у номера баланса первые 16 цифр — номер счёта
+    public static long accountPart(String number) {
+        return Long.parseLong(number, 0, ACCOUNT_LENGTH, 10);
+    }
+
+    public static short sequence(String balanceNumber) {
+        return (short) Integer.parseInt(balanceNumber, ACCOUNT_LENGTH, balanceNumber.length(), 10);
+    }
+
+    public static String formatAccount(long accountNumber) {
+        return pad(accountNumber, ACCOUNT_LENGTH);
+    }
+
+    public static String formatBalance(long accountNumber, int sequence) {
+        return pad(accountNumber, ACCOUNT_LENGTH) + pad(sequence, SEQUENCE_LENGTH);
+    }
+
+    private static boolean isDigits(String number, int length) {
+        if (number == null || number.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String pad(long value, int length) {
+        String digits = Long.toString(value);
+        return "0".repeat(length - digits.length()) + digits;
+    }
+}
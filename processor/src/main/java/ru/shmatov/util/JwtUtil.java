@@ -11,6 +11,7 @@ import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 @Slf4j
 public class JwtUtil {
@@ -21,6 +22,10 @@ public class JwtUtil {
     @Value("${jwt.expiration-ms}")
     private long expirationMs;
 
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+
     private SecretKey getSigningKey() {
         return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
     }
@@ -31,6 +36,7 @@ public class JwtUtil {
                 .toList();
 
         String token = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getUsername())
                 .claim("roles", roles)
                 .setIssuedAt(new Date())
@@ -42,26 +48,15 @@ public class JwtUtil {
         return token;
     }
 
-    public String extractUsername(String token) {
-        String username = getClaims(token).getSubject();
-        log.debug("Extracted username from token: {}", username);
-        return username;
-    }
-
-    public boolean isValid(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        boolean valid = username.equals(userDetails.getUsername()) && !isExpired(token);
+    // подпись и срок уже проверены при разборе в getClaims; здесь — только соответствие пользователю
+    public boolean isValid(Claims claims, UserDetails userDetails) {
+        String username = claims.getSubject();
+        boolean valid = username.equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
         log.debug("JWT validation result for {}: {}", username, valid);
         return valid;
     }
 
-    private boolean isExpired(String token) {
-        boolean expired = getClaims(token).getExpiration().before(new Date());
-        log.debug("Token expiration check: {}", expired);
-        return expired;
-    }
-
-    private Claims getClaims(String token) {
+    public Claims getClaims(String token) {
         Claims claims = Jwts.parserBuilder()
                 .setSigningKey(getSigningKey())
                 .build()
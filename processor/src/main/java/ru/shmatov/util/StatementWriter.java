@@ -0,0 +1,80 @@
+package ru.shmatov.util;
+
+import ru.shmatov.enums.StatementFormat;
+import ru.shmatov.model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Пишет выписку построчно в поток ответа. Строка собирается в одном переиспользуемом StringBuilder
+ * и уходит в буфер фиксированного размера, так что память не зависит от длины истории.
+ * Все поля — числа, имена enum и номера балансов из цифр, поэтому экранирование не нужно.
+ */
+public class StatementWriter implements Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER =
+            "id,created_at,transaction_type,transaction_status,amount,counterparty_balance_number\n";
+
+    private final Writer out;
+    private final StatementFormat format;
+    private final StringBuilder line = new StringBuilder(256);
+
+    public StatementWriter(OutputStream out, StatementFormat format) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.format = format;
+    }
+
+    public void writeHeader() {
+        if (format == StatementFormat.CSV) {
+            append(CSV_HEADER);
+        }
+    }
+
+    public void write(Transaction tx, String counterpartyBalanceNumber) {
+        line.setLength(0);
+        if (format == StatementFormat.CSV) {
+            line.append(tx.getId()).append(',')
+                    .append(tx.getCreatedAt()).append(',')
+                    .append(tx.getTransactionType()).append(',')
+                    .append(tx.getTransactionStatus()).append(',')
+                    .append(tx.getAmount()).append(',');
+            if (counterpartyBalanceNumber != null) {
+                line.append(counterpartyBalanceNumber);
+            }
+        } else {
+            line.append("{\"id\":").append(tx.getId())
+                    .append(",\"createdAt\":").append(tx.getCreatedAt())
+                    .append(",\"transactionType\":\"").append(tx.getTransactionType())
+                    .append("\",\"transactionStatus\":\"").append(tx.getTransactionStatus())
+                    .append("\",\"amount\":").append(tx.getAmount())
+                    .append(",\"counterpartyBalanceNumber\":");
+            if (counterpartyBalanceNumber != null) {
+                line.append('"').append(counterpartyBalanceNumber).append('"');
+            } else {
+                line.append("null");
+            }
+            line.append('}');
+        }
+        line.append('\n');
+        append(line);
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(CharSequence chars) {
+        try {
+            out.append(chars);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
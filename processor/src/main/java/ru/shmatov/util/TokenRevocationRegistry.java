@@ -0,0 +1,45 @@
+package ru.shmatov.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальный набор отозванных jti, разложенный по корзинам времени истечения токена.
+ * Проверка — два обращения к хэш-таблицам; корзина удаляется целиком, когда все её токены истекли.
+ */
+public class TokenRevocationRegistry {
+
+    private final long bucketMs;
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    public TokenRevocationRegistry(long bucketMs) {
+        this.bucketMs = bucketMs;
+    }
+
+    public void revoke(String jti, long expiresAtMs) {
+        if (jti == null || expiresAtMs <= System.currentTimeMillis()) {
+            return;
+        }
+        buckets.computeIfAbsent(expiresAtMs / bucketMs, k -> ConcurrentHashMap.newKeySet()).add(jti);
+    }
+
+    public boolean isRevoked(String jti, long expiresAtMs) {
+        if (jti == null) {
+            return false;
+        }
+        Set<String> bucket = buckets.get(expiresAtMs / bucketMs);
+        return bucket != null && bucket.contains(jti);
+    }
+
+    public int evictExpired(long nowMs) {
+        long currentBucket = nowMs / bucketMs;
+        int before = buckets.size();
+        buckets.keySet().removeIf(bucket -> bucket < currentBucket);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+}
@@ -0,0 +1,25 @@
+-- === scheduled_transfers (отложенные и регулярные переводы) ===
+-- Живут на шарде отправителя, id — из его последовательности, как и у остальных таблиц (см. V3).
+-- due_at — плановое время текущего повтора, next_run_at — когда задачу можно взять:
+-- при захвате узлом он сдвигается на срок аренды, при ошибке — на паузу перед повтором.
+CREATE TABLE scheduled_transfers
+(
+    id              BIGSERIAL PRIMARY KEY,
+    from_balance_id BIGINT       NOT NULL,
+    to_balance_id   BIGINT       NOT NULL,
+    amount          BIGINT       NOT NULL CHECK (amount > 0),
+    recurrence      SMALLINT     NOT NULL,
+    due_at          BIGINT       NOT NULL,
+    next_run_at     BIGINT       NOT NULL,
+    status          SMALLINT     NOT NULL,
+    attempts        SMALLINT     NOT NULL DEFAULT 0,
+    last_error      VARCHAR(255),
+    created_at      BIGINT       NOT NULL
+);
+
+SELECT setval('scheduled_transfers_id_seq', (${shard_id}::BIGINT << 48) + 1, false)
+WHERE (SELECT last_value FROM scheduled_transfers_id_seq) < (${shard_id}::BIGINT << 48);
+
+-- очередь планировщика: только активные задачи, по времени запуска
+CREATE INDEX scheduled_transfers_due_idx ON scheduled_transfers (next_run_at) WHERE status = 0;
+CREATE INDEX scheduled_transfers_from_balance_idx ON scheduled_transfers (from_balance_id);
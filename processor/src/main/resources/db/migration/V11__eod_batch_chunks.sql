@@ -0,0 +1,12 @@
+-- === eod_batch_chunks (прогресс пакетных проводок конца дня) ===
+-- Строка вставляется в той же транзакции, что и проводки диапазона балансов [chunk_start, chunk_end).
+-- Повторный запуск того же пакета пропускает диапазоны, для которых строка уже есть.
+CREATE TABLE eod_batch_chunks
+(
+    batch_id    VARCHAR(64) NOT NULL,
+    chunk_start BIGINT      NOT NULL,
+    chunk_end   BIGINT      NOT NULL,
+    rows        INTEGER     NOT NULL DEFAULT 0,
+    done_at     BIGINT      NOT NULL,
+    PRIMARY KEY (batch_id, chunk_start)
+);
@@ -0,0 +1,27 @@
+-- === balance_daily_totals (обороты баланса по дням, UTC) ===
+-- Обновляется в той же транзакции, что и проводка, поэтому отчёты по оборотам не читают журнал переводов.
+-- out_amount хранится положительным.
+CREATE TABLE balance_daily_totals
+(
+    balance_id BIGINT  NOT NULL,
+    day        DATE    NOT NULL,
+    in_amount  BIGINT  NOT NULL DEFAULT 0,
+    out_amount BIGINT  NOT NULL DEFAULT 0,
+    in_count   INTEGER NOT NULL DEFAULT 0,
+    out_count  INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (balance_id, day)
+);
+
+-- Начальное заполнение по уже проведённым переводам. Копии переводов с других шардов дают ноги
+-- чужих балансов, их обороты считаются на шарде владельца.
+INSERT INTO balance_daily_totals (balance_id, day, in_amount, out_amount, in_count, out_count)
+SELECT e.balance_id,
+       (to_timestamp(e.created_at / 1000.0) AT TIME ZONE 'UTC')::DATE,
+       COALESCE(SUM(e.amount) FILTER (WHERE e.amount > 0), 0),
+       COALESCE(-SUM(e.amount) FILTER (WHERE e.amount < 0), 0),
+       COUNT(*) FILTER (WHERE e.amount > 0),
+       COUNT(*) FILTER (WHERE e.amount < 0)
+FROM balance_entries_all e
+WHERE e.transaction_status = 2
+  AND e.balance_id IN (SELECT id FROM account_balances)
+GROUP BY 1, 2;
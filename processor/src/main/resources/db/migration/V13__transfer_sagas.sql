@@ -0,0 +1,14 @@
+-- === transfer_sagas (незавершённые переводы между шардами) ===
+-- Строка пишется на шарде отправителя в одной транзакции со списанием и удаляется,
+-- когда зачисление на шарде получателя или компенсация закоммичены.
+-- next_attempt_at — когда сагу может забрать восстановление: сразу после списания её ведёт узел,
+-- который провёл перевод, поэтому первое значение — время перевода плюс срок аренды.
+CREATE TABLE transfer_sagas
+(
+    transfer_id     BIGINT   PRIMARY KEY,
+    attempts        SMALLINT NOT NULL DEFAULT 0,
+    next_attempt_at BIGINT   NOT NULL,
+    created_at      BIGINT   NOT NULL
+);
+
+CREATE INDEX transfer_sagas_next_attempt_idx ON transfer_sagas (next_attempt_at);
@@ -0,0 +1,29 @@
+-- === справочник размещения (используется только на шарде 0) ===
+-- user_shards: на каком шарде пользователь. Новый пользователь попадает туда, куда указывает хэш имени
+-- при текущем числе шардов, и остаётся там, даже если шардов станет больше.
+CREATE TABLE user_shards
+(
+    username VARCHAR(255) PRIMARY KEY,
+    shard    SMALLINT     NOT NULL
+);
+
+-- Пользователи, созданные до справочника. Все данные до шардирования лежат на шарде 0;
+-- на остальных шардах строки попадают в их собственную, неиспользуемую копию таблицы.
+INSERT INTO user_shards (username, shard)
+SELECT username, ${shard_id}
+FROM users
+ON CONFLICT DO NOTHING;
+
+-- account_number_shards: номера счетов, первые две цифры которых не совпадают с шардом.
+-- Это номера, выданные до шардирования; новые номера всегда начинаются с номера шарда и сюда не пишутся.
+CREATE TABLE account_number_shards
+(
+    account_number BIGINT PRIMARY KEY,
+    shard          SMALLINT NOT NULL
+);
+
+INSERT INTO account_number_shards (account_number, shard)
+SELECT account_number, ${shard_id}
+FROM accounts
+WHERE account_number / 100000000000000 <> ${shard_id}
+ON CONFLICT DO NOTHING;
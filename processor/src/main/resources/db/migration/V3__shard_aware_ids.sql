@@ -0,0 +1,19 @@
+-- === шардирование ===
+-- Идентификаторы на шарде N начинаются с N << 48, так что шард восстанавливается из id (id >> 48).
+-- На шарде 0 последовательности не меняются.
+SELECT setval('users_id_seq', (${shard_id}::BIGINT << 48) + 1, false)
+WHERE (SELECT last_value FROM users_id_seq) < (${shard_id}::BIGINT << 48);
+
+SELECT setval('accounts_id_seq', (${shard_id}::BIGINT << 48) + 1, false)
+WHERE (SELECT last_value FROM accounts_id_seq) < (${shard_id}::BIGINT << 48);
+
+SELECT setval('account_balances_id_seq', (${shard_id}::BIGINT << 48) + 1, false)
+WHERE (SELECT last_value FROM account_balances_id_seq) < (${shard_id}::BIGINT << 48);
+
+SELECT setval('transactions_id_seq', (${shard_id}::BIGINT << 48) + 1, false)
+WHERE (SELECT last_value FROM transactions_id_seq) < (${shard_id}::BIGINT << 48);
+
+-- Парная нога перевода и баланс получателя могут лежать на другом шарде,
+-- поэтому ссылки на них больше не внешние ключи.
+ALTER TABLE transactions DROP CONSTRAINT IF EXISTS transactions_receiver_balance_id_fkey;
+ALTER TABLE transactions DROP CONSTRAINT IF EXISTS transactions_receiver_transaction_id_fkey;
@@ -0,0 +1,15 @@
+-- === pending_transfers (переводы до подтверждения OTP) ===
+-- Живут не дольше кода подтверждения, поэтому UNLOGGED: после сбоя БД таблица очищается, как и истёкшие коды.
+-- В transactions попадают только подтверждённые переводы, одной вставкой на ногу.
+-- id и mapped_id заранее взяты из transactions_id_seq шардов отправителя и получателя и станут id ног.
+CREATE UNLOGGED TABLE pending_transfers
+(
+    id              BIGINT PRIMARY KEY,
+    mapped_id       BIGINT NOT NULL,
+    from_balance_id BIGINT NOT NULL,
+    to_balance_id   BIGINT NOT NULL,
+    amount          BIGINT NOT NULL,
+    created_at      BIGINT NOT NULL
+);
+
+CREATE INDEX pending_transfers_created_at_idx ON pending_transfers (created_at);
@@ -0,0 +1,60 @@
+-- === transfers (журнал: одна строка на перевод) ===
+-- Обе стороны перевода в одной строке вместо двух связанных записей в transactions.
+-- id — нога отправителя, mapped_id — нога получателя: под этими id перевод виден клиенту и в истории.
+-- Перевод между шардами хранится копией на шарде получателя, чтобы его история читалась локально.
+CREATE TABLE transfers
+(
+    id              BIGINT PRIMARY KEY,
+    mapped_id       BIGINT      NOT NULL UNIQUE,
+    from_balance_id BIGINT      NOT NULL,
+    to_balance_id   BIGINT      NOT NULL,
+    amount          BIGINT      NOT NULL CHECK (amount > 0),
+    status          VARCHAR(50) NOT NULL,
+    created_at      BIGINT      NOT NULL
+);
+
+CREATE INDEX transfers_from_balance_id_idx ON transfers (from_balance_id, created_at);
+CREATE INDEX transfers_to_balance_id_idx ON transfers (to_balance_id, created_at);
+
+-- === balance_entries (история по балансу в прежнем формате transactions) ===
+-- Условие по balance_id Postgres опускает в обе ветки UNION ALL, так что каждая идёт по своему индексу.
+CREATE VIEW balance_entries AS
+SELECT id,
+       from_balance_id AS balance_id,
+       -amount         AS amount,
+       'TRANSFER_TO'   AS transaction_type,
+       status          AS transaction_status,
+       created_at,
+       to_balance_id   AS receiver_balance_id,
+       mapped_id       AS receiver_transaction_id
+FROM transfers
+UNION ALL
+SELECT mapped_id,
+       to_balance_id,
+       amount,
+       'TRANSFER_FROM',
+       status,
+       created_at,
+       from_balance_id,
+       id
+FROM transfers;
+
+-- === перенос истории из transactions ===
+-- Пара на одном шарде: строка берётся из ноги отправителя.
+INSERT INTO transfers (id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+SELECT t.id, t.receiver_transaction_id, t.balance_id, t.receiver_balance_id, -t.amount, t.transaction_status, t.created_at
+FROM transactions t
+WHERE t.transaction_type = 'TRANSFER_TO'
+  AND t.receiver_transaction_id IS NOT NULL
+ON CONFLICT DO NOTHING;
+
+-- Нога получателя без пары на этом шарде: перевод пришёл с другого шарда, строка собирается из неё.
+INSERT INTO transfers (id, mapped_id, from_balance_id, to_balance_id, amount, status, created_at)
+SELECT t.receiver_transaction_id, t.id, t.receiver_balance_id, t.balance_id, t.amount, t.transaction_status, t.created_at
+FROM transactions t
+WHERE t.transaction_type = 'TRANSFER_FROM'
+  AND t.receiver_transaction_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM transactions s WHERE s.id = t.receiver_transaction_id)
+ON CONFLICT DO NOTHING;
+
+-- transactions больше не пишется; таблица остаётся ради последовательности id и для отката
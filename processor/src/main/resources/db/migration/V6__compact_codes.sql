@@ -0,0 +1,56 @@
+-- === компактные коды вместо строк ===
+-- Статусы и типы хранятся SMALLINT-кодами из TransactionStatusEnum / TransactionType:
+-- CREATED 0, PENDING_CONFIRMATION 1, CONFIRMED 2, DECLINED 3, NO_ACTIVE 4; TRANSFER_FROM 0, TRANSFER_TO 1.
+-- Старая таблица transactions не переводится: в неё больше не пишут.
+
+DROP VIEW balance_entries;
+
+ALTER TABLE transfers
+    ALTER COLUMN status TYPE SMALLINT USING CASE status
+        WHEN 'CREATED' THEN 0
+        WHEN 'PENDING_CONFIRMATION' THEN 1
+        WHEN 'CONFIRMED' THEN 2
+        WHEN 'DECLINED' THEN 3
+        WHEN 'NO_ACTIVE' THEN 4
+        END;
+
+CREATE VIEW balance_entries AS
+SELECT id,
+       from_balance_id AS balance_id,
+       -amount         AS amount,
+       1::SMALLINT     AS transaction_type,
+       status          AS transaction_status,
+       created_at,
+       to_balance_id   AS receiver_balance_id,
+       mapped_id       AS receiver_transaction_id
+FROM transfers
+UNION ALL
+SELECT mapped_id,
+       to_balance_id,
+       amount,
+       0::SMALLINT,
+       status,
+       created_at,
+       from_balance_id,
+       id
+FROM transfers;
+
+-- === номера счетов и балансов числами ===
+-- Номер счёта — 16 цифр, помещается в BIGINT. Номер баланса — номер счёта и 4 цифры порядкового номера,
+-- 20 цифр в BIGINT не помещаются, поэтому он хранится парой колонок.
+ALTER TABLE accounts
+    ALTER COLUMN account_number TYPE BIGINT USING account_number::BIGINT;
+
+ALTER TABLE account_balances
+    ADD COLUMN number_account BIGINT,
+    ADD COLUMN number_seq     SMALLINT;
+
+UPDATE account_balances
+SET number_account = left(balance_number, 16)::BIGINT,
+    number_seq     = substr(balance_number, 17)::SMALLINT;
+
+ALTER TABLE account_balances
+    ALTER COLUMN number_account SET NOT NULL,
+    ALTER COLUMN number_seq SET NOT NULL,
+    ADD CONSTRAINT account_balances_number_key UNIQUE (number_account, number_seq),
+    DROP COLUMN balance_number;
@@ -0,0 +1,13 @@
+-- === balance_checkpoints (остаток баланса на момент as_of) ===
+-- Пишутся фоновой задачей только для балансов с движением с прошлого чекпоинта.
+-- Остаток на любой момент = ближайший чекпоинт ± сумма записей balance_entries между ними.
+CREATE TABLE balance_checkpoints
+(
+    balance_id    BIGINT NOT NULL,
+    as_of         BIGINT NOT NULL,
+    balance       BIGINT NOT NULL,
+    last_entry_id BIGINT,
+    PRIMARY KEY (balance_id, as_of)
+);
+
+CREATE INDEX balance_checkpoints_as_of_idx ON balance_checkpoints (as_of);
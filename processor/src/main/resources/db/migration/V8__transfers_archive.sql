@@ -0,0 +1,46 @@
+-- === transfers_archive (холодная часть журнала) ===
+-- Переводы старше archive.transfers.age-ms переносятся сюда пачками, горячая таблица и её индексы
+-- остаются размером с недавнюю историю.
+CREATE TABLE transfers_archive
+(
+    id              BIGINT PRIMARY KEY,
+    mapped_id       BIGINT   NOT NULL,
+    from_balance_id BIGINT   NOT NULL,
+    to_balance_id   BIGINT   NOT NULL,
+    amount          BIGINT   NOT NULL,
+    status          SMALLINT NOT NULL,
+    created_at      BIGINT   NOT NULL
+);
+
+CREATE INDEX transfers_archive_mapped_id_idx ON transfers_archive (mapped_id);
+CREATE INDEX transfers_archive_from_balance_id_idx ON transfers_archive (from_balance_id, created_at);
+CREATE INDEX transfers_archive_to_balance_id_idx ON transfers_archive (to_balance_id, created_at);
+
+-- архиватор выбирает самые старые строки
+CREATE INDEX transfers_created_at_idx ON transfers (created_at);
+
+-- === balance_entries_all (история вместе с архивом) ===
+-- Запросы, диапазон которых не заходит за границу архива, читают только balance_entries.
+CREATE VIEW balance_entries_all AS
+SELECT *
+FROM balance_entries
+UNION ALL
+SELECT id,
+       from_balance_id,
+       -amount,
+       1::SMALLINT,
+       status,
+       created_at,
+       to_balance_id,
+       mapped_id
+FROM transfers_archive
+UNION ALL
+SELECT mapped_id,
+       to_balance_id,
+       amount,
+       0::SMALLINT,
+       status,
+       created_at,
+       from_balance_id,
+       id
+FROM transfers_archive;
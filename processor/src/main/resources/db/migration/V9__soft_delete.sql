@@ -0,0 +1,23 @@
+-- === мягкое удаление аккаунтов и балансов ===
+-- Удаление в запросе только ставит deleted_at, строки и зависимые записи убирает фоновая очистка пачками.
+ALTER TABLE accounts
+    ADD COLUMN deleted_at BIGINT;
+
+ALTER TABLE account_balances
+    ADD COLUMN deleted_at BIGINT;
+
+-- удалённый, но ещё не очищенный аккаунт или баланс не должен мешать завести новый
+ALTER TABLE accounts
+    DROP CONSTRAINT accounts_user_id_key;
+CREATE UNIQUE INDEX accounts_user_id_key ON accounts (user_id) WHERE deleted_at IS NULL;
+
+ALTER TABLE account_balances
+    DROP CONSTRAINT account_balances_number_key;
+CREATE UNIQUE INDEX account_balances_number_key ON account_balances (number_account, number_seq) WHERE deleted_at IS NULL;
+
+CREATE INDEX accounts_deleted_idx ON accounts (id) WHERE deleted_at IS NOT NULL;
+CREATE INDEX account_balances_deleted_idx ON account_balances (id) WHERE deleted_at IS NOT NULL;
+CREATE INDEX account_balances_account_id_idx ON account_balances (account_id);
+
+-- очистка ищет записи старой таблицы по балансу
+CREATE INDEX transactions_balance_id_idx ON transactions (balance_id);
@@ -0,0 +1,73 @@
+package bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.shmatov.bulkhead.Bulkhead;
+import ru.shmatov.bulkhead.BulkheadContext;
+import ru.shmatov.bulkhead.BulkheadDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkheadDataSourceTest {
+
+    private final Bulkhead bulkhead = new Bulkhead("test", 10, 0, 100, 1, 10);
+    private BulkheadDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(inv -> mock(Connection.class));
+        dataSource = new BulkheadDataSource(target, new SimpleMeterRegistry());
+        BulkheadContext.set(bulkhead);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BulkheadContext.clear();
+    }
+
+    @Test
+    void getConnection_shouldUseOnePermit_forNestedConnectionsOfOneThread() throws SQLException {
+        Connection outer = dataSource.getConnection();
+        Connection nested = dataSource.getConnection();
+        assertThat(bulkhead.getAvailableConnections()).isZero();
+
+        nested.close();
+        assertThat(bulkhead.getAvailableConnections()).isZero();
+        outer.close();
+        outer.close();
+        assertThat(bulkhead.getAvailableConnections()).isEqualTo(1);
+
+        dataSource.getConnection().close();
+        assertThat(bulkhead.getAvailableConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void getConnection_shouldCountOtherThreadsSeparately() throws SQLException {
+        Connection held = dataSource.getConnection();
+
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            BulkheadContext.set(bulkhead);
+            try {
+                assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            } finally {
+                BulkheadContext.clear();
+            }
+        });
+        other.join();
+
+        held.close();
+        assertThat(bulkhead.getAvailableConnections()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,59 @@
+package bulkhead;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.bulkhead.Bulkhead;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkheadTest {
+
+    @Test
+    void tryEnter_shouldRejectImmediately_whenQueueFull() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, 1000, 1, 100);
+        assertThat(bulkhead.tryEnter()).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(bulkhead.tryEnter()).isFalse();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+        assertThat(bulkhead.getWaiting()).isZero();
+    }
+
+    @Test
+    void tryEnter_shouldRejectAfterMaxWait_whenNoCallFinishes() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 50, 1, 100);
+        assertThat(bulkhead.tryEnter()).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(bulkhead.tryEnter()).isFalse();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(bulkhead.getWaiting()).isZero();
+    }
+
+    @Test
+    void tryEnter_shouldAdmitQueued_whenCallFinishes() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 5000, 1, 100);
+        assertThat(bulkhead.tryEnter()).isTrue();
+
+        CompletableFuture.runAsync(bulkhead::exit, CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+
+        assertThat(bulkhead.tryEnter()).isTrue();
+        assertThat(bulkhead.getAvailableCalls()).isZero();
+    }
+
+    @Test
+    void tryAcquireConnection_shouldRejectAfterWait_whenBudgetExhausted() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, 100, 1, 10);
+        assertThat(bulkhead.tryAcquireConnection()).isTrue();
+
+        assertThat(bulkhead.tryAcquireConnection()).isFalse();
+
+        bulkhead.releaseConnection();
+        assertThat(bulkhead.tryAcquireConnection()).isTrue();
+        assertThat(bulkhead.getAvailableConnections()).isZero();
+    }
+}
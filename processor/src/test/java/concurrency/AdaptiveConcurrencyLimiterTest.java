@@ -0,0 +1,88 @@
+package concurrency;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.concurrency.AdaptiveConcurrencyLimiter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    // нулевое окно: лимит пересчитывается на каждом release с RTT, без сглаживания
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 100, 1.0, 1.0, 0);
+
+    @Test
+    void tryAcquire_shouldRejectAboveLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire(1.0)).isTrue();
+        }
+
+        assertThat(limiter.tryAcquire(1.0)).isFalse();
+        limiter.release();
+        assertThat(limiter.tryAcquire(1.0)).isTrue();
+    }
+
+    @Test
+    void tryAcquire_shouldLimitLowPriorityToItsShare() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(0.5)).isTrue();
+        }
+
+        assertThat(limiter.tryAcquire(0.5)).isFalse();
+        assertThat(limiter.tryAcquire(1.0)).isTrue();
+    }
+
+    @Test
+    void release_shouldIncreaseLimit_whenLatencyStable() {
+        acquire(10);
+
+        limiter.release(MS);
+
+        // 10 + sqrt(10)
+        assertThat(limiter.getLimit()).isEqualTo(13);
+        assertThat(limiter.getInFlight()).isEqualTo(9);
+    }
+
+    @Test
+    void release_shouldDecreaseLimit_whenLatencyGrows() {
+        acquire(10);
+        limiter.release(MS);
+        acquire(1);
+
+        limiter.release(10 * MS);
+
+        assertThat(limiter.getLimit()).isLessThan(13);
+    }
+
+    @Test
+    void release_shouldKeepLimit_whenLoadBelowHalfOfLimit() {
+        acquire(4);
+
+        limiter.release(MS);
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void release_shouldNotDropBelowMinLimit() {
+        AdaptiveConcurrencyLimiter limited = new AdaptiveConcurrencyLimiter(5, 5, 100, 1.0, 1.0, 0);
+        for (int i = 0; i < 5; i++) {
+            limited.tryAcquire(1.0);
+        }
+        limited.release(MS);
+
+        for (int i = 0; i < 10; i++) {
+            limited.tryAcquire(1.0);
+            limited.release(1000 * MS);
+        }
+
+        assertThat(limited.getLimit()).isEqualTo(5);
+    }
+
+    private void acquire(int count) {
+        for (int i = 0; i < count; i++) {
+            limiter.tryAcquire(1.0);
+        }
+    }
+}
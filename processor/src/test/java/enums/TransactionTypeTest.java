@@ -0,0 +1,31 @@
+package enums;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.enums.TransactionType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionTypeTest {
+
+    @Test
+    void ofCode_shouldRoundTripEveryType() {
+        for (TransactionType type : TransactionType.values()) {
+            assertThat(TransactionType.ofCode(type.getCode())).isSameAs(type);
+        }
+    }
+
+    @Test
+    void getCode_shouldKeepStoredCodes() {
+        assertThat(TransactionType.TRANSFER_FROM.getCode()).isEqualTo((short) 0);
+        assertThat(TransactionType.TRANSFER_TO.getCode()).isEqualTo((short) 1);
+    }
+
+    @Test
+    void ofCode_shouldReject_whenCodeUnknown() {
+        assertThatThrownBy(() -> TransactionType.ofCode(TransactionType.values().length))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionType.ofCode(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,87 @@
+package limit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.shmatov.limit.LocalSpendingCounter;
+import ru.shmatov.limit.SpendingWindow;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalSpendingCounterTest {
+
+    private final SpendingWindow daily = new SpendingWindow("balance:1:daily", 86_400_000, 1000);
+    private final SpendingWindow hourly = new SpendingWindow("balance:1:hourly", 3_600_000, 100);
+
+    private static final long NOW = System.currentTimeMillis();
+
+    private SimpleMeterRegistry meterRegistry;
+    private LocalSpendingCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        counter = new LocalSpendingCounter(10, meterRegistry);
+    }
+
+    @Test
+    void tryAdd_shouldAddToAllWindows_whenAmountFits() {
+        assertThat(counter.tryAdd(List.of(daily, hourly), 80, true, NOW)).isEqualTo(-1);
+
+        assertThat(counter.tryAdd(List.of(daily), 921, false, NOW)).isEqualTo(0);
+        assertThat(counter.tryAdd(List.of(hourly), 21, false, NOW)).isEqualTo(0);
+    }
+
+    @Test
+    void tryAdd_shouldChangeNoWindow_whenOneIsExceeded() {
+        counter.tryAdd(List.of(daily, hourly), 80, true, NOW);
+
+        // часовое окно превышено — дневное тоже не должно измениться
+        assertThat(counter.tryAdd(List.of(daily, hourly), 30, true, NOW)).isEqualTo(1);
+
+        assertThat(counter.tryAdd(List.of(daily), 920, false, NOW)).isEqualTo(-1);
+        assertThat(counter.tryAdd(List.of(hourly), 20, false, NOW)).isEqualTo(-1);
+    }
+
+    @Test
+    void tryAdd_shouldNotAdd_whenNotCommitted() {
+        counter.tryAdd(List.of(hourly), 100, false, NOW);
+
+        assertThat(counter.tryAdd(List.of(hourly), 100, false, NOW)).isEqualTo(-1);
+    }
+
+    @Test
+    void release_shouldReturnAmountBack() {
+        counter.tryAdd(List.of(hourly), 100, true, NOW);
+        counter.release(List.of(hourly), 100, NOW);
+
+        assertThat(counter.tryAdd(List.of(hourly), 100, false, NOW)).isEqualTo(-1);
+    }
+
+    @Test
+    void release_shouldNotFreeLimit_afterReservedBucketLeftWindow() {
+        long earlier = NOW - 3_700_000;
+        counter.tryAdd(List.of(hourly), 100, true, earlier);
+        // корзина резерва выпала из часового окна раньше, чем пришёл возврат
+        assertThat(counter.tryAdd(List.of(hourly), 100, true, NOW)).isEqualTo(-1);
+
+        counter.release(List.of(hourly), 100, earlier);
+
+        assertThat(counter.tryAdd(List.of(hourly), 1, false, NOW)).isEqualTo(0);
+    }
+
+    @Test
+    void evictIdle_shouldEvictOnlyEmptyWindows() {
+        counter.tryAdd(List.of(daily, hourly), 50, true, NOW);
+        counter.release(List.of(hourly), 50, NOW);
+
+        counter.evictIdle();
+
+        assertThat(meterRegistry.get("spending.limit.windows").gauge().value()).isEqualTo(1);
+        // окно, созданное заново после вытеснения, начинает с нуля и продолжает учёт
+        assertThat(counter.tryAdd(List.of(hourly), 100, true, NOW)).isEqualTo(-1);
+        assertThat(counter.tryAdd(List.of(hourly), 1, false, NOW)).isEqualTo(0);
+    }
+}
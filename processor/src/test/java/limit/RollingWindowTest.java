@@ -0,0 +1,83 @@
+package limit;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.limit.RollingWindow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingWindowTest {
+
+    // окно 1000 мс из 10 корзин по 100 мс
+    private final RollingWindow window = new RollingWindow(1000, 10, 0);
+
+    @Test
+    void total_shouldSumAmountsWithinWindow() {
+        window.add(0, 5);
+        window.add(500, 7);
+
+        assertThat(window.total(999)).isEqualTo(12);
+    }
+
+    @Test
+    void total_shouldDropExpiredBuckets() {
+        window.add(0, 5);
+        window.add(500, 7);
+
+        assertThat(window.total(1000)).isEqualTo(7);
+        assertThat(window.total(1499)).isEqualTo(7);
+        assertThat(window.total(1500)).isZero();
+    }
+
+    @Test
+    void total_shouldResetWholeWindow_whenIdleLongerThanWindow() {
+        window.add(0, 5);
+        window.add(900, 7);
+
+        assertThat(window.total(5000)).isZero();
+        window.add(5000, 3);
+        assertThat(window.total(5000)).isEqualTo(3);
+        assertThat(window.total(5999)).isEqualTo(3);
+    }
+
+    @Test
+    void add_shouldAccumulateInSameBucket() {
+        window.add(100, 5);
+        window.add(199, 5);
+
+        assertThat(window.total(1099)).isEqualTo(10);
+        assertThat(window.total(1100)).isZero();
+    }
+
+    @Test
+    void retireIfEmpty_shouldRetireOnlyEmptyWindow() {
+        window.add(0, 5);
+
+        assertThat(window.retireIfEmpty(500)).isFalse();
+        assertThat(window.retireIfEmpty(1000)).isTrue();
+        assertThat(window.isRetired()).isTrue();
+    }
+
+    @Test
+    void remove_shouldTakeAmountFromBucketItWasAddedTo() {
+        window.add(0, 5);
+        window.add(500, 7);
+
+        window.remove(600, 0, 5);
+
+        assertThat(window.total(600)).isEqualTo(7);
+        // выпадение корзины 0 больше ничего не вычитает
+        assertThat(window.total(1000)).isEqualTo(7);
+    }
+
+    @Test
+    void remove_shouldIgnoreExpiredBucketAndNeverGoNegative() {
+        window.add(0, 5);
+        window.add(1000, 7);
+
+        window.remove(1000, 0, 5);
+        window.remove(1000, 1000, 100);
+
+        assertThat(window.total(1000)).isZero();
+        assertThat(window.total(1999)).isZero();
+    }
+}
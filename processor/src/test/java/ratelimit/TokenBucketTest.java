@@ -0,0 +1,64 @@
+package ratelimit;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.ratelimit.TokenBucket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long MS = 1_000_000L;
+
+    // 3 токена, 10 в секунду: один токен восстанавливается за 100 мс
+    private final TokenBucket bucket = new TokenBucket(3, 10, 0);
+
+    @Test
+    void tryAcquire_shouldAllowBurstUpToCapacity() {
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+
+        assertThat(bucket.tryAcquire(0)).isEqualTo(100 * MS);
+    }
+
+    @Test
+    void tryAcquire_shouldReturnWaitUntilNextToken() {
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(0);
+        }
+
+        assertThat(bucket.tryAcquire(40 * MS)).isEqualTo(60 * MS);
+        assertThat(bucket.tryAcquire(100 * MS)).isZero();
+        assertThat(bucket.tryAcquire(100 * MS)).isEqualTo(100 * MS);
+    }
+
+    @Test
+    void tryAcquire_shouldNotConsumeToken_whenRejected() {
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(0);
+        }
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(50 * MS);
+
+        assertThat(bucket.tryAcquire(100 * MS)).isZero();
+    }
+
+    @Test
+    void tryAcquire_shouldRefillNoMoreThanCapacity() {
+        bucket.tryAcquire(0);
+
+        long later = 10_000 * MS;
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isEqualTo(100 * MS);
+    }
+
+    @Test
+    void isIdle_shouldBeTrue_whenRefilledLongerThanIdleAgo() {
+        bucket.tryAcquire(0);
+
+        assertThat(bucket.isIdle(600 * MS, 1000 * MS)).isFalse();
+        assertThat(bucket.isIdle(1200 * MS, 1000 * MS)).isTrue();
+    }
+}
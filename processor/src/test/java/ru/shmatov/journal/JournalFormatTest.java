@@ -0,0 +1,60 @@
+package ru.shmatov.journal;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalFormatTest {
+
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer segment = ByteBuffer.allocate(2 * JournalFormat.RECORD_SIZE);
+    private final JournalRecord record = new JournalRecord(7L, 1L, 2L, 10L, 20L, 100L, 1000L);
+
+    @Test
+    void read_shouldReturnWrittenRecord() {
+        JournalFormat.write(segment, 1, crc, record);
+
+        assertThat(JournalFormat.read(segment, 1, crc)).isEqualTo(record);
+    }
+
+    @Test
+    void read_shouldReturnNull_whenSlotEmpty() {
+        JournalFormat.write(segment, 1, crc, record);
+
+        assertThat(JournalFormat.read(segment, 0, crc)).isNull();
+    }
+
+    @Test
+    void read_shouldReturnNull_whenBodyCorrupted() {
+        JournalFormat.write(segment, 0, crc, record);
+        segment.put(50, (byte) (segment.get(50) ^ 1));
+
+        assertThat(JournalFormat.read(segment, 0, crc)).isNull();
+    }
+
+    @Test
+    void read_shouldReturnNull_whenMagicNotWritten() {
+        JournalFormat.write(segment, 0, crc, record);
+        segment.putInt(0, 0);
+
+        assertThat(JournalFormat.read(segment, 0, crc)).isNull();
+    }
+
+    @Test
+    void firstSequence_shouldParseSegmentName() {
+        String name = JournalFormat.segmentName(42L);
+
+        assertThat(name).isEqualTo("00000000000000000042.seg");
+        assertThat(JournalFormat.firstSequence(Path.of("journal", name))).isEqualTo(42L);
+    }
+
+    @Test
+    void firstSequence_shouldReturnNull_whenNotSegment() {
+        assertThat(JournalFormat.firstSequence(Path.of("journal", "42.tmp"))).isNull();
+        assertThat(JournalFormat.firstSequence(Path.of("journal", "abc.seg"))).isNull();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.shmatov.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.model.Transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedTransferJournalTest {
+
+    private static final int RECORDS_PER_SEGMENT = 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_shouldBeReadBack() throws IOException {
+        MappedTransferJournal journal = open();
+        journal.append(transfer(1L));
+        journal.append(transfer(2L));
+
+        List<JournalRecord> records = new ArrayList<>();
+        long next = journal.read(1, records::add);
+
+        assertThat(next).isEqualTo(3L);
+        assertThat(records).extracting(JournalRecord::sequence).containsExactly(1L, 2L);
+        assertThat(records.get(0)).isEqualTo(new JournalRecord(1L, 1L, 101L, 10L, 20L, 100L, 1000L));
+    }
+
+    @Test
+    void append_shouldRollToNewSegment_whenSegmentFull() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 5; id++) {
+            journal.append(transfer(id));
+        }
+
+        assertThat(JournalReader.segments(directory)).containsOnlyKeys(1L, 3L, 5L);
+        List<JournalRecord> records = new ArrayList<>();
+        assertThat(journal.read(1, records::add)).isEqualTo(6L);
+        assertThat(records).extracting(JournalRecord::id).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void open_shouldResumeAfterLastRecord() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 3; id++) {
+            journal.append(transfer(id));
+        }
+        journal.close();
+
+        MappedTransferJournal reopened = open();
+        reopened.append(transfer(4L));
+
+        assertThat(reopened.getNextSequence()).isEqualTo(5L);
+        List<JournalRecord> records = new ArrayList<>();
+        reopened.read(1, records::add);
+        assertThat(records).extracting(JournalRecord::id).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void open_shouldOverwriteCorruptRecord() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 4; id++) {
+            journal.append(transfer(id));
+        }
+        journal.close();
+        // запись 4 — второй слот сегмента 3, портим младшие байты её суммы
+        corrupt(directory.resolve(JournalFormat.segmentName(3)), JournalFormat.RECORD_SIZE + 52);
+
+        MappedTransferJournal reopened = open();
+        assertThat(reopened.getNextSequence()).isEqualTo(4L);
+        reopened.append(transfer(5L));
+
+        List<JournalRecord> records = new ArrayList<>();
+        assertThat(reopened.read(1, records::add)).isEqualTo(5L);
+        assertThat(records).extracting(JournalRecord::id).containsExactly(1L, 2L, 3L, 5L);
+    }
+
+    @Test
+    void read_shouldStopAtTornRecord() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 3; id++) {
+            journal.append(transfer(id));
+        }
+        journal.close();
+        // запись 2 без magic: процесс упал, не дописав её
+        corrupt(directory.resolve(JournalFormat.segmentName(1)), JournalFormat.RECORD_SIZE);
+
+        List<JournalRecord> records = new ArrayList<>();
+        long next = new JournalReader(directory).read(1, records::add);
+
+        assertThat(next).isEqualTo(2L);
+        assertThat(records).extracting(JournalRecord::id).containsExactly(1L);
+    }
+
+    @Test
+    void read_shouldStartInMiddleOfSegment() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 5; id++) {
+            journal.append(transfer(id));
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        long next = new JournalReader(directory).read(4, records::add);
+
+        assertThat(next).isEqualTo(6L);
+        assertThat(records).extracting(JournalRecord::sequence).containsExactly(4L, 5L);
+    }
+
+    @Test
+    void read_shouldStartFromFirstSegment_whenSequenceBeforeIt() throws IOException {
+        MappedTransferJournal journal = open();
+        for (long id = 1; id <= 3; id++) {
+            journal.append(transfer(id));
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        new JournalReader(directory).read(0, records::add);
+
+        assertThat(records).extracting(JournalRecord::sequence).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void read_shouldReturnFromSequence_whenJournalEmpty() {
+        assertThat(new JournalReader(directory.resolve("missing")).read(7, record -> {})).isEqualTo(7L);
+    }
+
+    private MappedTransferJournal open() throws IOException {
+        MappedTransferJournal journal = new MappedTransferJournal(directory, RECORDS_PER_SEGMENT, new SimpleMeterRegistry());
+        journal.open();
+        return journal;
+    }
+
+    private static Transfer transfer(long id) {
+        return Transfer.builder()
+                .id(id).mappedId(id + 100).fromBalanceId(10L).toBalanceId(20L).amount(100L)
+                .status(TransactionStatusEnum.CONFIRMED).createdAt(1000L)
+                .build();
+    }
+
+    // затирает четыре байта по смещению: magic, если смещение — начало слота, иначе часть тела
+    private static void corrupt(Path segment, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), offset);
+        }
+    }
+}
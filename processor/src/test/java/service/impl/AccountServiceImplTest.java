@@ -4,14 +4,26 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import ru.shmatov.*;
+import ru.shmatov.enums.StatementFormat;
+import ru.shmatov.enums.TotalsPeriod;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.enums.TransactionType;
 import ru.shmatov.exception.*;
 import ru.shmatov.model.*;
 import ru.shmatov.repository.*;
 import ru.shmatov.request.AccountCreateRequest;
 import ru.shmatov.response.AccountViewResponse;
+import ru.shmatov.response.BalanceAtResponse;
+import ru.shmatov.response.BalanceTotalsResponse;
 import ru.shmatov.service.impl.AccountServiceImpl;
+import ru.shmatov.service.impl.BalanceCheckpointServiceImpl;
+import ru.shmatov.shard.ShardRouter;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +34,8 @@ class AccountServiceImplTest {
     private UserRepository userRepository;
     private AccountBalanceRepository accountBalanceRepository;
     private TransactionRepository transactionRepository;
+    private BalanceCheckpointRepository balanceCheckpointRepository;
+    private BalanceTotalsRepository balanceTotalsRepository;
 
     private AccountServiceImpl accountService;
 
@@ -31,12 +45,20 @@ class AccountServiceImplTest {
         userRepository = mock(UserRepository.class);
         accountBalanceRepository = mock(AccountBalanceRepository.class);
         transactionRepository = mock(TransactionRepository.class);
+        balanceCheckpointRepository = mock(BalanceCheckpointRepository.class);
+        balanceTotalsRepository = mock(BalanceTotalsRepository.class);
 
         accountService = new AccountServiceImpl(
                 accountRepository,
                 userRepository,
                 accountBalanceRepository,
-                transactionRepository);
+                transactionRepository,
+                new BalanceCheckpointServiceImpl(
+                        mock(ShardRouter.class),
+                        balanceCheckpointRepository,
+                        transactionRepository,
+                        mock(TransferSagaRepository.class)),
+                balanceTotalsRepository);
     }
 
     @Test
@@ -160,14 +182,14 @@ class AccountServiceImplTest {
                 AccountBalance.builder().id(12L).balanceNumber("bal2").balance(0L).build()
         );
         when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(balances);
-        when(accountBalanceRepository.deleteById(11L)).thenReturn("bal1");
-        when(accountBalanceRepository.deleteById(12L)).thenReturn("bal2");
+        when(accountBalanceRepository.deleteAllByAccountId(1L)).thenReturn(List.of("bal1", "bal2"));
         when(accountRepository.deleteByUserUsername("user")).thenReturn("accNum");
 
         AccountAndBalancesPairDTO result = accountService.delete("user");
 
         assertThat(result.getAccountNumber()).isEqualTo("accNum");
         assertThat(result.getBalanceNumbers()).containsExactly("bal1", "bal2");
+        verify(accountBalanceRepository, never()).deleteById(anyLong());
     }
 
     @Test
@@ -436,5 +458,129 @@ class AccountServiceImplTest {
 
         assertThat(oldPrimaryNumber).isEqualTo("bal1");
     }
-}
 
+    private AccountBalance stubBalanceAt() {
+        Account account = Account.builder().id(1L).build();
+        AccountBalance balance = AccountBalance.builder()
+                .id(10L).accountId(1L).balanceNumber("bal1").balance(700L).createdAt(100L).build();
+        when(userRepository.existsByUsername("user")).thenReturn(true);
+        when(accountRepository.findByUsername("user")).thenReturn(Optional.of(account));
+        when(accountBalanceRepository.findByBalanceNumber("bal1")).thenReturn(Optional.of(balance));
+        when(balanceCheckpointRepository.findLatestAtOrBefore(eq(10L), anyLong())).thenReturn(Optional.empty());
+        when(balanceCheckpointRepository.findEarliestAfter(eq(10L), anyLong())).thenReturn(Optional.empty());
+        return balance;
+    }
+
+    @Test
+    void getBalanceAt_shouldThrowIfBalanceBelongsToAnotherAccount() {
+        AccountBalance balance = stubBalanceAt();
+        balance.setAccountId(2L);
+
+        assertThatThrownBy(() -> accountService.getBalanceAt("user", "bal1", 500L))
+                .isInstanceOf(BalanceNotFoundException.class);
+    }
+
+    @Test
+    void getBalanceAt_shouldReturnZeroBeforeBalanceCreated() {
+        stubBalanceAt();
+
+        BalanceAtResponse response = accountService.getBalanceAt("user", "bal1", 50L);
+
+        assertThat(response.getBalance()).isZero();
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void getBalanceAt_shouldAddEntriesAfterEarlierCheckpoint() {
+        stubBalanceAt();
+        when(balanceCheckpointRepository.findLatestAtOrBefore(10L, 500L)).thenReturn(Optional.of(
+                BalanceCheckpoint.builder().balanceId(10L).asOf(300L).balance(400L).build()));
+        when(transactionRepository.sumConfirmedAmounts(10L, 300L, 500L)).thenReturn(-150L);
+
+        BalanceAtResponse response = accountService.getBalanceAt("user", "bal1", 500L);
+
+        assertThat(response.getBalance()).isEqualTo(250L);
+        assertThat(response.getBalanceNumber()).isEqualTo("bal1");
+        assertThat(response.getTimestamp()).isEqualTo(500L);
+    }
+
+    @Test
+    void getBalanceAt_shouldSubtractEntriesBeforeLaterCheckpoint() {
+        stubBalanceAt();
+        when(balanceCheckpointRepository.findEarliestAfter(10L, 200L)).thenReturn(Optional.of(
+                BalanceCheckpoint.builder().balanceId(10L).asOf(300L).balance(400L).build()));
+        when(transactionRepository.sumConfirmedAmounts(10L, 200L, 300L)).thenReturn(100L);
+
+        BalanceAtResponse response = accountService.getBalanceAt("user", "bal1", 200L);
+
+        assertThat(response.getBalance()).isEqualTo(300L);
+    }
+
+    @Test
+    void getBalanceAt_shouldFallBackToCurrentBalanceWithoutCheckpoints() {
+        stubBalanceAt();
+        when(transactionRepository.sumConfirmedAmounts(10L, 200L, Long.MAX_VALUE)).thenReturn(200L);
+
+        BalanceAtResponse response = accountService.getBalanceAt("user", "bal1", 200L);
+
+        assertThat(response.getBalance()).isEqualTo(500L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportStatement_shouldStreamCsvRows() {
+        stubBalanceAt();
+        when(accountBalanceRepository.findById(13L))
+                .thenReturn(Optional.of(AccountBalance.builder().id(13L).balanceNumber("bal3").build()));
+        doAnswer(inv -> {
+            BiConsumer<Transaction, String> action = inv.getArgument(3);
+            action.accept(Transaction.builder().id(1L).balanceId(10L).amount(-50L)
+                    .transactionType(TransactionType.TRANSFER_TO)
+                    .transactionStatus(TransactionStatusEnum.CONFIRMED)
+                    .createdAt(200L).receiverBalanceId(11L).build(), "bal2");
+            action.accept(Transaction.builder().id(2L).balanceId(10L).amount(30L)
+                    .transactionType(TransactionType.TRANSFER_FROM)
+                    .transactionStatus(TransactionStatusEnum.CONFIRMED)
+                    .createdAt(300L).receiverBalanceId(12L).build(), null);
+            action.accept(Transaction.builder().id(3L).balanceId(10L).amount(-20L)
+                    .transactionType(TransactionType.TRANSFER_TO)
+                    .transactionStatus(TransactionStatusEnum.CONFIRMED)
+                    .createdAt(400L).receiverBalanceId(13L).build(), null);
+            action.accept(Transaction.builder().id(4L).balanceId(10L).amount(-10L)
+                    .transactionType(TransactionType.TRANSFER_TO)
+                    .transactionStatus(TransactionStatusEnum.CONFIRMED)
+                    .createdAt(500L).receiverBalanceId(13L).build(), null);
+            return null;
+        }).when(transactionRepository).streamByBalanceId(eq(10L), eq(0L), eq(1000L), any(BiConsumer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        accountService.exportStatement("user", "bal1", 0L, 1000L, StatementFormat.CSV, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,created_at,transaction_type,transaction_status,amount,counterparty_balance_number",
+                "1,200,TRANSFER_TO,CONFIRMED,-50,bal2",
+                "2,300,TRANSFER_FROM,CONFIRMED,30,",
+                "3,400,TRANSFER_TO,CONFIRMED,-20,bal3",
+                "4,500,TRANSFER_TO,CONFIRMED,-10,bal3");
+        // контрагент из курсора не ищется, контрагент с другого шарда — один раз на баланс
+        verify(accountBalanceRepository, never()).findById(11L);
+        verify(accountBalanceRepository).findById(13L);
+    }
+
+    @Test
+    void getTotals_shouldReadAggregatesOfOwnedBalance() {
+        stubBalanceAt();
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        LocalDate to = LocalDate.of(2026, 2, 28);
+        when(balanceTotalsRepository.findByBalanceId(10L, from, to, TotalsPeriod.MONTH)).thenReturn(List.of(
+                BalanceTotals.builder().periodStart(from).inAmount(500L).outAmount(200L).inCount(2L).outCount(1L).build()));
+
+        BalanceTotalsResponse response = accountService.getTotals("user", "bal1", from, to, TotalsPeriod.MONTH);
+
+        assertThat(response.getBalanceNumber()).isEqualTo("bal1");
+        assertThat(response.getTotals()).extracting(BalanceTotalsDTO::getPeriodStart, BalanceTotalsDTO::getInAmount,
+                        BalanceTotalsDTO::getOutAmount)
+                .containsExactly(tuple(from, 500L, 200L));
+        verifyNoInteractions(transactionRepository);
+    }
+}
@@ -0,0 +1,67 @@
+package service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.shmatov.repository.BalanceCheckpointRepository;
+import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.TransferSagaRepository;
+import ru.shmatov.service.impl.BalanceCheckpointServiceImpl;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceCheckpointServiceImplTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Mock private ShardRouter shardRouter;
+    @Mock private BalanceCheckpointRepository balanceCheckpointRepository;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private TransferSagaRepository transferSagaRepository;
+
+    @InjectMocks
+    private BalanceCheckpointServiceImpl balanceCheckpointService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(balanceCheckpointService, "intervalMs", HOUR);
+        ReflectionTestUtils.setField(balanceCheckpointService, "settleLagMs", 60_000L);
+        when(shardRouter.getShardCount()).thenReturn(1);
+        when(balanceCheckpointRepository.findLastAsOf(0)).thenReturn(Optional.of(HOUR));
+    }
+
+    @Test
+    void writeCheckpoints_shouldStopBeforeOldestPendingSaga() {
+        when(transferSagaRepository.findOldestCreatedAt(0)).thenReturn(Optional.of(3 * HOUR + 5));
+
+        balanceCheckpointService.writeCheckpoints();
+
+        verify(balanceCheckpointRepository).writeCheckpoints(0, HOUR, 3 * HOUR);
+    }
+
+    @Test
+    void writeCheckpoints_shouldSkipShard_whenSagaPendingSinceLastCheckpoint() {
+        when(transferSagaRepository.findOldestCreatedAt(0)).thenReturn(Optional.of(HOUR + 5));
+
+        balanceCheckpointService.writeCheckpoints();
+
+        verify(balanceCheckpointRepository, never()).writeCheckpoints(anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void writeCheckpoints_shouldUseSettleLag_whenNoSagaPending() {
+        when(transferSagaRepository.findOldestCreatedAt(0)).thenReturn(Optional.empty());
+
+        balanceCheckpointService.writeCheckpoints();
+
+        verify(balanceCheckpointRepository).writeCheckpoints(eq(0), eq(HOUR), longThat(asOf -> asOf > HOUR));
+    }
+}
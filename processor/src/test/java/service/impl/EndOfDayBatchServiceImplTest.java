@@ -0,0 +1,127 @@
+package service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.core.task.SyncTaskExecutor;
+import ru.shmatov.config.properties.EodBatchProperties;
+import ru.shmatov.enums.EodPostingKind;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.BatchPosting;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.EodBatchRepository;
+import ru.shmatov.response.EodBatchResponse;
+import ru.shmatov.service.impl.EndOfDayBatchServiceImpl;
+import ru.shmatov.shard.ShardRouter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EndOfDayBatchServiceImplTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 10, 19);
+
+    @Mock private ShardRouter shardRouter;
+    @Mock private EodBatchRepository eodBatchRepository;
+    @Mock private BalanceTotalsRepository balanceTotalsRepository;
+    @Spy private Executor eodBatchExecutor = new SyncTaskExecutor();
+    @Spy private EodBatchProperties properties = new EodBatchProperties();
+
+    @InjectMocks
+    private EndOfDayBatchServiceImpl endOfDayBatchService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setChunkSize(10L);
+        properties.setHouseBalanceIds(new long[]{99L});
+        MockitoAnnotations.openMocks(this);
+
+        when(shardRouter.getShardCount()).thenReturn(1);
+        ShardRouterStubs.runTransactionsInline(shardRouter);
+        when(eodBatchRepository.balanceExists(0, 99L)).thenReturn(true);
+        when(eodBatchRepository.findIdRange(0)).thenReturn(Optional.of(new long[]{1L, 15L}));
+        when(eodBatchRepository.claimChunk(eq(0), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+        when(eodBatchRepository.lockRange(0, 0L, 10L, 99L)).thenReturn(List.of(
+                AccountBalance.builder().id(1L).balance(1_000L).build(),
+                AccountBalance.builder().id(2L).balance(30L).build(),
+                AccountBalance.builder().id(3L).balance(0L).build()));
+        when(eodBatchRepository.lockRange(0, 10L, 20L, 99L)).thenReturn(List.of(
+                AccountBalance.builder().id(12L).balance(3_650_000L).build()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldChargeFeeNotBelowZeroAndSkipEmptyBalances() {
+        EodBatchResponse response = endOfDayBatchService.run(EodPostingKind.FEE, DATE, 50L);
+
+        ArgumentCaptor<List<BatchPosting>> postings = ArgumentCaptor.forClass(List.class);
+        verify(eodBatchRepository, times(2)).post(eq(0), eq(99L), postings.capture(), anyLong());
+        assertThat(postings.getAllValues().get(0))
+                .containsExactly(new BatchPosting(1L, -50L), new BatchPosting(2L, -30L));
+        assertThat(postings.getAllValues().get(1)).containsExactly(new BatchPosting(12L, -50L));
+        verify(eodBatchRepository).completeChunk(0, "FEE:2026-10-19", 0L, 2);
+        assertThat(response.getChunks()).isEqualTo(2);
+        assertThat(response.getRows()).isEqualTo(3);
+        assertThat(response.getFailedChunks()).isZero();
+        // служебный баланс получил обе комиссии первого диапазона одной строкой оборотов
+        verify(balanceTotalsRepository).add(eq(99L), anyLong(), eq(80L), eq(0L), eq(2), eq(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldAccrueDailyInterest() {
+        endOfDayBatchService.run(EodPostingKind.INTEREST, DATE, 1_000L);
+
+        ArgumentCaptor<List<BatchPosting>> postings = ArgumentCaptor.forClass(List.class);
+        verify(eodBatchRepository, times(2)).post(eq(0), eq(99L), postings.capture(), anyLong());
+        // 10% годовых: 1000 * 0.1 / 365 < 1 — не начисляется
+        assertThat(postings.getAllValues().get(0)).isEmpty();
+        assertThat(postings.getAllValues().get(1)).containsExactly(new BatchPosting(12L, 1_000L));
+    }
+
+    @Test
+    void run_shouldSkipChunksAlreadyPosted() {
+        when(eodBatchRepository.claimChunk(eq(0), eq("FEE:2026-10-19"), eq(0L), eq(10L), anyLong())).thenReturn(false);
+
+        EodBatchResponse response = endOfDayBatchService.run(EodPostingKind.FEE, DATE, 50L);
+
+        verify(eodBatchRepository, never()).lockRange(0, 0L, 10L, 99L);
+        assertThat(response.getSkippedChunks()).isEqualTo(1);
+        assertThat(response.getRows()).isEqualTo(1);
+    }
+
+    @Test
+    void run_shouldKeepChunkGrid_whenLowestBalanceDeletedBetweenRuns() {
+        when(eodBatchRepository.findIdRange(0)).thenReturn(Optional.of(new long[]{3L, 15L}));
+
+        endOfDayBatchService.run(EodPostingKind.FEE, DATE, 50L);
+
+        verify(eodBatchRepository).claimChunk(eq(0), eq("FEE:2026-10-19"), eq(0L), eq(10L), anyLong());
+        verify(eodBatchRepository).claimChunk(eq(0), eq("FEE:2026-10-19"), eq(10L), eq(20L), anyLong());
+    }
+
+    @Test
+    void run_shouldFailBeforePosting_whenHouseBalanceMissing() {
+        when(eodBatchRepository.balanceExists(0, 99L)).thenReturn(false);
+
+        assertThatThrownBy(() -> endOfDayBatchService.run(EodPostingKind.FEE, DATE, 50L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("99");
+        verify(eodBatchRepository, never()).claimChunk(anyInt(), anyString(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void run_shouldRequireHouseBalancePerShard() {
+        when(shardRouter.getShardCount()).thenReturn(2);
+
+        assertThatThrownBy(() -> endOfDayBatchService.run(EodPostingKind.FEE, DATE, 50L))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(eodBatchRepository);
+    }
+}
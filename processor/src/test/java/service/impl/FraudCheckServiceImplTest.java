@@ -0,0 +1,96 @@
+package service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.shmatov.config.properties.FraudProperties;
+import ru.shmatov.exception.TransferBlockedException;
+import ru.shmatov.fraud.ActivityTracker;
+import ru.shmatov.fraud.FraudRule;
+import ru.shmatov.fraud.FraudVerdict;
+import ru.shmatov.fraud.ThresholdRule;
+import ru.shmatov.service.impl.FraudCheckServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class FraudCheckServiceImplTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FraudProperties properties;
+    private List<FraudRule> rules;
+
+    private FraudCheckServiceImpl fraudCheckService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new FraudProperties();
+        rules = new ArrayList<>();
+        fraudCheckService = new FraudCheckServiceImpl(
+                new ActivityTracker(8, 60_000, meterRegistry), rules, properties, meterRegistry);
+    }
+
+    private static FraudProperties.Rule rule(String name, FraudProperties.Metric metric, long threshold,
+                                             FraudVerdict action) {
+        FraudProperties.Rule rule = new FraudProperties.Rule();
+        rule.setName(name);
+        rule.setMetric(metric);
+        rule.setWindowMs(60_000);
+        rule.setThreshold(threshold);
+        rule.setAction(action);
+        return rule;
+    }
+
+    @Test
+    void check_shouldBlockBurstFromSameSender() {
+        rules.add(new ThresholdRule(rule("burst", FraudProperties.Metric.SENDER_COUNT, 3, FraudVerdict.BLOCK)));
+
+        fraudCheckService.check("user", "bal1", 100L);
+        fraudCheckService.check("user", "bal2", 100L);
+        fraudCheckService.check("user", "bal3", 100L);
+
+        assertThatThrownBy(() -> fraudCheckService.check("user", "bal4", 100L))
+                .isInstanceOf(TransferBlockedException.class)
+                .hasMessageContaining("burst");
+        // заблокированная попытка в историю не попадает, другой отправитель не затронут
+        assertThatCode(() -> fraudCheckService.check("other", "bal4", 100L)).doesNotThrowAnyException();
+        assertThat(meterRegistry.counter("fraud.check.blocked", "rule", "burst").count()).isEqualTo(1);
+    }
+
+    @Test
+    void check_shouldFlagFanInToRecipientByDistinctSenders() {
+        rules.add(new ThresholdRule(rule("fan-in",
+                FraudProperties.Metric.RECIPIENT_DISTINCT_COUNTERPARTIES, 2, FraudVerdict.FLAG)));
+
+        fraudCheckService.check("a", "mule", 100L);
+        fraudCheckService.check("a", "mule", 100L);
+        fraudCheckService.check("b", "mule", 100L);
+        assertThat(meterRegistry.counter("fraud.check.flagged", "rule", "fan-in").count()).isZero();
+
+        fraudCheckService.check("c", "mule", 100L);
+
+        assertThat(meterRegistry.counter("fraud.check.flagged", "rule", "fan-in").count()).isEqualTo(1);
+    }
+
+    @Test
+    void check_shouldSumAmountsOfSenderWithinWindow() {
+        rules.add(new ThresholdRule(rule("amount", FraudProperties.Metric.SENDER_AMOUNT, 250, FraudVerdict.BLOCK)));
+
+        fraudCheckService.check("user", "bal1", 100L);
+        fraudCheckService.check("user", "bal1", 100L);
+
+        assertThatThrownBy(() -> fraudCheckService.check("user", "bal1", 100L))
+                .isInstanceOf(TransferBlockedException.class);
+    }
+
+    @Test
+    void check_shouldDoNothing_whenDisabled() {
+        properties.setEnabled(false);
+        rules.add(new ThresholdRule(rule("any", FraudProperties.Metric.SENDER_COUNT, 0, FraudVerdict.BLOCK)));
+
+        assertThatCode(() -> fraudCheckService.check("user", "bal1", 100L)).doesNotThrowAnyException();
+    }
+}
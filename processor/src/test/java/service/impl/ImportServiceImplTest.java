@@ -0,0 +1,106 @@
+package service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.shmatov.config.properties.ImportProperties;
+import ru.shmatov.model.ImportRecord;
+import ru.shmatov.repository.BulkImportRepository;
+import ru.shmatov.response.ImportResponse;
+import ru.shmatov.service.impl.ImportServiceImpl;
+import ru.shmatov.shard.ShardRouter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ImportServiceImplTest {
+
+    @Mock private ShardRouter shardRouter;
+    @Mock private BulkImportRepository bulkImportRepository;
+    @Mock private PasswordEncoder passwordEncoder;
+    @Spy private Executor hashingExecutor = new SyncTaskExecutor();
+    @Spy private ImportProperties properties = new ImportProperties();
+
+    @InjectMocks
+    private ImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setChunkSize(2);
+        properties.setBalanceCountLimit(5);
+        MockitoAnnotations.openMocks(this);
+
+        when(shardRouter.placeUsernames(anyCollection())).thenAnswer(inv -> {
+            Map<String, Integer> placement = new HashMap<>();
+            inv.<Collection<String>>getArgument(0).forEach(u -> placement.put(u, 0));
+            return placement;
+        });
+        ShardRouterStubs.runTransactionsInline(shardRouter);
+        when(passwordEncoder.encode(anyString())).thenAnswer(inv -> "hash:" + inv.getArgument(0));
+        when(bulkImportRepository.findExistingUsernames(eq(0), anyList())).thenReturn(Set.of());
+        when(bulkImportRepository.findExistingAccountNumbers(eq(0), anyList())).thenReturn(Set.of());
+        when(bulkImportRepository.allocateIds(eq(0), anyString(), anyInt()))
+                .thenAnswer(inv -> LongStream.rangeClosed(1, (int) inv.getArgument(2)).boxed().toList());
+    }
+
+    private ImportResponse importCsv(String... lines) {
+        String csv = "username,telegram_username,password,initial_balance\n" + String.join("\n", lines);
+        return importService.importUsers(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importUsers_shouldHashAndCopyInChunks() {
+        ImportResponse response = importCsv(
+                "alice,tgAlice,secret1,100",
+                "bob,tgBob,pass,with,commas,0",
+                "carol,tgCarol,secret3,50");
+
+        assertThat(response.getProcessed()).isEqualTo(3);
+        assertThat(response.getImported()).isEqualTo(3);
+
+        ArgumentCaptor<List<ImportRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkImportRepository, times(2)).copyUsers(eq(0), captor.capture(), eq(5), anyLong());
+        ImportRecord bob = captor.getAllValues().get(0).get(1);
+        assertThat(bob.getPassword()).isEqualTo("hash:pass,with,commas");
+        assertThat(bob.getAccountNumber()).startsWith("00").hasSize(16);
+        verify(bulkImportRepository, times(2)).copyAccounts(eq(0), anyList());
+        verify(bulkImportRepository, times(2)).copyBalances(eq(0), anyList(), anyLong());
+    }
+
+    @Test
+    void importUsers_shouldSkipExistingAndRejectInvalid() {
+        when(bulkImportRepository.findExistingUsernames(eq(0), anyList())).thenReturn(Set.of("alice"));
+
+        ImportResponse response = importCsv(
+                "alice,tgAlice,secret1,100",
+                "bob,tgBob,short,0",
+                "carol,tgCarol,secret3,-1",
+                "dave,tgDave,secret4,10");
+
+        assertThat(response.getProcessed()).isEqualTo(4);
+        assertThat(response.getImported()).isEqualTo(1);
+        assertThat(response.getSkipped()).isEqualTo(1);
+        assertThat(response.getRejected()).isEqualTo(2);
+    }
+
+    @Test
+    void importUsers_shouldRejectChunkWhenCopyFails() {
+        doThrow(new DuplicateKeyException("users_username_key"))
+                .when(bulkImportRepository).copyUsers(eq(0), anyList(), anyInt(), anyLong());
+
+        ImportResponse response = importCsv("alice,tgAlice,secret1,100", "bob,tgBob,secret2,0");
+
+        assertThat(response.getImported()).isZero();
+        assertThat(response.getRejected()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,185 @@
+package service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.core.task.SyncTaskExecutor;
+import ru.shmatov.config.properties.ScheduledTransferProperties;
+import ru.shmatov.enums.ScheduleRecurrence;
+import ru.shmatov.enums.ScheduledTransferStatus;
+import ru.shmatov.exception.InsufficientFundsException;
+import ru.shmatov.exception.ScheduledTransferNotFoundException;
+import ru.shmatov.exception.TransferSagaFailedException;
+import ru.shmatov.exception.TransferSagaPendingException;
+import ru.shmatov.model.Account;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.PendingTransfer;
+import ru.shmatov.model.ScheduledTransfer;
+import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.repository.ScheduledTransferRepository;
+import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.service.SpendingLimitService;
+import ru.shmatov.service.TransactionService;
+import ru.shmatov.service.impl.ScheduledTransferServiceImpl;
+import ru.shmatov.shard.ShardRouter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ScheduledTransferServiceImplTest {
+
+    private static final long JAN_31 = LocalDateTime.of(2026, 1, 31, 9, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long FEB_28 = LocalDateTime.of(2026, 2, 28, 9, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Mock private ShardRouter shardRouter;
+    @Mock private ScheduledTransferRepository scheduledTransferRepository;
+    @Mock private TransactionService transactionService;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private AccountRepository accountRepository;
+    @Mock private AccountBalanceRepository accountBalanceRepository;
+    @Mock private SpendingLimitService spendingLimitService;
+    @Spy private Executor scheduledTransferExecutor = new SyncTaskExecutor();
+    @Spy private ScheduledTransferProperties properties = new ScheduledTransferProperties();
+
+    @InjectMocks
+    private ScheduledTransferServiceImpl scheduledTransferService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBatchSize(10);
+        properties.setMaxAttempts(3);
+        properties.setRetryBackoffMs(1_000L);
+        MockitoAnnotations.openMocks(this);
+
+        when(shardRouter.getShardCount()).thenReturn(1);
+        ShardRouterStubs.runTransactionsInline(shardRouter);
+        when(transactionRepository.nextId(10L)).thenReturn(100L);
+        when(transactionRepository.nextId(20L)).thenReturn(200L);
+        when(accountBalanceRepository.findById(20L))
+                .thenReturn(Optional.of(AccountBalance.builder().id(20L).balance(0L).balanceNumber("to").build()));
+    }
+
+    private ScheduledTransfer claimed(ScheduleRecurrence recurrence, int attempts) {
+        ScheduledTransfer scheduled = ScheduledTransfer.builder()
+                .id(1L).fromBalanceId(10L).toBalanceId(20L).amount(500L)
+                .recurrence(recurrence).dueAt(JAN_31).nextRunAt(777L)
+                .status(ScheduledTransferStatus.ACTIVE).attempts(attempts)
+                .build();
+        when(scheduledTransferRepository.claimDue(eq(0), anyLong(), anyLong(), eq(10))).thenReturn(List.of(scheduled));
+        return scheduled;
+    }
+
+    private void senderHas(long balance) {
+        when(accountBalanceRepository.findById(10L))
+                .thenReturn(Optional.of(AccountBalance.builder().id(10L).balance(balance).balanceNumber("from").build()));
+    }
+
+    @Test
+    void runDueTransfers_shouldPostAndAdvanceToNextMonth() {
+        claimed(ScheduleRecurrence.MONTHLY, 0);
+        senderHas(1_000L);
+        when(scheduledTransferRepository.markRun(1L, 777L, FEB_28, ScheduledTransferStatus.ACTIVE)).thenReturn(true);
+
+        scheduledTransferService.runDueTransfers();
+
+        ArgumentCaptor<PendingTransfer> posted = ArgumentCaptor.forClass(PendingTransfer.class);
+        verify(transactionService).post(posted.capture());
+        assertThat(posted.getValue().getId()).isEqualTo(100L);
+        assertThat(posted.getValue().getMappedId()).isEqualTo(200L);
+        assertThat(posted.getValue().getAmount()).isEqualTo(500L);
+        verify(scheduledTransferRepository, never()).markFailed(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), any(), any());
+    }
+
+    @Test
+    void runDueTransfers_shouldNotPost_whenLeaseTakenByAnotherNode() {
+        claimed(ScheduleRecurrence.ONCE, 0);
+        when(scheduledTransferRepository.markRun(1L, 777L, JAN_31, ScheduledTransferStatus.COMPLETED)).thenReturn(false);
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(transactionService, never()).post(any());
+        verify(scheduledTransferRepository, never()).markFailed(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), any(), any());
+    }
+
+    @Test
+    void runDueTransfers_shouldRetryLater_whenFundsInsufficient() {
+        claimed(ScheduleRecurrence.DAILY, 0);
+        senderHas(100L);
+        when(scheduledTransferRepository.markRun(eq(1L), eq(777L), anyLong(), any())).thenReturn(true);
+        when(transactionService.post(any())).thenThrow(new InsufficientFundsException("need 500"));
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(scheduledTransferRepository).markFailed(eq(1L), eq(777L), eq(JAN_31), anyLong(), eq(1),
+                startsWith("InsufficientFundsException"), eq(ScheduledTransferStatus.ACTIVE));
+    }
+
+    @Test
+    void runDueTransfers_shouldGiveUp_afterMaxAttempts() {
+        claimed(ScheduleRecurrence.DAILY, 2);
+        senderHas(100L);
+        when(scheduledTransferRepository.markRun(eq(1L), eq(777L), anyLong(), any())).thenReturn(true);
+        when(transactionService.post(any())).thenThrow(new InsufficientFundsException("need 500"));
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(scheduledTransferRepository).markFailed(eq(1L), eq(777L), eq(JAN_31), anyLong(), eq(3),
+                anyString(), eq(ScheduledTransferStatus.FAILED));
+    }
+
+    @Test
+    void runDueTransfers_shouldFailImmediately_whenBalanceDeleted() {
+        claimed(ScheduleRecurrence.WEEKLY, 0);
+        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.empty());
+        when(scheduledTransferRepository.markRun(eq(1L), eq(777L), anyLong(), any())).thenReturn(true);
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(scheduledTransferRepository).markFailed(eq(1L), eq(777L), eq(JAN_31), anyLong(), eq(1),
+                startsWith("BalanceNotFoundException"), eq(ScheduledTransferStatus.FAILED));
+    }
+
+    @Test
+    void runDueTransfers_shouldNotRetry_whenSagaOutcomeInDoubt() {
+        claimed(ScheduleRecurrence.MONTHLY, 0);
+        senderHas(1_000L);
+        when(scheduledTransferRepository.markRun(1L, 777L, FEB_28, ScheduledTransferStatus.ACTIVE)).thenReturn(true);
+        when(transactionService.post(any())).thenThrow(new TransferSagaPendingException(100L));
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(scheduledTransferRepository, never()).markFailed(anyLong(), anyLong(), anyLong(), anyLong(), anyInt(), any(), any());
+    }
+
+    @Test
+    void runDueTransfers_shouldRetryFromAdvancedRun_whenSagaReverted() {
+        claimed(ScheduleRecurrence.MONTHLY, 0);
+        senderHas(1_000L);
+        when(scheduledTransferRepository.markRun(1L, 777L, FEB_28, ScheduledTransferStatus.ACTIVE)).thenReturn(true);
+        when(transactionService.post(any())).thenThrow(new TransferSagaFailedException(100L));
+
+        scheduledTransferService.runDueTransfers();
+
+        verify(scheduledTransferRepository).markFailed(eq(1L), eq(FEB_28), eq(JAN_31), anyLong(), eq(1),
+                startsWith("TransferSagaFailedException"), eq(ScheduledTransferStatus.ACTIVE));
+    }
+
+    @Test
+    void cancel_shouldThrow_whenNotOwnedOrInactive() {
+        when(accountRepository.findByUsername("user")).thenReturn(Optional.of(Account.builder().id(1L).build()));
+        when(accountBalanceRepository.findAllByAccountId(1L))
+                .thenReturn(List.of(AccountBalance.builder().id(10L).build()));
+        when(scheduledTransferRepository.cancel(5L, List.of(10L))).thenReturn(false);
+
+        assertThatThrownBy(() -> scheduledTransferService.cancel("user", 5L))
+                .isInstanceOf(ScheduledTransferNotFoundException.class);
+    }
+}
@@ -0,0 +1,26 @@
+package service.impl;
+
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+final class ShardRouterStubs {
+
+    private ShardRouterStubs() {}
+
+    // транзакции на шардах выполняются сразу в вызывающем потоке
+    @SuppressWarnings("unchecked")
+    static void runTransactionsInline(ShardRouter shardRouter) {
+        when(shardRouter.inNewTransaction(anyInt(), any(Supplier.class)))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(shardRouter).inNewTransaction(anyInt(), any(Runnable.class));
+    }
+}
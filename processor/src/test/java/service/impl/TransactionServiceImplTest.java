@@ -6,14 +6,19 @@ import org.mockito.*;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.enums.TransactionStatusEnum;
 import ru.shmatov.exception.*;
+import ru.shmatov.journal.TransferJournal;
 import ru.shmatov.model.Account;
 import ru.shmatov.model.AccountBalance;
-import ru.shmatov.model.Transaction;
-import ru.shmatov.model.User;
+import ru.shmatov.model.PendingTransfer;
+import ru.shmatov.model.Transfer;
 import ru.shmatov.repository.AccountBalanceRepository;
 import ru.shmatov.repository.AccountRepository;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.PendingTransferRepository;
 import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.TransferRepository;
 import ru.shmatov.repository.UserRepository;
+import ru.shmatov.service.TransferSagaService;
 import ru.shmatov.service.impl.TransactionServiceImpl;
 
 import java.util.List;
@@ -26,9 +31,14 @@ import static org.mockito.Mockito.*;
 class TransactionServiceImplTest {
 
     @Mock private TransactionRepository transactionRepository;
+    @Mock private PendingTransferRepository pendingTransferRepository;
+    @Mock private TransferRepository transferRepository;
     @Mock private AccountRepository accountRepository;
     @Mock private AccountBalanceRepository accountBalanceRepository;
+    @Mock private BalanceTotalsRepository balanceTotalsRepository;
     @Mock private UserRepository userRepository;
+    @Mock private TransferSagaService transferSagaService;
+    @Mock private TransferJournal transferJournal;
 
     @InjectMocks
     private TransactionServiceImpl transactionService;
@@ -92,7 +102,7 @@ class TransactionServiceImplTest {
     }
 
     @Test
-    void create_shouldReturnTransactionIdPairDTO_whenSuccess() {
+    void create_shouldStagePendingTransferWithoutTouchingLedger_whenSuccess() {
         String username = "user";
         Account account = Account.builder().id(1L).build();
         AccountBalance fromBalance = AccountBalance.builder().id(10L).balanceNumber("bal1").build();
@@ -102,11 +112,8 @@ class TransactionServiceImplTest {
         when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
         when(accountBalanceRepository.findAllByAccountId(account.getId())).thenReturn(List.of(fromBalance));
         when(accountBalanceRepository.findByBalanceNumber("bal2")).thenReturn(Optional.of(toBalance));
-
-        when(transactionRepository.save(any(Transaction.class))).thenReturn(1000L, 2000L);
-
-        doNothing().when(transactionRepository).updateReceiverTransactionId(1000L, 2000L);
-        doNothing().when(transactionRepository).updateReceiverTransactionId(2000L, 1000L);
+        when(transactionRepository.nextId(10L)).thenReturn(1000L);
+        when(transactionRepository.nextId(20L)).thenReturn(2000L);
 
         TransactionIdPairDTO result = transactionService.create(username, 100L, "bal1", "bal2");
 
@@ -114,149 +121,53 @@ class TransactionServiceImplTest {
         assertThat(result.getId()).isEqualTo(1000L);
         assertThat(result.getMappedId()).isEqualTo(2000L);
 
-        verify(transactionRepository, times(2)).save(any(Transaction.class));
-        verify(transactionRepository).updateReceiverTransactionId(1000L, 2000L);
-        verify(transactionRepository).updateReceiverTransactionId(2000L, 1000L);
+        ArgumentCaptor<PendingTransfer> captor = ArgumentCaptor.forClass(PendingTransfer.class);
+        verify(pendingTransferRepository).save(captor.capture());
+        assertThat(captor.getValue().getFromBalanceId()).isEqualTo(10L);
+        assertThat(captor.getValue().getToBalanceId()).isEqualTo(20L);
+        assertThat(captor.getValue().getAmount()).isEqualTo(100L);
+        verifyNoInteractions(transferRepository, transferSagaService);
     }
 
+    // post() tests
 
     @Test
-    void updateStatus_shouldThrowSenderTransactionNotFoundException_whenFromTxNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(SenderTransactionNotFoundException.class)
-                .hasMessageContaining("1");
-    }
-
-    @Test
-    void updateStatus_shouldThrowReceiverTransactionNotFoundException_whenToTxNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(ReceiverTransactionNotFoundException.class)
-                .hasMessageContaining("2");
+    void post_shouldWriteOneJournalRowAndMoveBalances_whenSameShard() {
+        PendingTransfer pending = PendingTransfer.builder()
+                .id(1000L).mappedId(2000L).fromBalanceId(10L).toBalanceId(20L).amount(100L).build();
+
+        TransactionIdPairDTO result = transactionService.post(pending);
+
+        assertThat(result).isEqualTo(new TransactionIdPairDTO(1000L, 2000L));
+
+        ArgumentCaptor<Transfer> captor = ArgumentCaptor.forClass(Transfer.class);
+        verify(transferRepository).save(captor.capture());
+        assertThat(captor.getValue())
+                .extracting(Transfer::getId, Transfer::getMappedId, Transfer::getFromBalanceId,
+                        Transfer::getToBalanceId, Transfer::getAmount, Transfer::getStatus)
+                .containsExactly(1000L, 2000L, 10L, 20L, 100L, TransactionStatusEnum.CONFIRMED);
+        verify(accountBalanceRepository).debit(10L, 100L);
+        verify(accountBalanceRepository).updateBalance(20L, 100L);
+        verify(balanceTotalsRepository).add(eq(10L), anyLong(), eq(0L), eq(100L), eq(0), eq(1));
+        verify(balanceTotalsRepository).add(eq(20L), anyLong(), eq(100L), eq(0L), eq(1), eq(0));
+        verify(transferRepository, never()).updateStatus(anyLong(), any());
+        verifyNoInteractions(transferSagaService);
+        verify(transferJournal).append(captor.getValue());
     }
 
     @Test
-    void updateStatus_shouldThrowBalanceNotFoundException_whenFromBalanceNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).build();
-        Transaction toTx = Transaction.builder().id(2L).balanceId(20L).build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(toTx));
-        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(BalanceNotFoundException.class);
-    }
-
-    @Test
-    void updateStatus_shouldThrowBalanceNotFoundException_whenToBalanceNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).build();
-        Transaction toTx = Transaction.builder().id(2L).balanceId(20L).build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(toTx));
-        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(AccountBalance.builder().build()));
-        when(accountBalanceRepository.findById(20L)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(BalanceNotFoundException.class);
-    }
-
-    @Test
-    void updateStatus_shouldThrowUserNotFoundException_whenUserNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(Transaction.builder().id(1L).balanceId(10L).build()));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(Transaction.builder().id(2L).balanceId(20L).build()));
-        when(accountBalanceRepository.findById(anyLong())).thenReturn(Optional.of(AccountBalance.builder().build()));
-        when(userRepository.findByUsername(username)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(UserNotFoundException.class)
-                .hasMessageContaining(username);
-    }
-
-    @Test
-    void updateStatus_shouldThrowAccountNotFoundException_whenAccountNotFound() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-        User user = User.builder().id(1L).username(username).build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(Transaction.builder().id(1L).balanceId(10L).build()));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(Transaction.builder().id(2L).balanceId(20L).build()));
-        when(accountBalanceRepository.findById(anyLong())).thenReturn(Optional.of(AccountBalance.builder().build()));
-        when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
-        when(accountRepository.findByUsername(username)).thenReturn(Optional.empty());
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(AccountNotFoundException.class)
-                .hasMessageContaining(username);
-    }
-
-    @Test
-    void updateStatus_shouldThrowSecurityBalanceNotBelongTransactionException_whenBalanceNotOwnedByUser() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-        User user = User.builder().id(1L).username(username).build();
-        Account account = Account.builder().id(1L).build();
-        AccountBalance fromBalance = AccountBalance.builder().id(10L).balanceNumber("bal1").build();
-        AccountBalance otherBalance = AccountBalance.builder().id(999L).build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(Transaction.builder().id(1L).balanceId(10L).build()));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(Transaction.builder().id(2L).balanceId(20L).build()));
-        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(fromBalance));
-        when(accountBalanceRepository.findById(20L)).thenReturn(Optional.of(AccountBalance.builder().build()));
-        when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
-        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
-        when(accountBalanceRepository.findAllByAccountId(account.getId())).thenReturn(List.of(otherBalance));
-
-        assertThatThrownBy(() -> transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair))
-                .isInstanceOf(SecurityBalanceNotBelongTransactionException.class);
-    }
-
-    @Test
-    void updateStatus_shouldUpdateStatuses_whenValid() {
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(1L, 2L);
-        String username = "user";
-        User user = User.builder().id(1L).username(username).build();
-        Account account = Account.builder().id(1L).build();
-        AccountBalance fromBalance = AccountBalance.builder().id(10L).balanceNumber("bal1").build();
-        AccountBalance toBalance = AccountBalance.builder().id(20L).balanceNumber("bal2").build();
-
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(Transaction.builder().id(1L).balanceId(10L).build()));
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(Transaction.builder().id(2L).balanceId(20L).build()));
-        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(fromBalance));
-        when(accountBalanceRepository.findById(20L)).thenReturn(Optional.of(toBalance));
-        when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
-        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
-        when(accountBalanceRepository.findAllByAccountId(account.getId())).thenReturn(List.of(fromBalance, toBalance));
-
-        doNothing().when(transactionRepository).updateStatus(1L, TransactionStatusEnum.CONFIRMED);
-        doNothing().when(transactionRepository).updateStatus(2L, TransactionStatusEnum.CONFIRMED);
-
-        TransactionIdPairDTO result = transactionService.updateStatus(username, TransactionStatusEnum.CONFIRMED, TransactionStatusEnum.CONFIRMED, idPair);
-
-        assertThat(result).isEqualTo(idPair);
-        verify(transactionRepository).updateStatus(1L, TransactionStatusEnum.CONFIRMED);
-        verify(transactionRepository).updateStatus(2L, TransactionStatusEnum.CONFIRMED);
+    void post_shouldDelegateToSaga_whenBalancesOnDifferentShards() {
+        long shard1 = 1L << 48;
+        PendingTransfer pending = PendingTransfer.builder()
+                .id(1000L).mappedId(shard1 + 2000L).fromBalanceId(10L).toBalanceId(shard1 + 20L).amount(100L).build();
+
+        transactionService.post(pending);
+
+        ArgumentCaptor<Transfer> captor = ArgumentCaptor.forClass(Transfer.class);
+        verify(transferSagaService).post(captor.capture());
+        assertThat(captor.getValue().getId()).isEqualTo(1000L);
+        assertThat(captor.getValue().getMappedId()).isEqualTo(shard1 + 2000L);
+        verifyNoInteractions(transferRepository);
+        verifyNoInteractions(accountBalanceRepository, balanceTotalsRepository);
     }
 }
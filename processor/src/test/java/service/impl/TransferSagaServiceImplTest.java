@@ -0,0 +1,168 @@
+package service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.shmatov.config.properties.TransferSagaProperties;
+import ru.shmatov.enums.TransactionStatusEnum;
+import ru.shmatov.exception.TransferSagaFailedException;
+import ru.shmatov.exception.TransferSagaPendingException;
+import ru.shmatov.journal.TransferJournal;
+import ru.shmatov.model.AccountBalance;
+import ru.shmatov.model.Transfer;
+import ru.shmatov.repository.AccountBalanceRepository;
+import ru.shmatov.repository.BalanceTotalsRepository;
+import ru.shmatov.repository.TransferRepository;
+import ru.shmatov.repository.TransferSagaRepository;
+import ru.shmatov.service.SpendingLimitService;
+import ru.shmatov.service.impl.TransferSagaServiceImpl;
+import ru.shmatov.shard.ShardRouter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransferSagaServiceImplTest {
+
+    @Mock private ShardRouter shardRouter;
+    @Mock private TransferRepository transferRepository;
+    @Mock private TransferSagaRepository transferSagaRepository;
+    @Mock private AccountBalanceRepository accountBalanceRepository;
+    @Mock private BalanceTotalsRepository balanceTotalsRepository;
+    @Mock private SpendingLimitService spendingLimitService;
+    @Mock private TransferJournal transferJournal;
+    @Spy private TransferSagaProperties properties = new TransferSagaProperties();
+    @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private TransferSagaServiceImpl transferSagaService;
+
+    private final Transfer transfer = Transfer.builder()
+            .id(1L).mappedId(2L).fromBalanceId(10L).toBalanceId(20L).amount(100L)
+            .status(TransactionStatusEnum.CONFIRMED).createdAt(1000L)
+            .build();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(shardRouter.getShardCount()).thenReturn(1);
+        when(shardRouter.inNewTransaction(anyInt(), any(Supplier.class)))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(shardRouter).inNewTransaction(anyInt(), any(Runnable.class));
+        when(transferSagaRepository.claimStale(eq(0), anyLong(), anyLong(), anyInt())).thenReturn(List.of(1L));
+        when(transferRepository.findById(1L)).thenReturn(Optional.of(transfer));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void recover_shouldCreditReceiverAndCloseSaga() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenReturn(true);
+
+        transferSagaService.recover();
+
+        verify(accountBalanceRepository).updateBalance(20L, 100L);
+        verify(balanceTotalsRepository).add(eq(20L), longThat(t -> t > 1000L), eq(100L), eq(0L), eq(1), eq(0));
+        verify(transferSagaRepository).delete(1L);
+        verify(accountBalanceRepository, never()).updateBalance(eq(10L), anyLong());
+    }
+
+    @Test
+    void recover_shouldNotCreditTwice_whenReceiverCopyAlreadyExists() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenReturn(false);
+
+        transferSagaService.recover();
+
+        verifyNoInteractions(accountBalanceRepository);
+        verify(transferSagaRepository).delete(1L);
+    }
+
+    @Test
+    void recover_shouldCompensateSender_whenCreditFails() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenThrow(new IllegalStateException("shard down"));
+        when(transferSagaRepository.delete(1L)).thenReturn(true);
+        when(transferRepository.receiverCopyExists(transfer)).thenReturn(false);
+        AccountBalance fromBalance = AccountBalance.builder().id(10L).accountId(5L).build();
+        when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(fromBalance));
+
+        transferSagaService.recover();
+
+        verify(accountBalanceRepository).updateBalance(10L, 100L);
+        verify(balanceTotalsRepository).add(10L, 1000L, 0, -100L, 0, -1);
+        verify(transferRepository).updateStatus(1L, TransactionStatusEnum.DECLINED);
+        verify(spendingLimitService).release(fromBalance, 100L, 1000L);
+    }
+
+    @Test
+    void recover_shouldNotCompensate_whenSagaAlreadyClosedByAnotherNode() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenThrow(new IllegalStateException("shard down"));
+        when(transferSagaRepository.delete(1L)).thenReturn(false);
+
+        transferSagaService.recover();
+
+        verifyNoInteractions(accountBalanceRepository, spendingLimitService);
+        verify(transferRepository, never()).updateStatus(anyLong(), any());
+    }
+
+    @Test
+    void post_shouldJournalAndSucceed_whenCreditLandedButAckWasLost() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenThrow(new IllegalStateException("read timeout"));
+        when(transferSagaRepository.delete(1L)).thenReturn(true);
+        when(transferRepository.receiverCopyExists(transfer)).thenReturn(true);
+
+        postAndCommit();
+
+        verify(transferJournal).append(transfer);
+        verify(accountBalanceRepository, never()).updateBalance(eq(10L), anyLong());
+        verify(transferRepository, never()).updateStatus(anyLong(), any());
+    }
+
+    @Test
+    void post_shouldJournalAndReportPending_whenCompensationFails() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenThrow(new IllegalStateException("shard down"));
+        when(transferSagaRepository.delete(1L)).thenThrow(new IllegalStateException("shard down"));
+
+        assertThatThrownBy(this::postAndCommit).isInstanceOf(TransferSagaPendingException.class);
+
+        verify(transferJournal).append(transfer);
+        verify(transferRepository, never()).updateStatus(anyLong(), any());
+    }
+
+    @Test
+    void post_shouldReportFailureWithoutJournal_whenDebitReverted() {
+        when(transferRepository.saveReceiverCopy(eq(transfer), anyLong())).thenThrow(new IllegalStateException("shard down"));
+        when(transferSagaRepository.delete(1L)).thenReturn(true);
+        when(transferRepository.receiverCopyExists(transfer)).thenReturn(false);
+
+        assertThatThrownBy(this::postAndCommit).isInstanceOf(TransferSagaFailedException.class);
+
+        verify(accountBalanceRepository).updateBalance(10L, 100L);
+        verify(transferRepository).updateStatus(1L, TransactionStatusEnum.DECLINED);
+        verifyNoInteractions(transferJournal);
+    }
+
+    private void postAndCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        transferSagaService.post(transfer);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -3,25 +3,35 @@ package service.impl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.shmatov.TransactionIdPairDTO;
 import ru.shmatov.enums.CodeVerificationResult;
-import ru.shmatov.enums.TransactionStatusEnum;
 import ru.shmatov.exception.*;
 import ru.shmatov.model.Account;
 import ru.shmatov.model.AccountBalance;
-import ru.shmatov.model.Transaction;
+import ru.shmatov.model.PendingTransfer;
 import ru.shmatov.repository.AccountBalanceRepository;
 import ru.shmatov.repository.AccountRepository;
-import ru.shmatov.repository.TransactionRepository;
+import ru.shmatov.repository.PendingTransferRepository;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.response.APIResponse;
 import ru.shmatov.response.TransferResponse;
+import ru.shmatov.service.FraudCheckService;
 import ru.shmatov.service.RedisService;
+import ru.shmatov.service.SpendingLimitService;
 import ru.shmatov.service.TransactionService;
+import ru.shmatov.service.TransferService;
 import ru.shmatov.service.impl.TransferServiceImpl;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,7 +44,9 @@ class TransferServiceImplTest {
     @Mock private AccountRepository accountRepository;
     @Mock private AccountBalanceRepository accountBalanceRepository;
     @Mock private RedisService redisService;
-    @Mock private TransactionRepository transactionRepository;
+    @Mock private PendingTransferRepository pendingTransferRepository;
+    @Mock private SpendingLimitService spendingLimitService;
+    @Mock private FraudCheckService fraudCheckService;
 
     @InjectMocks
     private TransferServiceImpl transferService;
@@ -62,7 +74,6 @@ class TransferServiceImplTest {
         when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance));
         when(transactionService.create(username, amount, fromBalanceNumber, toBalanceNumber)).thenReturn(idPair);
 
-        when(transactionService.updateStatus(anyString(), any(), any(), any())).thenReturn(null);
         doNothing().when(redisService).saveTransferCode(anyString(), anyLong(), anyString());
 
         TransferResponse response = transferService.transfer(username, amount, fromBalanceNumber, toBalanceNumber);
@@ -71,10 +82,48 @@ class TransferServiceImplTest {
         assertThat(response.getCode()).isNotBlank();
         assertThat(response.getIdPair()).isEqualTo(idPair);
 
-        verify(transactionService).updateStatus(eq(username), eq(TransactionStatusEnum.PENDING_CONFIRMATION), eq(TransactionStatusEnum.PENDING_CONFIRMATION), eq(idPair));
         verify(redisService).saveTransferCode(eq(username), eq(idPair.getId()), anyString());
     }
 
+    @Test
+    void transfer_shouldReturnConnectionToPool_beforeSavingCode() throws Exception {
+        String username = "user";
+        Account senderAccount = Account.builder().id(1L).build();
+        AccountBalance fromBalance = AccountBalance.builder().balance(200L).balanceNumber("bal1").build();
+        TransactionIdPairDTO idPair = new TransactionIdPairDTO(10L, 11L);
+
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        AtomicBoolean returned = new AtomicBoolean();
+        doAnswer(inv -> {
+            returned.set(true);
+            return null;
+        }).when(connection).close();
+        DataSourceTransactionManager txManager = new DataSourceTransactionManager(dataSource);
+
+        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(senderAccount));
+        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance));
+        when(transactionService.create(username, 100L, "bal1", "bal2"))
+                .thenAnswer(inv -> new TransactionTemplate(txManager).execute(status -> idPair));
+        AtomicBoolean returnedBeforeRedis = new AtomicBoolean();
+        doAnswer(inv -> {
+            returnedBeforeRedis.set(returned.get());
+            return null;
+        }).when(redisService).saveTransferCode(anyString(), anyLong(), anyString());
+
+        // те же транзакционные границы, что у бина в контексте
+        ProxyFactory proxyFactory = new ProxyFactory(transferService);
+        proxyFactory.addAdvice(new TransactionInterceptor(txManager, new AnnotationTransactionAttributeSource()));
+        TransferService proxied = (TransferService) proxyFactory.getProxy();
+
+        TransferResponse response = proxied.transfer(username, 100L, "bal1", "bal2");
+
+        verify(redisService).saveTransferCode(username, 10L, response.getCode());
+        assertThat(returnedBeforeRedis).isTrue();
+    }
+
     @Test
     void transfer_shouldThrowIllegalArgumentException_whenAmountIsInvalid() {
         assertThatThrownBy(() -> transferService.transfer("user", null, "bal1", "bal2"))
@@ -120,6 +169,37 @@ class TransferServiceImplTest {
                 .hasMessageContaining("bal1");
     }
 
+    @Test
+    void transfer_shouldThrowSpendingLimitExceeded_beforeCreatingTransfer() {
+        Account senderAccount = Account.builder().id(1L).build();
+        AccountBalance fromBalance = AccountBalance.builder().id(5L).balance(200L).balanceNumber("bal1").build();
+
+        when(accountRepository.findByUsername("user")).thenReturn(Optional.of(senderAccount));
+        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance));
+        doThrow(new SpendingLimitExceededException("balance-daily", 1000L))
+                .when(spendingLimitService).check(fromBalance, 100L);
+
+        assertThatThrownBy(() -> transferService.transfer("user", 100L, "bal1", "bal2"))
+                .isInstanceOf(SpendingLimitExceededException.class)
+                .hasMessageContaining("balance-daily");
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void transfer_shouldNotCreateTransfer_whenFraudCheckBlocks() {
+        Account senderAccount = Account.builder().id(1L).build();
+        AccountBalance fromBalance = AccountBalance.builder().id(5L).balance(200L).balanceNumber("bal1").build();
+
+        when(accountRepository.findByUsername("user")).thenReturn(Optional.of(senderAccount));
+        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance));
+        doThrow(new TransferBlockedException("sender-burst"))
+                .when(fraudCheckService).check("user", "bal2", 100L);
+
+        assertThatThrownBy(() -> transferService.transfer("user", 100L, "bal1", "bal2"))
+                .isInstanceOf(TransferBlockedException.class);
+        verifyNoInteractions(transactionService, redisService);
+    }
+
     @Test
     void processTransferConfirmation_shouldReturnSuccessResponse_whenCodeIsValid() {
         String username = "user";
@@ -131,27 +211,24 @@ class TransferServiceImplTest {
         Account account = Account.builder().id(1L).build();
         when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
 
-        Transaction fromTx = Transaction.builder().id(10L).balanceId(100L).receiverBalanceId(200L).build();
-        Transaction toTx = Transaction.builder().id(11L).balanceId(200L).receiverBalanceId(100L).build();
-        when(transactionRepository.findById(10L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(11L)).thenReturn(Optional.of(toTx));
+        PendingTransfer pending = pending(10L, 11L, 100L, 200L);
+        when(pendingTransferRepository.findById(10L)).thenReturn(Optional.of(pending));
 
         AccountBalance senderBalance = AccountBalance.builder().id(100L).balanceNumber("bal1").build();
-        AccountBalance receiverBalance = AccountBalance.builder().id(200L).balanceNumber("bal2").build();
         when(accountBalanceRepository.findById(100L)).thenReturn(Optional.of(senderBalance));
-        when(accountBalanceRepository.findById(200L)).thenReturn(Optional.of(receiverBalance));
-
-        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(senderBalance, receiverBalance));
+        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(senderBalance));
 
         when(redisService.verifyTransferCode(username, 10L, validCode))
                 .thenReturn(CodeVerificationResult.SUCCESS);
-
-        when(transactionService.updateStatus(anyString(), any(), any(), any())).thenReturn(null);
+        when(pendingTransferRepository.claim(10L)).thenReturn(Optional.of(pending));
 
         APIResponse response = transferService.processTransferConfirmation(username, idPair, validCode);
 
         assertThat(response).isNotNull();
         assertThat(response.message()).contains("successfully");
+        InOrder inOrder = inOrder(spendingLimitService, transactionService);
+        inOrder.verify(spendingLimitService).reserve(senderBalance, 100L);
+        inOrder.verify(transactionService).post(pending);
     }
 
     @Test
@@ -172,10 +249,10 @@ class TransferServiceImplTest {
     }
 
     @Test
-    void processTransferConfirmation_shouldThrowSenderTransactionNotFoundException_whenFromTxNotFound() {
+    void processTransferConfirmation_shouldThrowSenderTransactionNotFoundException_whenPendingTransferNotFound() {
         when(userRepository.existsByUsername("user")).thenReturn(true);
         when(accountRepository.findByUsername("user")).thenReturn(Optional.of(Account.builder().id(1L).build()));
-        when(transactionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(pendingTransferRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> transferService.processTransferConfirmation("user", new TransactionIdPairDTO(1L,2L), "code"))
                 .isInstanceOf(SenderTransactionNotFoundException.class);
@@ -185,9 +262,7 @@ class TransferServiceImplTest {
     void processTransferConfirmation_shouldThrowBalanceNotFoundException_whenSenderBalanceNotFound() {
         when(userRepository.existsByUsername("user")).thenReturn(true);
         when(accountRepository.findByUsername("user")).thenReturn(Optional.of(Account.builder().id(1L).build()));
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).build();
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
+        when(pendingTransferRepository.findById(1L)).thenReturn(Optional.of(pending(1L, 2L, 10L, 20L)));
 
         when(accountBalanceRepository.findById(10L)).thenReturn(Optional.empty());
 
@@ -201,9 +276,7 @@ class TransferServiceImplTest {
 
         Account userAccount = Account.builder().id(1L).build();
         when(accountRepository.findByUsername("user")).thenReturn(Optional.of(userAccount));
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).receiverBalanceId(20L).build();
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
+        when(pendingTransferRepository.findById(1L)).thenReturn(Optional.of(pending(1L, 2L, 10L, 20L)));
 
         AccountBalance senderBalance = AccountBalance.builder().id(10L).build();
         when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(senderBalance));
@@ -214,6 +287,7 @@ class TransferServiceImplTest {
 
         assertThatThrownBy(() -> transferService.processTransferConfirmation("user", new TransactionIdPairDTO(1L, 2L), "code"))
                 .isInstanceOf(SecurityBalanceNotBelongTransactionException.class);
+        verify(pendingTransferRepository, never()).claim(anyLong());
     }
 
     @Test
@@ -222,9 +296,7 @@ class TransferServiceImplTest {
 
         Account userAccount = Account.builder().id(1L).build();
         when(accountRepository.findByUsername("user")).thenReturn(Optional.of(userAccount));
-
-        Transaction fromTx = Transaction.builder().id(1L).balanceId(10L).receiverBalanceId(20L).build();
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(fromTx));
+        when(pendingTransferRepository.findById(1L)).thenReturn(Optional.of(pending(1L, 2L, 10L, 20L)));
 
         AccountBalance senderBalance = AccountBalance.builder().id(10L).build();
         when(accountBalanceRepository.findById(10L)).thenReturn(Optional.of(senderBalance));
@@ -236,70 +308,53 @@ class TransferServiceImplTest {
 
         assertThatThrownBy(() -> transferService.processTransferConfirmation("user", new TransactionIdPairDTO(1L, 2L), "badcode"))
                 .isInstanceOf(InvalidConfirmationCodeException.class);
+        verify(pendingTransferRepository).claim(1L);
+        verify(transactionService, never()).post(any());
     }
 
     @Test
-    void processTransfer_shouldThrowIfInconsistentTransactions() {
+    void processTransferConfirmation_shouldThrowIfMappedIdDoesNotMatchPendingTransfer() {
         String username = "user";
-        TransactionIdPairDTO idPair = new TransactionIdPairDTO(10L, 11L);
-        String validCode = "123456";
+        TransactionIdPairDTO idPair = new TransactionIdPairDTO(10L, 999L);
 
         when(userRepository.existsByUsername(username)).thenReturn(true);
-        Account account = Account.builder().id(1L).build();
-        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
-
-        Transaction fromTx = Transaction.builder().id(10L).balanceId(100L).receiverBalanceId(200L).build();
-        Transaction toTx = Transaction.builder().id(11L).balanceId(200L).receiverBalanceId(999L).build();
-        when(transactionRepository.findById(10L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(11L)).thenReturn(Optional.of(toTx));
+        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(Account.builder().id(1L).build()));
+        when(pendingTransferRepository.findById(10L)).thenReturn(Optional.of(pending(10L, 11L, 100L, 200L)));
 
-        AccountBalance fromBalance = AccountBalance.builder().id(100L).balanceNumber("bal1").build();
-        AccountBalance toBalance = AccountBalance.builder().id(200L).balanceNumber("bal2").build();
-        when(accountBalanceRepository.findById(100L)).thenReturn(Optional.of(fromBalance));
-        when(accountBalanceRepository.findById(200L)).thenReturn(Optional.of(toBalance));
-
-        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance, toBalance));
-        when(redisService.verifyTransferCode(username, 10L, validCode)).thenReturn(CodeVerificationResult.SUCCESS);
-        when(transactionService.updateStatus(anyString(), any(), any(), any())).thenReturn(null);
-
-        assertThatThrownBy(() -> transferService.processTransferConfirmation(username, idPair, validCode))
+        assertThatThrownBy(() -> transferService.processTransferConfirmation(username, idPair, "123456"))
                 .isInstanceOf(SecurityBalanceNotBelongTransactionException.class);
+        verifyNoInteractions(redisService, transactionService);
     }
 
     @Test
-    void processTransfer_shouldUpdateBalancesAndStatus_whenValid() {
+    void processTransferConfirmation_shouldNotPostTwice_whenPendingTransferAlreadyClaimed() {
         String username = "user";
         TransactionIdPairDTO idPair = new TransactionIdPairDTO(10L, 11L);
         String validCode = "123456";
 
         when(userRepository.existsByUsername(username)).thenReturn(true);
-        Account account = Account.builder().id(1L).build();
-        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(account));
-
-        Transaction fromTx = Transaction.builder().id(10L).balanceId(100L).receiverBalanceId(200L).amount(100L).build();
-        Transaction toTx = Transaction.builder().id(11L).balanceId(200L).receiverBalanceId(100L).amount(100L).build();
-        when(transactionRepository.findById(10L)).thenReturn(Optional.of(fromTx));
-        when(transactionRepository.findById(11L)).thenReturn(Optional.of(toTx));
+        when(accountRepository.findByUsername(username)).thenReturn(Optional.of(Account.builder().id(1L).build()));
+        when(pendingTransferRepository.findById(10L)).thenReturn(Optional.of(pending(10L, 11L, 100L, 200L)));
 
-        AccountBalance fromBalance = AccountBalance.builder().id(100L).balanceNumber("bal1").build();
-        AccountBalance toBalance = AccountBalance.builder().id(200L).balanceNumber("bal2").build();
-        when(accountBalanceRepository.findById(100L)).thenReturn(Optional.of(fromBalance));
-        when(accountBalanceRepository.findById(200L)).thenReturn(Optional.of(toBalance));
-
-        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(fromBalance, toBalance));
+        AccountBalance senderBalance = AccountBalance.builder().id(100L).balanceNumber("bal1").build();
+        when(accountBalanceRepository.findById(100L)).thenReturn(Optional.of(senderBalance));
+        when(accountBalanceRepository.findAllByAccountId(1L)).thenReturn(List.of(senderBalance));
 
         when(redisService.verifyTransferCode(username, 10L, validCode)).thenReturn(CodeVerificationResult.SUCCESS);
+        when(pendingTransferRepository.claim(10L)).thenReturn(Optional.empty());
 
-        when(transactionService.updateStatus(anyString(), any(), any(), any())).thenReturn(null);
-        doNothing().when(accountBalanceRepository).updateBalance(anyLong(), anyLong());
-
-        APIResponse response = transferService.processTransferConfirmation(username, idPair, validCode);
-
-        assertThat(response).isNotNull();
-        assertThat(response.message()).contains("successfully");
+        assertThatThrownBy(() -> transferService.processTransferConfirmation(username, idPair, validCode))
+                .isInstanceOf(TransactionStatusConflictException.class);
+        verify(transactionService, never()).post(any());
+    }
 
-        verify(transactionService).updateStatus(eq(username), eq(TransactionStatusEnum.NO_ACTIVE), eq(TransactionStatusEnum.NO_ACTIVE), eq(idPair));
-        verify(accountBalanceRepository).updateBalance(100L, 100L);
-        verify(accountBalanceRepository).updateBalance(200L, 100L);
+    private static PendingTransfer pending(Long id, Long mappedId, Long fromBalanceId, Long toBalanceId) {
+        return PendingTransfer.builder()
+                .id(id)
+                .mappedId(mappedId)
+                .fromBalanceId(fromBalanceId)
+                .toBalanceId(toBalanceId)
+                .amount(100L)
+                .build();
     }
 }
@@ -3,6 +3,7 @@ package service.impl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -10,6 +11,7 @@ import ru.shmatov.exception.UserAlreadyExistsException;
 import ru.shmatov.model.User;
 import ru.shmatov.repository.UserRepository;
 import ru.shmatov.service.impl.UserServiceImpl;
+import ru.shmatov.shard.ShardRouter;
 
 import java.util.Optional;
 import java.util.Set;
@@ -25,6 +27,9 @@ class UserServiceImplTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ShardRouter shardRouter;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -34,6 +39,7 @@ class UserServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ShardRouterStubs.runTransactionsInline(shardRouter);
     }
 
     @Test
@@ -45,11 +51,13 @@ class UserServiceImplTest {
 
         when(userRepository.existsByUsername(username)).thenReturn(false);
         when(passwordEncoder.encode(rawPassword)).thenReturn(encodedPassword);
+        when(shardRouter.placeUsername(username)).thenReturn(1);
 
         String result = userService.registerUser(username, tgUsername, rawPassword);
 
         assertThat(result).isEqualTo(username);
-        verify(userRepository).save(userCaptor.capture());
+        verify(userRepository).save(eq(1), userCaptor.capture());
+        verify(shardRouter).placeUsername(username);
 
         User savedUser = userCaptor.getValue();
         assertThat(savedUser.getUsername()).isEqualTo(username);
@@ -69,7 +77,18 @@ class UserServiceImplTest {
                 userService.registerUser("123", "tg", "pass")
         ).isInstanceOf(UserAlreadyExistsException.class);
 
-        verify(userRepository, never()).save(any());
+        verify(userRepository, never()).save(anyInt(), any());
+        verify(passwordEncoder, never()).encode(any());
+    }
+
+    @Test
+    void registerUser_shouldThrow_whenUsernameTakenWhileHashing() {
+        when(passwordEncoder.encode("pass")).thenReturn("hashed-pass");
+        doThrow(new DuplicateKeyException("users_username_key")).when(userRepository).save(anyInt(), any());
+
+        assertThatThrownBy(() ->
+                userService.registerUser("123", "tg", "pass")
+        ).isInstanceOf(UserAlreadyExistsException.class);
     }
 
     @Test
@@ -0,0 +1,49 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import ru.shmatov.util.AccountNumbers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountNumbersTest {
+
+    @Test
+    void formatAccount_shouldPadWithLeadingZeros() {
+        assertThat(AccountNumbers.formatAccount(42L)).isEqualTo("0000000000000042");
+        assertThat(AccountNumbers.formatAccount(1234567890123456L)).isEqualTo("1234567890123456");
+    }
+
+    @Test
+    void formatBalance_shouldAppendPaddedSequence() {
+        assertThat(AccountNumbers.formatBalance(42L, 7)).isEqualTo("00000000000000420007");
+    }
+
+    @Test
+    void parse_shouldRoundTripFormattedBalance() {
+        String number = AccountNumbers.formatBalance(100000000000042L, 12);
+
+        assertThat(AccountNumbers.accountPart(number)).isEqualTo(100000000000042L);
+        assertThat(AccountNumbers.sequence(number)).isEqualTo((short) 12);
+    }
+
+    @Test
+    void accountPart_shouldParseAccountNumber() {
+        assertThat(AccountNumbers.accountPart("0000000000000042")).isEqualTo(42L);
+    }
+
+    @Test
+    void isAccountNumber_shouldAcceptOnlySixteenDigits() {
+        assertThat(AccountNumbers.isAccountNumber("0000000000000042")).isTrue();
+        assertThat(AccountNumbers.isAccountNumber("000000000000042")).isFalse();
+        assertThat(AccountNumbers.isAccountNumber("00000000000000420")).isFalse();
+        assertThat(AccountNumbers.isAccountNumber("000000000000004a")).isFalse();
+        assertThat(AccountNumbers.isAccountNumber(null)).isFalse();
+    }
+
+    @Test
+    void isBalanceNumber_shouldAcceptOnlyTwentyDigits() {
+        assertThat(AccountNumbers.isBalanceNumber("00000000000000420007")).isTrue();
+        assertThat(AccountNumbers.isBalanceNumber("0000000000000042")).isFalse();
+        assertThat(AccountNumbers.isBalanceNumber("0000000000000042000-")).isFalse();
+    }
+}